@@ -0,0 +1,118 @@
+package org.jrao.jacksyntaxanalyzer;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/*
+ * The Jack source the benchmarks compile, written by JackCorpusGenerator
+ * with a fixed seed. The single-file benchmarks compile one class of the
+ * given size; the end-to-end benchmark compiles a directory of classes of
+ * the same shape that add up to about the same size.
+ */
+@State(Scope.Benchmark)
+public class BenchmarkInput {
+	
+	/*
+	 * Any CorpusShape option name, e.g. -p shape=nesting to see how the
+	 * parser copes with deep nesting
+	 */
+	@Param({ "mixed" })
+	public String shape;
+	
+	/*
+	 * Source size in bytes: a typical hand-written class, a large one, and
+	 * one far bigger than any real class, to show how each phase scales
+	 */
+	@Param({ "2000", "200000", "8000000" })
+	public int size;
+	
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		CorpusShape corpusShape = CorpusShape.fromOptionName(shape);
+		if (corpusShape == null) {
+			throw new IllegalArgumentException("Unknown corpus shape: " + shape);
+		}
+		
+		JackCorpusGenerator generator = new JackCorpusGenerator(SEED);
+		_source = generator.generateClass("Bench", corpusShape, size).getBytes(StandardCharsets.ISO_8859_1);
+		_tokenCount = countTokens(source());
+		
+		_directory = Files.createTempDirectory("jack-bench").toFile();
+		int classCount = Math.max(1, size / BYTES_PER_CLASS);
+		_jackFiles = new File[classCount];
+		_directoryBytes = 0;
+		for (int i = 0; i < classCount; i++) {
+			byte[] classSource = generator.generateClass("Bench" + i, corpusShape, size / classCount)
+					.getBytes(StandardCharsets.ISO_8859_1);
+			_jackFiles[i] = new File(_directory, "Bench" + i + ".jack");
+			Files.write(_jackFiles[i].toPath(), classSource);
+			_directoryBytes += classSource.length;
+		}
+	}
+	
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		File[] files = _directory.listFiles();
+		if (files != null) {
+			for (File file : files) {
+				file.delete();
+			}
+		}
+		_directory.delete();
+	}
+	
+	/*
+	 * Returns a fresh buffer over the single-class source
+	 */
+	public ByteBuffer source() {
+		return ByteBuffer.wrap(_source);
+	}
+	
+	public int getSourceBytes() {
+		return _source.length;
+	}
+	
+	public int getTokenCount() {
+		return _tokenCount;
+	}
+	
+	public File[] getJackFiles() {
+		return _jackFiles;
+	}
+	
+	public long getDirectoryBytes() {
+		return _directoryBytes;
+	}
+	
+	static int countTokens(ByteBuffer source) throws IOException {
+		JackTokenizer tokenizer = new JackTokenizer(source);
+		int count = 0;
+		while (tokenizer.hasMoreTokens()) {
+			tokenizer.advance();
+			count++;
+		}
+		return count;
+	}
+	
+	private static final long SEED = 1;
+	
+	// Size of each class in the directory, about that of a large real class
+	private static final int BYTES_PER_CLASS = 40000;
+	
+	private byte[] _source;
+	private int _tokenCount;
+	private File _directory;
+	private File[] _jackFiles;
+	private long _directoryBytes;
+	
+}
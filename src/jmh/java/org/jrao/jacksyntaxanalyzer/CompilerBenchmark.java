@@ -0,0 +1,135 @@
+package org.jrao.jacksyntaxanalyzer;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+
+/*
+ * Measures each phase of the compiler on its own:
+ *
+ *   lex               tokenizing only
+ *   parseToVM         tokenizing, parsing, and VM code generation
+ *   parseWithXML      as parseToVM, and also writing the XML parse tree
+ *   compileDirectory  compiling a directory of files, as JackAnalyzer does
+ *
+ * The first three read the source from memory and throw their output away,
+ * so they measure only the compiler; the last one includes reading and
+ * writing files. Run with the gc profiler (the default in build.gradle) to
+ * see the allocation rate of each phase.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class CompilerBenchmark {
+	
+	@Benchmark
+	public int lex(BenchmarkInput input, Throughput throughput) throws IOException {
+		JackTokenizer tokenizer = new JackTokenizer(input.source());
+		int count = 0;
+		while (tokenizer.hasMoreTokens()) {
+			tokenizer.advance();
+			count++;
+		}
+		throughput.tokens += count;
+		throughput.bytes += input.getSourceBytes();
+		return count;
+	}
+	
+	@Benchmark
+	public boolean parseToVM(BenchmarkInput input, Throughput throughput) throws IOException {
+		boolean success = COMPILER.compile(input.source(), new VMWriter(new DiscardChannel()), null, DISCARD_ERRORS);
+		throughput.tokens += input.getTokenCount();
+		throughput.bytes += input.getSourceBytes();
+		return success;
+	}
+	
+	@Benchmark
+	public boolean parseWithXML(BenchmarkInput input, Throughput throughput) throws IOException {
+		boolean success = COMPILER.compile(input.source(), new VMWriter(new DiscardChannel()), new DiscardWriter(),
+				DISCARD_ERRORS);
+		throughput.tokens += input.getTokenCount();
+		throughput.bytes += input.getSourceBytes();
+		return success;
+	}
+	
+	@Benchmark
+	public void compileDirectory(BenchmarkInput input, Throughput throughput) throws IOException {
+		for (File jackFile : input.getJackFiles()) {
+			File outputFile = new File(jackFile.getAbsolutePath().concat(".xml"));
+			CompilationEngine compilationEngine = new CompilationEngine(jackFile, outputFile, OutputMode.BOTH);
+			compilationEngine.setErrorStream(DISCARD_ERRORS);
+			try {
+				compilationEngine.compileClass();
+			}
+			finally {
+				compilationEngine.close();
+			}
+		}
+		throughput.tokens += input.getTokenCount();
+		throughput.bytes += input.getDirectoryBytes();
+	}
+	
+	/*
+	 * A channel that accepts and ignores everything written to it
+	 */
+	private static class DiscardChannel implements WritableByteChannel {
+		
+		@Override
+		public int write(ByteBuffer src) {
+			int count = src.remaining();
+			src.position(src.limit());
+			return count;
+		}
+		
+		@Override
+		public boolean isOpen() {
+			return true;
+		}
+		
+		@Override
+		public void close() {
+		}
+		
+	}
+	
+	/*
+	 * A writer that ignores everything written to it
+	 */
+	private static class DiscardWriter extends Writer {
+		
+		@Override
+		public void write(char[] cbuf, int off, int len) {
+		}
+		
+		@Override
+		public void write(String str) {
+		}
+		
+		@Override
+		public void flush() {
+		}
+		
+		@Override
+		public void close() {
+		}
+		
+	}
+	
+	private static final JackCompiler COMPILER = new JackCompiler();
+	
+	private static final PrintStream DISCARD_ERRORS = new PrintStream(new OutputStream() {
+		@Override
+		public void write(int b) {
+		}
+	});
+	
+}
@@ -0,0 +1,27 @@
+package org.jrao.jacksyntaxanalyzer;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/*
+ * Counts the tokens and source bytes each benchmark gets through. JMH
+ * reports each public field as a rate next to the benchmark's own score, so
+ * phases can be compared in tokens/s and bytes/s whatever the input size.
+ */
+@AuxCounters(AuxCounters.Type.OPERATIONS)
+@State(Scope.Thread)
+public class Throughput {
+	
+	public long tokens;
+	public long bytes;
+	
+	@Setup(Level.Iteration)
+	public void reset() {
+		tokens = 0;
+		bytes = 0;
+	}
+	
+}
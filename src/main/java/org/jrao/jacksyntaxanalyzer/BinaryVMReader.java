@@ -0,0 +1,162 @@
+package org.jrao.jacksyntaxanalyzer;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ * Loads VM code written by BinaryVMWriter and passes its commands, in order,
+ * to a VMCommandSink. Nothing is parsed: each command is decoded straight
+ * from its opcode, and each name is decoded into a String only the first
+ * time it appears.
+ */
+public class BinaryVMReader {
+	
+	/*
+	 * Reads the whole of the given .vmb file
+	 */
+	public BinaryVMReader(File inputFile) throws IOException {
+		this(readInput(inputFile));
+	}
+	
+	/*
+	 * Reads binary VM code from the remaining bytes of input
+	 */
+	public BinaryVMReader(ByteBuffer input) {
+		_input = input;
+		_names = new ArrayList<String>();
+	}
+	
+	/*
+	 * Passes every command in the input to out, then flushes it. Throws an
+	 * IOException if the input is not valid binary VM code.
+	 */
+	public void read(VMCommandSink out) throws IOException {
+		for (byte b : BinaryVMWriter.MAGIC) {
+			if (!_input.hasRemaining() || _input.get() != b) {
+				throw new IOException("Not a binary VM file");
+			}
+		}
+		int version = getByte();
+		if (version != BinaryVMWriter.VERSION) {
+			throw new IOException("Unsupported binary VM version: " + version);
+		}
+		
+		while (_input.hasRemaining()) {
+			int opcode = getByte();
+			switch (opcode) {
+			case BinaryVMWriter.PUSH:
+				out.writePush(getSegment(), getVarint());
+				break;
+			case BinaryVMWriter.POP:
+				out.writePop(getSegment(), getVarint());
+				break;
+			case BinaryVMWriter.LABEL:
+				out.writeLabel(getName());
+				break;
+			case BinaryVMWriter.GOTO:
+				out.writeGoto(getName());
+				break;
+			case BinaryVMWriter.IF_GOTO:
+				out.writeIf(getName());
+				break;
+			case BinaryVMWriter.CALL:
+				out.writeCall(getName(), getVarint());
+				break;
+			case BinaryVMWriter.FUNCTION:
+				out.writeFunction(getName(), getVarint());
+				break;
+			case BinaryVMWriter.RETURN:
+				out.writeReturn();
+				break;
+			default:
+				int command = opcode - BinaryVMWriter.ARITHMETIC;
+				if (command < 0 || command >= COMMANDS.length) {
+					throw new IOException("Invalid opcode " + opcode + " at offset " + (_input.position() - 1));
+				}
+				out.writeArithmetic(COMMANDS[command]);
+				break;
+			}
+		}
+		out.flush();
+	}
+	
+	private int getByte() throws IOException {
+		if (!_input.hasRemaining()) {
+			throw new IOException("Unexpected end of binary VM file");
+		}
+		return _input.get() & 0xff;
+	}
+	
+	private int getVarint() throws IOException {
+		int value = 0;
+		for (int shift = 0; shift < 32; shift += 7) {
+			int b = getByte();
+			value |= (b & 0x7f) << shift;
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+		}
+		throw new IOException("Invalid varint at offset " + _input.position());
+	}
+	
+	private Segment getSegment() throws IOException {
+		int segment = getByte();
+		if (segment >= SEGMENTS.length) {
+			throw new IOException("Invalid segment " + segment + " at offset " + (_input.position() - 1));
+		}
+		return SEGMENTS[segment];
+	}
+	
+	/*
+	 * Reads a string table ID, and the name it defines if it is the next entry
+	 */
+	private String getName() throws IOException {
+		int id = getVarint();
+		if (id >= 0 && id < _names.size()) {
+			return _names.get(id);
+		}
+		if (id != _names.size()) {
+			throw new IOException("Undefined name " + id + " at offset " + _input.position());
+		}
+		
+		int length = getVarint();
+		if (length < 0 || length > _input.remaining()) {
+			throw new IOException("Unexpected end of binary VM file");
+		}
+		byte[] bytes = new byte[length];
+		_input.get(bytes);
+		String name = new String(bytes, StandardCharsets.US_ASCII);
+		_names.add(name);
+		return name;
+	}
+	
+	private static ByteBuffer readInput(File inputFile) throws IOException {
+		try (FileChannel channel = FileChannel.open(inputFile.toPath(), StandardOpenOption.READ)) {
+			long size = channel.size();
+			if (size > Integer.MAX_VALUE) {
+				throw new IOException("Input file too large: " + inputFile.getName());
+			}
+			ByteBuffer buffer = ByteBuffer.allocate((int) size);
+			while (buffer.hasRemaining()) {
+				if (channel.read(buffer) < 0) {
+					break;
+				}
+			}
+			buffer.flip();
+			return buffer;
+		}
+	}
+	
+	private static final Segment[] SEGMENTS = Segment.values();
+	private static final Command[] COMMANDS = Command.values();
+	
+	private ByteBuffer _input;
+	private List<String> _names;
+	
+}
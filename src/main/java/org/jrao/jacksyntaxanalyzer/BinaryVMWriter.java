@@ -0,0 +1,211 @@
+package org.jrao.jacksyntaxanalyzer;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/*
+ * Writes VM commands in a compact binary form (.jack.vmb files) that
+ * BinaryVMReader can load without parsing any text.
+ *
+ * A file starts with the magic bytes "JVMB" and a version byte. Each command
+ * is then an opcode byte followed by its operands:
+ *
+ *   push, pop            segment byte (the Segment ordinal), varint index
+ *   arithmetic-logical   none; each Command has its own opcode
+ *   label, goto, if-goto name
+ *   call, function       name, varint argument or local count
+ *   return               none
+ *
+ * Varints are unsigned LEB128: seven bits per byte, low bits first, with the
+ * high bit set on every byte but the last. A name is a varint ID into the
+ * file's string table. The table starts out empty, and an ID equal to its
+ * current size defines the next entry: it is followed by the name's length
+ * as a varint and then its ASCII bytes. Later uses of the name are just its ID.
+ */
+public class BinaryVMWriter implements VMCommandSink {
+	
+	/*
+	 * Creates a new output.vmb file and prepares it for writing
+	 */
+	public BinaryVMWriter(File outputFile) throws IOException {
+		this(FileChannel.open(outputFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING));
+	}
+	
+	/*
+	 * Creates a writer that writes to outputChannel, which it closes when it
+	 * is closed
+	 */
+	public BinaryVMWriter(WritableByteChannel outputChannel) throws IOException {
+		_channel = outputChannel;
+		_bytes = new byte[BUFFER_SIZE];
+		_buffer = ByteBuffer.wrap(_bytes);
+		_length = 0;
+		_names = new HashMap<String, Integer>();
+		_err = System.err;
+		
+		for (byte b : MAGIC) {
+			putByte(b);
+		}
+		putByte(VERSION);
+	}
+	
+	/*
+	 * Sets the stream that errors are reported to (System.err by default)
+	 */
+	public void setErrorStream(PrintStream err) {
+		_err = err;
+	}
+	
+	@Override
+	public void writePush(Segment segment, int index) throws IOException {
+		if (segment == null) {
+			_err.println("Error: Invalid argument 'segment': \n");
+			return;
+		}
+		putByte(PUSH);
+		putByte(segment.ordinal());
+		putVarint(index);
+	}
+	
+	@Override
+	public void writePop(Segment segment, int index) throws IOException {
+		if (segment == null || segment == Segment.CONSTANT) {
+			_err.println("Error: Invalid argument 'segment': " + (segment == null ? "" : segment.getName()) + "\n");
+			return;
+		}
+		putByte(POP);
+		putByte(segment.ordinal());
+		putVarint(index);
+	}
+	
+	@Override
+	public void writeArithmetic(Command command) throws IOException {
+		putByte(ARITHMETIC + command.ordinal());
+	}
+	
+	@Override
+	public void writeLabel(String label) throws IOException {
+		putByte(LABEL);
+		putName(label);
+	}
+	
+	@Override
+	public void writeGoto(String label) throws IOException {
+		putByte(GOTO);
+		putName(label);
+	}
+	
+	@Override
+	public void writeIf(String label) throws IOException {
+		putByte(IF_GOTO);
+		putName(label);
+	}
+	
+	@Override
+	public void writeCall(String name, int nArgs) throws IOException {
+		putByte(CALL);
+		putName(name);
+		putVarint(nArgs);
+	}
+	
+	@Override
+	public void writeFunction(String name, int nLocals) throws IOException {
+		putByte(FUNCTION);
+		putName(name);
+		putVarint(nLocals);
+	}
+	
+	@Override
+	public void writeReturn() throws IOException {
+		putByte(RETURN);
+	}
+	
+	/*
+	 * Writes buffered output to the channel
+	 */
+	@Override
+	public void flush() throws IOException {
+		_buffer.clear();
+		_buffer.limit(_length);
+		while (_buffer.hasRemaining()) {
+			_channel.write(_buffer);
+		}
+		_length = 0;
+	}
+	
+	/*
+	 * Closes the output channel
+	 */
+	public void close() throws IOException {
+		if (_channel != null) {
+			flush();
+			_channel.close();
+		}
+	}
+	
+	private void putByte(int b) throws IOException {
+		if (_length == _bytes.length) {
+			flush();
+		}
+		_bytes[_length++] = (byte) b;
+	}
+	
+	private void putVarint(int value) throws IOException {
+		while ((value & ~0x7f) != 0) {
+			putByte((value & 0x7f) | 0x80);
+			value >>>= 7;
+		}
+		putByte(value);
+	}
+	
+	/*
+	 * Writes the string table ID of name, defining it first if this is the
+	 * first time it is used
+	 */
+	private void putName(String name) throws IOException {
+		Integer id = _names.get(name);
+		if (id != null) {
+			putVarint(id);
+			return;
+		}
+		
+		putVarint(_names.size());
+		_names.put(name, _names.size());
+		putVarint(name.length());
+		for (int i = 0; i < name.length(); i++) {
+			putByte(name.charAt(i));
+		}
+	}
+	
+	static final byte[] MAGIC = { 'J', 'V', 'M', 'B' };
+	static final int VERSION = 1;
+	
+	// Opcodes; the arithmetic-logical commands take ARITHMETIC + their Command ordinal
+	static final int PUSH = 0;
+	static final int POP = 1;
+	static final int LABEL = 2;
+	static final int GOTO = 3;
+	static final int IF_GOTO = 4;
+	static final int CALL = 5;
+	static final int FUNCTION = 6;
+	static final int RETURN = 7;
+	static final int ARITHMETIC = 8;
+	
+	private static final int BUFFER_SIZE = 64 * 1024;
+	
+	private WritableByteChannel _channel;
+	private byte[] _bytes;
+	private ByteBuffer _buffer;
+	private int _length;
+	private Map<String, Integer> _names;
+	private PrintStream _err;
+	
+}
@@ -0,0 +1,272 @@
+package org.jrao.jacksyntaxanalyzer;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.CodeSource;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+ * Manifest of content hashes used by incremental builds to skip Jack files
+ * whose source and outputs have not changed since they were last compiled.
+ *
+ * The manifest is a text file in the source directory. Its first line holds
+ * a fingerprint of the compiler itself and of the options that affect its
+ * output; if either changes, every entry is discarded. Each following line
+ * records one source file: its name and hash, then the name and hash of each
+ * output file it produced, separated by tabs.
+ */
+public class BuildCache {
+	
+	public static final String MANIFEST_FILE_NAME = ".jackanalyzer-cache";
+	
+	/*
+	 * Loads the manifest from the given directory, if there is one. Entries
+	 * recorded under a different fingerprint are discarded.
+	 */
+	public BuildCache(File directory, String fingerprint) {
+		_manifestFile = new File(directory, MANIFEST_FILE_NAME);
+		_fingerprint = fingerprint;
+		_entries = new ConcurrentHashMap<String, Entry>();
+		
+		if (_manifestFile.isFile()) {
+			try {
+				load();
+			}
+			catch (IOException | RuntimeException e) {
+				// An unreadable manifest just means everything gets rebuilt
+				_entries.clear();
+			}
+		}
+	}
+	
+	/*
+	 * Returns true if the source file has the same content as when it was
+	 * last compiled, and each of its outputs still exists unchanged
+	 */
+	public boolean isUpToDate(File sourceFile, String sourceHash, List<File> outputFiles) throws IOException {
+		Entry entry = _entries.get(sourceFile.getName());
+		if (entry == null || !entry.getSourceHash().equals(sourceHash)) {
+			return false;
+		}
+		if (entry.getOutputHashes().size() != outputFiles.size()) {
+			return false;
+		}
+		for (File outputFile : outputFiles) {
+			String outputHash = entry.getOutputHashes().get(outputFile.getName());
+			if (outputHash == null || !outputFile.isFile() || !outputHash.equals(hashFile(outputFile))) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/*
+	 * Records that the source file with the given hash was just compiled into
+	 * the given output files
+	 */
+	public void record(File sourceFile, String sourceHash, List<File> outputFiles) throws IOException {
+		Map<String, String> outputHashes = new TreeMap<String, String>();
+		for (File outputFile : outputFiles) {
+			outputHashes.put(outputFile.getName(), hashFile(outputFile));
+		}
+		_entries.put(sourceFile.getName(), new Entry(sourceHash, outputHashes));
+	}
+	
+	/*
+	 * Forgets the given source file, so that it is compiled again next time
+	 */
+	public void invalidate(File sourceFile) {
+		_entries.remove(sourceFile.getName());
+	}
+	
+	/*
+	 * Writes the manifest back to disk. Entries for files that were not
+	 * compiled this time are kept, so that compiling a single file does not
+	 * make the rest of its directory look out of date; only entries whose
+	 * source file no longer exists are dropped.
+	 */
+	public void save() throws IOException {
+		File directory = _manifestFile.getAbsoluteFile().getParentFile();
+		List<String> names = new ArrayList<String>();
+		for (String name : _entries.keySet()) {
+			if (new File(directory, name).isFile()) {
+				names.add(name);
+			}
+		}
+		Collections.sort(names);
+		
+		try (BufferedWriter bw = new BufferedWriter(new FileWriter(_manifestFile))) {
+			bw.write(FINGERPRINT_PREFIX + _fingerprint + "\n");
+			for (String name : names) {
+				Entry entry = _entries.get(name);
+				if (entry == null) {
+					continue;
+				}
+				bw.write(name + "\t" + entry.getSourceHash());
+				for (Map.Entry<String, String> output : entry.getOutputHashes().entrySet()) {
+					bw.write("\t" + output.getKey() + "\t" + output.getValue());
+				}
+				bw.write("\n");
+			}
+		}
+	}
+	
+	private void load() throws IOException {
+		try (BufferedReader br = new BufferedReader(new FileReader(_manifestFile))) {
+			String line = br.readLine();
+			if (line == null || !line.equals(FINGERPRINT_PREFIX + _fingerprint)) {
+				return;
+			}
+			while ((line = br.readLine()) != null) {
+				String[] fields = line.split("\t");
+				if (fields.length < 2 || fields.length % 2 != 0) {
+					continue;
+				}
+				Map<String, String> outputHashes = new TreeMap<String, String>();
+				for (int i = 2; i < fields.length; i += 2) {
+					outputHashes.put(fields[i], fields[i + 1]);
+				}
+				_entries.put(fields[0], new Entry(fields[1], outputHashes));
+			}
+		}
+	}
+	
+	/*
+	 * Returns the hex-encoded SHA-256 hash of the file's contents
+	 */
+	public static String hashFile(File file) throws IOException {
+		MessageDigest digest = newDigest();
+		updateDigest(digest, file.toPath());
+		return toHex(digest.digest());
+	}
+	
+	/*
+	 * Returns a fingerprint of the running compiler and of the given options
+	 * description. The compiler is identified by the contents of the jar or
+	 * class directory it was loaded from, so any rebuilt compiler invalidates
+	 * the manifest without anyone having to bump a version number.
+	 */
+	public static String compilerFingerprint(String options) throws IOException {
+		MessageDigest digest = newDigest();
+		
+		CodeSource codeSource = BuildCache.class.getProtectionDomain().getCodeSource();
+		if (codeSource != null && codeSource.getLocation() != null) {
+			Path location;
+			try {
+				location = Paths.get(codeSource.getLocation().toURI());
+			}
+			catch (URISyntaxException use) {
+				throw new IOException(use);
+			}
+			if (Files.isDirectory(location)) {
+				List<Path> classFiles = new ArrayList<Path>();
+				addClassFiles(location, classFiles);
+				Collections.sort(classFiles);
+				for (Path classFile : classFiles) {
+					digest.update(location.relativize(classFile).toString().getBytes("UTF-8"));
+					updateDigest(digest, classFile);
+				}
+			}
+			else {
+				updateDigest(digest, location);
+			}
+		}
+		digest.update(options.getBytes("UTF-8"));
+		
+		return toHex(digest.digest());
+	}
+	
+	/*
+	 * Adds the class files in the given directory and its subdirectories to classFiles
+	 */
+	private static void addClassFiles(Path directory, List<Path> classFiles) throws IOException {
+		try (DirectoryStream<Path> paths = Files.newDirectoryStream(directory)) {
+			for (Path path : paths) {
+				if (Files.isDirectory(path)) {
+					addClassFiles(path, classFiles);
+				}
+				else if (path.toString().endsWith(".class")) {
+					classFiles.add(path);
+				}
+			}
+		}
+	}
+	
+	private static MessageDigest newDigest() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		}
+		catch (NoSuchAlgorithmException nsae) {
+			// Every Java platform is required to support SHA-256
+			throw new IllegalStateException(nsae);
+		}
+	}
+	
+	private static void updateDigest(MessageDigest digest, Path path) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			ByteBuffer buffer = ByteBuffer.allocate(HASH_BUFFER_SIZE);
+			while (channel.read(buffer) >= 0) {
+				buffer.flip();
+				digest.update(buffer);
+				buffer.clear();
+			}
+		}
+	}
+	
+	private static String toHex(byte[] bytes) {
+		StringBuilder sb = new StringBuilder(bytes.length * 2);
+		for (byte b : bytes) {
+			sb.append(HEX_DIGITS[(b >> 4) & 0xf]);
+			sb.append(HEX_DIGITS[b & 0xf]);
+		}
+		return sb.toString();
+	}
+	
+	private static class Entry {
+		
+		public Entry(String sourceHash, Map<String, String> outputHashes) {
+			_sourceHash = sourceHash;
+			_outputHashes = outputHashes;
+		}
+		
+		public String getSourceHash() {
+			return _sourceHash;
+		}
+		
+		public Map<String, String> getOutputHashes() {
+			return _outputHashes;
+		}
+		
+		private String _sourceHash;
+		private Map<String, String> _outputHashes;
+		
+	}
+	
+	private static final String FINGERPRINT_PREFIX = "fingerprint ";
+	private static final int HASH_BUFFER_SIZE = 64 * 1024;
+	private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+	
+	private File _manifestFile;
+	private String _fingerprint;
+	private Map<String, Entry> _entries;
+	
+}
@@ -0,0 +1,60 @@
+package org.jrao.jacksyntaxanalyzer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ * Root of the syntax tree built for a Jack class
+ */
+public class ClassDec {
+	
+	public ClassDec(String name) {
+		_name = name;
+		_classVarDecs = new ArrayList<ClassVarDec>();
+		_subroutineDecs = new ArrayList<SubroutineDec>();
+		_fieldCount = 0;
+		_staticCount = 0;
+	}
+	
+	public String getName() {
+		return _name;
+	}
+	
+	public List<ClassVarDec> getClassVarDecs() {
+		return _classVarDecs;
+	}
+	
+	public List<SubroutineDec> getSubroutineDecs() {
+		return _subroutineDecs;
+	}
+	
+	/*
+	 * Returns the number of field variables declared by the class, which is
+	 * the size of each of its objects
+	 */
+	public int getFieldCount() {
+		return _fieldCount;
+	}
+	
+	public void setFieldCount(int fieldCount) {
+		_fieldCount = fieldCount;
+	}
+	
+	/*
+	 * Returns the number of static variables declared by the class
+	 */
+	public int getStaticCount() {
+		return _staticCount;
+	}
+	
+	public void setStaticCount(int staticCount) {
+		_staticCount = staticCount;
+	}
+	
+	private String _name;
+	private List<ClassVarDec> _classVarDecs;
+	private List<SubroutineDec> _subroutineDecs;
+	private int _fieldCount;
+	private int _staticCount;
+	
+}
@@ -0,0 +1,35 @@
+package org.jrao.jacksyntaxanalyzer;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/*
+ * Flight Recorder event for CompilationEngine tokenizing and parsing a class
+ */
+@Name("org.jrao.jacksyntaxanalyzer.ClassParse")
+@Label("Parse Jack Class")
+@Category("Jack Compiler")
+@Description("Tokenizing and parsing a Jack class into a syntax tree. The parser asks for each token as it needs it, so tokenizing is included.")
+public class ClassParseEvent extends Event {
+	
+	@Label("File")
+	String fileName;
+	
+	@Label("Class")
+	String className;
+	
+	@Label("Tokens")
+	int tokens;
+	
+	@Label("Bytes Read")
+	@DataAmount(DataAmount.BYTES)
+	long bytes;
+	
+	@Label("Subroutines")
+	int subroutines;
+	
+}
@@ -0,0 +1,36 @@
+package org.jrao.jacksyntaxanalyzer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ * A static or field declaration of one or more variables of the same type
+ */
+public class ClassVarDec {
+	
+	public ClassVarDec(Kind kind, String type) {
+		_kind = kind;
+		_type = type;
+		_variables = new ArrayList<Variable>();
+	}
+	
+	/*
+	 * Returns STATIC or FIELD
+	 */
+	public Kind getKind() {
+		return _kind;
+	}
+	
+	public String getType() {
+		return _type;
+	}
+	
+	public List<Variable> getVariables() {
+		return _variables;
+	}
+	
+	private Kind _kind;
+	private String _type;
+	private List<Variable> _variables;
+	
+}
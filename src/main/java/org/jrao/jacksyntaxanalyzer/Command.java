@@ -0,0 +1,36 @@
+package org.jrao.jacksyntaxanalyzer;
+
+/*
+ * The VM arithmetic-logical commands, each of which pops its operands and
+ * pushes its result
+ */
+public enum Command {
+	ADD,
+	SUB,
+	NEG,
+	EQ,
+	GT,
+	LT,
+	AND,
+	OR,
+	NOT;
+	
+	/*
+	 * Returns the name used for this command in VM code, e.g. "add"
+	 */
+	public String getName() {
+		return toString().toLowerCase();
+	}
+	
+	/*
+	 * Returns the command with the given name in VM code, or null if there is none
+	 */
+	public static Command fromName(String name) {
+		for (Command command : values()) {
+			if (command.getName().equals(name)) {
+				return command;
+			}
+		}
+		return null;
+	}
+}
@@ -0,0 +1,17 @@
+package org.jrao.jacksyntaxanalyzer;
+
+/*
+ * Receives the metrics recorded while compiling each file. Metrics are only
+ * collected when a listener is set on JackCompiler, or when JackAnalyzer is
+ * run with --metrics, so compiling without them costs nothing extra.
+ */
+public interface CompilationListener {
+	
+	/*
+	 * Called once for each file or class, after its outputs are written.
+	 * Files compiled in parallel report from their own threads, so this may
+	 * be called from several threads at once.
+	 */
+	void fileCompiled(FileMetrics metrics);
+	
+}
@@ -0,0 +1,35 @@
+package org.jrao.jacksyntaxanalyzer;
+
+/*
+ * The steps that CompilationEngine times when it records FileMetrics
+ */
+public enum CompilationPhase {
+	/*
+	 * Reading the source file into memory
+	 */
+	READ,
+	/*
+	 * Tokenizing and parsing the source into a syntax tree. The parser asks
+	 * for each token as it needs it, so lexing is timed as part of parsing.
+	 */
+	PARSE,
+	/*
+	 * Writing the XML parse tree
+	 */
+	XML,
+	/*
+	 * Folding constants, generating VM code, and applying peephole rules
+	 */
+	CODEGEN,
+	/*
+	 * Flushing and closing the output files
+	 */
+	FLUSH;
+	
+	/*
+	 * Returns the name used for this phase in metrics reports, e.g. "parse"
+	 */
+	public String getReportName() {
+		return toString().toLowerCase();
+	}
+}
@@ -0,0 +1,47 @@
+package org.jrao.jacksyntaxanalyzer;
+
+/*
+ * The outputs of compiling one Jack class in memory with JackCompiler
+ */
+public class CompilationResult {
+	
+	public CompilationResult(String vm, String xml, String errors) {
+		_vm = vm;
+		_xml = xml;
+		_errors = errors;
+	}
+	
+	/*
+	 * Returns the VM code, or null if it was not requested
+	 */
+	public String getVM() {
+		return _vm;
+	}
+	
+	/*
+	 * Returns the XML parse tree, or null if it was not requested
+	 */
+	public String getXML() {
+		return _xml;
+	}
+	
+	/*
+	 * Returns the error messages reported while compiling, one per line, or
+	 * the empty string if there were none
+	 */
+	public String getErrors() {
+		return _errors;
+	}
+	
+	/*
+	 * Returns true if the class compiled without errors
+	 */
+	public boolean isSuccess() {
+		return _errors.isEmpty();
+	}
+	
+	private String _vm;
+	private String _xml;
+	private String _errors;
+	
+}
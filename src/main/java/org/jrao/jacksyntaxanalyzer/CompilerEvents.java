@@ -0,0 +1,41 @@
+package org.jrao.jacksyntaxanalyzer;
+
+import jdk.jfr.FlightRecorder;
+
+/*
+ * Decides whether the compiler creates its Flight Recorder events
+ * (FileReadEvent, ClassParseEvent, and so on). Loading the first event class
+ * starts up Flight Recorder's machinery, which costs a few hundred
+ * milliseconds, so the event classes are only touched once Flight Recorder
+ * has been started, either with -XX:StartFlightRecording or later with
+ * jcmd JFR.start. A file compiled before then records no events.
+ *
+ * On a JDK without the jdk.jfr API (8 before 8u262), no events are ever
+ * recorded, and the compiler runs as usual.
+ */
+public final class CompilerEvents {
+	
+	public static boolean isEnabled() {
+		return FLIGHT_RECORDER_AVAILABLE && FlightRecorder.isInitialized();
+	}
+	
+	/*
+	 * Returns whether the jdk.jfr API can be used. The first call to
+	 * FlightRecorder resolves the class, and fails if this JDK does not have it.
+	 */
+	private static boolean isFlightRecorderAvailable() {
+		try {
+			FlightRecorder.isInitialized();
+			return true;
+		}
+		catch (LinkageError le) {
+			return false;
+		}
+	}
+	
+	private CompilerEvents() {
+	}
+	
+	private static final boolean FLIGHT_RECORDER_AVAILABLE = isFlightRecorderAvailable();
+	
+}
@@ -0,0 +1,298 @@
+package org.jrao.jacksyntaxanalyzer;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+/*
+ * Command line options for JackAnalyzer
+ */
+public class CompilerOptions {
+	
+	public static final String USAGE =
+			"Usage: java -jar org.jrao.jacksyntaxanalyzer.jar [options] [path-to-jack-source-file-or-directory]\n"
+			+ "Options:\n"
+			+ "  -j, --jobs N     compile up to N files in parallel (0 means one per processor; default 1)\n"
+			+ "  --incremental    skip files whose source and outputs are unchanged since the last build\n"
+			+ "  --metrics FILE   write the time each phase took and the sizes read and written, for each\n"
+			+ "                   file and in total, to FILE as JSON\n"
+			+ "  --output MODE    write vm, xml, or both (default both)\n"
+			+ "  --vm-format FORMAT\n"
+			+ "                   write VM code as text (.jack.vm, the default) or binary (.jack.vmb)\n"
+			+ "  -O0              do not optimize the VM code (default)\n"
+			+ "  -O1              fold constant expressions, branch directly on conditions, and apply every\n"
+			+ "                   peephole rule to the VM code\n"
+			+ "  -O2              as -O1, and also replace multiplication and division by constants with cheaper code\n"
+			+ "  --fold-constants compute constant expressions at compile time\n"
+			+ "  --direct-branches\n"
+			+ "                   jump straight from comparisons in if and while conditions\n"
+			+ "  --strength-reduce\n"
+			+ "                   replace multiplication and division by constants with cheaper code\n"
+			+ "  --pool-strings   build each distinct string constant once and reuse it; only for\n"
+			+ "                   programs that never modify string constants\n"
+			+ "  --no-pool-strings\n"
+			+ "                   build a new String every time a string constant is evaluated (default)\n"
+			+ "  --peephole[=RULES]\n"
+			+ "                   apply the given comma-separated peephole rules, or all of them:\n"
+			+ "                   " + describePeepholeRules() + "\n";
+	
+	/*
+	 * Parses the given command line arguments. Prints an error and the usage
+	 * message and returns null if they are invalid.
+	 */
+	public static CompilerOptions parse(String[] args) {
+		CompilerOptions options = new CompilerOptions();
+		
+		int i = 0;
+		while (i < args.length && args[i].startsWith("-")) {
+			String option = args[i];
+			i++;
+			
+			if (option.equals("-j") || option.equals("--jobs")) {
+				if (i >= args.length) {
+					return usageError("Missing value for " + option);
+				}
+				try {
+					options._jobs = Integer.parseInt(args[i]);
+				}
+				catch (NumberFormatException nfe) {
+					return usageError("Invalid value for " + option + ": " + args[i]);
+				}
+				if (options._jobs < 0) {
+					return usageError("Invalid value for " + option + ": " + args[i]);
+				}
+				if (options._jobs == 0) {
+					options._jobs = Runtime.getRuntime().availableProcessors();
+				}
+				i++;
+			}
+			else if (option.equals("--incremental")) {
+				options._incremental = true;
+			}
+			else if (option.equals("--metrics")) {
+				if (i >= args.length) {
+					return usageError("Missing value for " + option);
+				}
+				options._metricsPath = args[i];
+				i++;
+			}
+			else if (option.equals("-O0") || option.equals("-O1") || option.equals("-O2")) {
+				int level = option.charAt(2) - '0';
+				options._peepholeRules = level >= 1 ? EnumSet.allOf(PeepholeRule.class) : EnumSet.noneOf(PeepholeRule.class);
+				options._foldConstants = level >= 1;
+				options._directBranches = level >= 1;
+				options._strengthReduction = level >= 2;
+			}
+			else if (option.equals("--peephole")) {
+				options._peepholeRules = EnumSet.allOf(PeepholeRule.class);
+			}
+			else if (option.equals("--fold-constants")) {
+				options._foldConstants = true;
+			}
+			else if (option.equals("--direct-branches")) {
+				options._directBranches = true;
+			}
+			else if (option.equals("--strength-reduce")) {
+				options._strengthReduction = true;
+			}
+			else if (option.equals("--pool-strings")) {
+				options._poolStrings = true;
+			}
+			else if (option.equals("--no-pool-strings")) {
+				options._poolStrings = false;
+			}
+			else if (option.startsWith("--peephole=")) {
+				options._peepholeRules = EnumSet.noneOf(PeepholeRule.class);
+				for (String ruleName : option.substring("--peephole=".length()).split(",")) {
+					PeepholeRule rule = PeepholeRule.fromOptionName(ruleName);
+					if (rule == null) {
+						return usageError("Unknown peephole rule: " + ruleName);
+					}
+					options._peepholeRules.add(rule);
+				}
+			}
+			else if (option.equals("--output")) {
+				if (i >= args.length) {
+					return usageError("Missing value for " + option);
+				}
+				switch (args[i]) {
+				case "vm":
+					options._outputMode = OutputMode.VM;
+					break;
+				case "xml":
+					options._outputMode = OutputMode.XML;
+					break;
+				case "both":
+					options._outputMode = OutputMode.BOTH;
+					break;
+				default:
+					return usageError("Invalid value for " + option + ": " + args[i]);
+				}
+				i++;
+			}
+			else if (option.equals("--vm-format")) {
+				if (i >= args.length) {
+					return usageError("Missing value for " + option);
+				}
+				switch (args[i]) {
+				case "text":
+					options._binaryVM = false;
+					break;
+				case "binary":
+					options._binaryVM = true;
+					break;
+				default:
+					return usageError("Invalid value for " + option + ": " + args[i]);
+				}
+				i++;
+			}
+			else {
+				return usageError("Unknown option: " + option);
+			}
+		}
+		
+		if (i != args.length - 1) {
+			return usageError(null);
+		}
+		options._inputPath = args[i];
+		
+		return options;
+	}
+	
+	private static String describePeepholeRules() {
+		StringBuilder sb = new StringBuilder();
+		for (PeepholeRule rule : PeepholeRule.values()) {
+			if (sb.length() > 0) {
+				sb.append(",");
+			}
+			sb.append(rule.getOptionName());
+		}
+		return sb.toString();
+	}
+	
+	private static CompilerOptions usageError(String message) {
+		if (message != null) {
+			System.err.println("Error: " + message);
+		}
+		System.err.print(USAGE);
+		return null;
+	}
+	
+	private CompilerOptions() {
+		_jobs = 1;
+		_incremental = false;
+		_metricsPath = null;
+		_outputMode = OutputMode.BOTH;
+		_binaryVM = false;
+		_peepholeRules = EnumSet.noneOf(PeepholeRule.class);
+		_foldConstants = false;
+		_strengthReduction = false;
+		_directBranches = false;
+		_poolStrings = false;
+	}
+	
+	/*
+	 * Returns the path of the Jack source file or directory to compile,
+	 * relative to the current directory
+	 */
+	public String getInputPath() {
+		return _inputPath;
+	}
+	
+	/*
+	 * Returns the maximum number of files to compile at the same time
+	 */
+	public int getJobs() {
+		return _jobs;
+	}
+	
+	/*
+	 * Returns true if files that have not changed since the last build should be skipped
+	 */
+	public boolean isIncremental() {
+		return _incremental;
+	}
+	
+	/*
+	 * Returns the path of the file to write a metrics report to, relative to
+	 * the current directory, or null if no metrics should be recorded
+	 */
+	public String getMetricsPath() {
+		return _metricsPath;
+	}
+	
+	/*
+	 * Returns which outputs to write for each file
+	 */
+	public OutputMode getOutputMode() {
+		return _outputMode;
+	}
+	
+	/*
+	 * Returns true if VM code should be written in binary (.jack.vmb) rather
+	 * than as text (.jack.vm)
+	 */
+	public boolean isBinaryVM() {
+		return _binaryVM;
+	}
+	
+	/*
+	 * Returns the peephole rules to apply to the generated VM code
+	 */
+	public Set<PeepholeRule> getPeepholeRules() {
+		return _peepholeRules;
+	}
+	
+	/*
+	 * Returns true if constant expressions should be computed at compile time
+	 */
+	public boolean isFoldConstants() {
+		return _foldConstants;
+	}
+	
+	/*
+	 * Returns true if multiplication and division by constants should avoid
+	 * the OS routines where possible
+	 */
+	public boolean isStrengthReduction() {
+		return _strengthReduction;
+	}
+	
+	/*
+	 * Returns true if if and while conditions should jump to their targets
+	 * without computing the condition's value first
+	 */
+	public boolean isDirectBranches() {
+		return _directBranches;
+	}
+	
+	/*
+	 * Returns true if each distinct string constant should be built only once
+	 */
+	public boolean isPoolStrings() {
+		return _poolStrings;
+	}
+	
+	/*
+	 * Returns a description of the options that affect what the compiler
+	 * writes, so that outputs built with different options are never mistaken
+	 * for each other
+	 */
+	public String describeOutputOptions() {
+		return "output=" + _outputMode + " binaryVM=" + _binaryVM + " peephole=" + _peepholeRules + " fold=" + _foldConstants
+				+ " strength=" + _strengthReduction + " directBranches=" + _directBranches
+				+ " poolStrings=" + _poolStrings;
+	}
+	
+	private String _inputPath;
+	private int _jobs;
+	private boolean _incremental;
+	private String _metricsPath;
+	private OutputMode _outputMode;
+	private boolean _binaryVM;
+	private Set<PeepholeRule> _peepholeRules;
+	private boolean _foldConstants;
+	private boolean _strengthReduction;
+	private boolean _directBranches;
+	private boolean _poolStrings;
+	
+}
@@ -0,0 +1,426 @@
+package org.jrao.jacksyntaxanalyzer;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+
+/*
+ * Rewrites the expressions of a syntax tree so that constant subexpressions
+ * are computed at compile time and operations that cannot change a value
+ * (x + 0, x * 1, ...) disappear.
+ *
+ * Jack integers are 16-bit two's complement values and Jack evaluates
+ * operators strictly from left to right, so every fold wraps to 16 bits and
+ * only combines operands that are evaluated next to each other.
+ *
+ * Nested expressions and chains of unary operators are walked with explicit
+ * stacks and lists rather than by recursion, so however deeply they are
+ * nested they cannot overflow the thread stack.
+ */
+public class ConstantFolder {
+	
+	public void foldClass(ClassDec classDec) {
+		for (SubroutineDec subroutineDec : classDec.getSubroutineDecs()) {
+			foldStatements(subroutineDec.getStatements());
+		}
+	}
+	
+	private void foldStatements(List<Statement> statements) {
+		for (Statement statement : statements) {
+			if (statement instanceof LetStatement) {
+				LetStatement let = (LetStatement) statement;
+				if (let.getIndex() != null) {
+					foldExpression(let.getIndex());
+				}
+				foldExpression(let.getValue());
+			}
+			else if (statement instanceof IfStatement) {
+				IfStatement ifStatement = (IfStatement) statement;
+				foldExpression(ifStatement.getCondition());
+				foldStatements(ifStatement.getThenStatements());
+				if (ifStatement.getElseStatements() != null) {
+					foldStatements(ifStatement.getElseStatements());
+				}
+			}
+			else if (statement instanceof WhileStatement) {
+				WhileStatement whileStatement = (WhileStatement) statement;
+				foldExpression(whileStatement.getCondition());
+				foldStatements(whileStatement.getStatements());
+			}
+			else if (statement instanceof DoStatement) {
+				foldArguments(((DoStatement) statement).getCall());
+			}
+			else if (statement instanceof ReturnStatement) {
+				ReturnStatement returnStatement = (ReturnStatement) statement;
+				if (returnStatement.getValue() != null) {
+					foldExpression(returnStatement.getValue());
+				}
+			}
+		}
+	}
+	
+	private void foldArguments(SubroutineCall call) {
+		for (Expression argument : call.getArguments()) {
+			foldExpression(argument);
+		}
+	}
+	
+	/*
+	 * Folds the expression, and every expression nested inside it, in place
+	 */
+	private void foldExpression(Expression expression) {
+		// Every expression comes after the one it is nested in, so folding them
+		// in reverse folds each one's nested expressions before it
+		List<Expression> expressions = nestedExpressions(expression);
+		for (int i = expressions.size() - 1; i >= 0; i--) {
+			foldTerms(expressions.get(i));
+		}
+	}
+	
+	/*
+	 * Returns the expression followed by all the expressions nested inside it,
+	 * each one after the expression it is nested in
+	 */
+	private List<Expression> nestedExpressions(Expression expression) {
+		List<Expression> expressions = new ArrayList<Expression>();
+		Deque<Object> unvisited = new ArrayDeque<Object>();
+		unvisited.push(expression);
+		while (!unvisited.isEmpty()) {
+			Object next = unvisited.pop();
+			if (next instanceof Expression) {
+				expressions.add((Expression) next);
+				for (Term term : ((Expression) next).getTerms()) {
+					unvisited.push(term);
+				}
+			}
+			else if (next instanceof VariableTerm) {
+				if (((VariableTerm) next).getIndex() != null) {
+					unvisited.push(((VariableTerm) next).getIndex());
+				}
+			}
+			else if (next instanceof SubroutineCallTerm) {
+				for (Expression argument : ((SubroutineCallTerm) next).getCall().getArguments()) {
+					unvisited.push(argument);
+				}
+			}
+			else if (next instanceof ParenthesizedTerm) {
+				unvisited.push(((ParenthesizedTerm) next).getExpression());
+			}
+			else if (next instanceof UnaryOpTerm) {
+				unvisited.push(((UnaryOpTerm) next).getTerm());
+			}
+		}
+		return expressions;
+	}
+	
+	/*
+	 * Folds the terms of an expression in place. The expressions nested in
+	 * them must already have been folded.
+	 */
+	private void foldTerms(Expression expression) {
+		List<Term> terms = expression.getTerms();
+		List<Character> operators = expression.getOperators();
+		if (terms.isEmpty()) {
+			return;
+		}
+		
+		List<Term> foldedTerms = new ArrayList<Term>();
+		List<Character> foldedOperators = new ArrayList<Character>();
+		foldedTerms.add(foldTerm(terms.get(0)));
+		
+		for (int i = 1; i < terms.size(); i++) {
+			char operator = operators.get(i - 1);
+			Term term = foldTerm(terms.get(i));
+			Integer right = constantValue(term);
+			
+			// Everything so far is a single term, which may be a constant
+			if (foldedTerms.size() == 1) {
+				Term left = foldedTerms.get(0);
+				Integer leftValue = constantValue(left);
+				if (leftValue != null && right != null) {
+					Term folded = foldBinary(leftValue, operator, right);
+					if (folded != null) {
+						foldedTerms.set(0, folded);
+						continue;
+					}
+				}
+				if (leftValue != null && isLeftIdentity(leftValue, operator)) {
+					foldedTerms.set(0, term);
+					continue;
+				}
+				if (leftValue != null && leftValue == 0 && (operator == '*' || operator == '&') && isPure(term)) {
+					continue;
+				}
+			}
+			
+			if (right != null) {
+				if (isRightIdentity(operator, right)) {
+					continue;
+				}
+				if (right == 0 && (operator == '*' || operator == '&') && isPure(foldedTerms, foldedOperators)) {
+					foldedTerms.clear();
+					foldedOperators.clear();
+					foldedTerms.add(new IntegerConstantTerm(0));
+					continue;
+				}
+				
+				// (x + c1) + c2 is x + (c1 + c2), and likewise for subtraction
+				int last = foldedTerms.size() - 1;
+				Integer lastValue = last > 0 ? constantValue(foldedTerms.get(last)) : null;
+				if (lastValue != null && isAdditive(operator) && isAdditive(foldedOperators.get(last - 1))) {
+					int sum = toShort(signedOperand(foldedOperators.get(last - 1), lastValue) + signedOperand(operator, right));
+					foldedTerms.remove(last);
+					foldedOperators.remove(last - 1);
+					if (sum > 0 || sum == Short.MIN_VALUE) {
+						foldedOperators.add('+');
+						foldedTerms.add(constantTerm(sum));
+					}
+					else if (sum < 0) {
+						foldedOperators.add('-');
+						foldedTerms.add(constantTerm(-sum));
+					}
+					continue;
+				}
+			}
+			
+			foldedOperators.add(operator);
+			foldedTerms.add(term);
+		}
+		
+		terms.clear();
+		terms.addAll(foldedTerms);
+		operators.clear();
+		operators.addAll(foldedOperators);
+	}
+	
+	/*
+	 * Returns the folded form of term, which may be term itself. The
+	 * expressions nested in term must already have been folded.
+	 */
+	private Term foldTerm(Term term) {
+		List<UnaryOpTerm> unaryOpTerms = new ArrayList<UnaryOpTerm>();
+		while (term instanceof UnaryOpTerm) {
+			unaryOpTerms.add((UnaryOpTerm) term);
+			term = ((UnaryOpTerm) term).getTerm();
+		}
+		
+		if (term instanceof ParenthesizedTerm) {
+			Expression expression = ((ParenthesizedTerm) term).getExpression();
+			if (expression.getTerms().size() == 1) {
+				// Parentheses around a single term change nothing
+				term = expression.getTerms().get(0);
+			}
+		}
+		
+		// Apply the unary operators from the innermost out
+		for (int i = unaryOpTerms.size() - 1; i >= 0; i--) {
+			UnaryOpTerm unaryOpTerm = unaryOpTerms.get(i);
+			Integer value = constantValue(term);
+			if (value != null) {
+				if (term instanceof KeywordConstantTerm && unaryOpTerm.getOperator() == '~') {
+					term = new KeywordConstantTerm(value == 0 ? KeyWord.TRUE : KeyWord.FALSE);
+				}
+				else {
+					term = constantTerm(toShort(unaryOpTerm.getOperator() == '-' ? -value : ~value));
+				}
+			}
+			else if (term != unaryOpTerm.getTerm()) {
+				term = new UnaryOpTerm(unaryOpTerm.getOperator(), term);
+			}
+			else {
+				term = unaryOpTerm;
+			}
+		}
+		return term;
+	}
+	
+	/*
+	 * Returns the term that left operator right evaluates to, or null if it
+	 * should be left for the program to compute
+	 */
+	private Term foldBinary(int left, char operator, int right) {
+		switch (operator) {
+		case '+':
+			return constantTerm(toShort(left + right));
+		case '-':
+			return constantTerm(toShort(left - right));
+		case '*':
+			return constantTerm(toShort(left * right));
+		case '/':
+			// Leave division by zero and the one overflowing division to the OS
+			if (right == 0 || (left == Short.MIN_VALUE && right == -1)) {
+				return null;
+			}
+			return constantTerm(toShort(left / right));
+		case '&':
+			return constantTerm(toShort(left & right));
+		case '|':
+			return constantTerm(toShort(left | right));
+		case '<':
+		case '>':
+			// VM translators compare by subtracting, so leave comparisons whose
+			// difference overflows to behave however the platform does
+			if (toShort(left - right) != left - right) {
+				return null;
+			}
+			return booleanTerm(operator == '<' ? left < right : left > right);
+		case '=':
+			return booleanTerm(left == right);
+		default:
+			return null;
+		}
+	}
+	
+	/*
+	 * Returns true if (x operator right) is always x
+	 */
+	private boolean isRightIdentity(char operator, int right) {
+		switch (operator) {
+		case '+':
+		case '-':
+		case '|':
+			return right == 0;
+		case '*':
+		case '/':
+			return right == 1;
+		case '&':
+			return right == -1;
+		default:
+			return false;
+		}
+	}
+	
+	/*
+	 * Returns true if (left operator x) is always x
+	 */
+	private boolean isLeftIdentity(int left, char operator) {
+		switch (operator) {
+		case '+':
+		case '|':
+			return left == 0;
+		case '*':
+			return left == 1;
+		case '&':
+			return left == -1;
+		default:
+			return false;
+		}
+	}
+	
+	private boolean isAdditive(char operator) {
+		return operator == '+' || operator == '-';
+	}
+	
+	private int signedOperand(char operator, int value) {
+		return operator == '-' ? -value : value;
+	}
+	
+	/*
+	 * Returns the value of a folded term if it is known at compile time, or
+	 * null. Folding leaves every constant either as written or in the form
+	 * constantTerm() gives it, so there is no need to look any deeper.
+	 */
+	private static Integer constantValue(Term term) {
+		if (term instanceof IntegerConstantTerm) {
+			return ((IntegerConstantTerm) term).getValue();
+		}
+		if (term instanceof KeywordConstantTerm) {
+			switch (((KeywordConstantTerm) term).getKeyWord()) {
+			case TRUE:
+				return -1;
+			case FALSE:
+			case NULL:
+				return 0;
+			default:
+				return null;
+			}
+		}
+		if (term instanceof UnaryOpTerm && ((UnaryOpTerm) term).getTerm() instanceof IntegerConstantTerm) {
+			UnaryOpTerm unaryOpTerm = (UnaryOpTerm) term;
+			int value = ((IntegerConstantTerm) unaryOpTerm.getTerm()).getValue();
+			return toShort(unaryOpTerm.getOperator() == '-' ? -value : ~value);
+		}
+		return null;
+	}
+	
+	/*
+	 * Returns the shortest term for a 16-bit value. Integer constants in Jack
+	 * are never negative, so negative values are built with '-' or '~'.
+	 */
+	private Term constantTerm(int value) {
+		if (value >= 0) {
+			return new IntegerConstantTerm(value);
+		}
+		if (value == Short.MIN_VALUE) {
+			return new UnaryOpTerm('~', new IntegerConstantTerm(Short.MAX_VALUE));
+		}
+		return new UnaryOpTerm('-', new IntegerConstantTerm(-value));
+	}
+	
+	private Term booleanTerm(boolean value) {
+		return new KeywordConstantTerm(value ? KeyWord.TRUE : KeyWord.FALSE);
+	}
+	
+	/*
+	 * Returns true if evaluating the terms, joined by the given operators, can
+	 * have no side effects, so leaving them out changes nothing but the
+	 * result. Subroutine calls may have side effects, and so may division,
+	 * which calls Sys.error when the divisor is 0.
+	 */
+	static boolean isPure(List<Term> terms, List<Character> operators) {
+		if (!isSafeDivision(terms, operators)) {
+			return false;
+		}
+		Deque<Term> unchecked = new ArrayDeque<Term>(terms);
+		while (!unchecked.isEmpty()) {
+			Term term = unchecked.pop();
+			Expression nested = null;
+			if (term instanceof SubroutineCallTerm) {
+				return false;
+			}
+			if (term instanceof VariableTerm) {
+				nested = ((VariableTerm) term).getIndex();
+			}
+			else if (term instanceof ParenthesizedTerm) {
+				nested = ((ParenthesizedTerm) term).getExpression();
+			}
+			else if (term instanceof UnaryOpTerm) {
+				unchecked.push(((UnaryOpTerm) term).getTerm());
+			}
+			if (nested != null) {
+				if (!isSafeDivision(nested.getTerms(), nested.getOperators())) {
+					return false;
+				}
+				unchecked.addAll(nested.getTerms());
+			}
+		}
+		return true;
+	}
+	
+	static boolean isPure(Term term) {
+		return isPure(Collections.singletonList(term), Collections.<Character>emptyList());
+	}
+	
+	/*
+	 * Returns true if every division among the terms is by a constant other
+	 * than 0, so none of them can fail
+	 */
+	private static boolean isSafeDivision(List<Term> terms, List<Character> operators) {
+		for (int i = 0; i < operators.size(); i++) {
+			if (operators.get(i) == '/') {
+				Integer divisor = constantValue(terms.get(i + 1));
+				if (divisor == null || divisor == 0) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+	
+	private static int toShort(int value) {
+		return (short) value;
+	}
+	
+}
@@ -0,0 +1,58 @@
+package org.jrao.jacksyntaxanalyzer;
+
+/*
+ * What the classes written by JackCorpusGenerator are made of. Every shape
+ * but MIXED puts nearly all of a class's size into one feature, so that the
+ * cost of that feature can be measured as it grows.
+ */
+public enum CorpusShape {
+	/*
+	 * Subroutines with a few locals and a random mix of statements and
+	 * expressions, like ordinary Jack code
+	 */
+	MIXED,
+	/*
+	 * Many small subroutines
+	 */
+	SUBROUTINES,
+	/*
+	 * One subroutine with many local variables, each of which is used
+	 */
+	LOCALS,
+	/*
+	 * One subroutine made of deeply nested if and while statements, in nests
+	 * of up to a thousand levels
+	 */
+	NESTING,
+	/*
+	 * One subroutine made of a single very long expression
+	 */
+	EXPRESSION,
+	/*
+	 * One subroutine that prints a very long string constant
+	 */
+	STRING,
+	/*
+	 * A very long block comment followed by one small subroutine
+	 */
+	COMMENT;
+	
+	/*
+	 * Returns the name used for this shape on the command line, e.g. "mixed"
+	 */
+	public String getOptionName() {
+		return toString().toLowerCase();
+	}
+	
+	/*
+	 * Returns the shape with the given command line name, or null if there is none
+	 */
+	public static CorpusShape fromOptionName(String optionName) {
+		for (CorpusShape shape : values()) {
+			if (shape.getOptionName().equals(optionName)) {
+				return shape;
+			}
+		}
+		return null;
+	}
+}
@@ -0,0 +1,18 @@
+package org.jrao.jacksyntaxanalyzer;
+
+/*
+ * do subroutineCall ';'
+ */
+public class DoStatement extends Statement {
+	
+	public DoStatement(SubroutineCall call) {
+		_call = call;
+	}
+	
+	public SubroutineCall getCall() {
+		return _call;
+	}
+	
+	private SubroutineCall _call;
+	
+}
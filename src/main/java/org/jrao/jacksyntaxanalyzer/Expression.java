@@ -0,0 +1,32 @@
+package org.jrao.jacksyntaxanalyzer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ * term (op term)*
+ *
+ * Jack has no operator precedence, so an expression is kept as the flat
+ * sequence of its terms and the operators between them, evaluated left to
+ * right. getOperators().get(i) is applied between the result so far and
+ * getTerms().get(i + 1).
+ */
+public class Expression {
+	
+	public Expression() {
+		_terms = new ArrayList<Term>();
+		_operators = new ArrayList<Character>();
+	}
+	
+	public List<Term> getTerms() {
+		return _terms;
+	}
+	
+	public List<Character> getOperators() {
+		return _operators;
+	}
+	
+	private List<Term> _terms;
+	private List<Character> _operators;
+	
+}
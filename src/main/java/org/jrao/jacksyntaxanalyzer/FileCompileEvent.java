@@ -0,0 +1,30 @@
+package org.jrao.jacksyntaxanalyzer;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/*
+ * Flight Recorder event for JackAnalyzer compiling one file. The other
+ * events of the file fall within it.
+ */
+@Name("org.jrao.jacksyntaxanalyzer.FileCompile")
+@Label("Compile Jack File")
+@Category("Jack Compiler")
+@Description("Compiling one Jack file from start to finish, as JackAnalyzer does")
+public class FileCompileEvent extends Event {
+	
+	@Label("File")
+	String fileName;
+	
+	@Label("Source Size")
+	@DataAmount(DataAmount.BYTES)
+	long bytes;
+	
+	@Label("Success")
+	boolean success;
+	
+}
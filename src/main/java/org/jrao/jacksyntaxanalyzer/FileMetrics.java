@@ -0,0 +1,122 @@
+package org.jrao.jacksyntaxanalyzer;
+
+/*
+ * What was measured while compiling one file: the wall time of each
+ * CompilationPhase, and how much went in and came out. Sizes that could not
+ * be measured, such as those of outputs the compiler does not own, are 0.
+ */
+public class FileMetrics {
+	
+	/*
+	 * Creates empty metrics for the given source file, which is null when the
+	 * source was not read from a file
+	 */
+	public FileMetrics(String fileName) {
+		_fileName = fileName;
+		_phaseNanos = new long[CompilationPhase.values().length];
+	}
+	
+	public String getFileName() {
+		return _fileName;
+	}
+	
+	/*
+	 * Returns the name of the class compiled, or null if it could not be parsed
+	 */
+	public String getClassName() {
+		return _className;
+	}
+	
+	void setClassName(String className) {
+		_className = className;
+	}
+	
+	/*
+	 * Returns the wall time spent in the given phase, in nanoseconds
+	 */
+	public long getNanos(CompilationPhase phase) {
+		return _phaseNanos[phase.ordinal()];
+	}
+	
+	/*
+	 * Returns the wall time spent in all phases, in nanoseconds
+	 */
+	public long getTotalNanos() {
+		long total = 0;
+		for (long nanos : _phaseNanos) {
+			total += nanos;
+		}
+		return total;
+	}
+	
+	void addNanos(CompilationPhase phase, long nanos) {
+		_phaseNanos[phase.ordinal()] += nanos;
+	}
+	
+	public int getTokens() {
+		return _tokens;
+	}
+	
+	void setTokens(int tokens) {
+		_tokens = tokens;
+	}
+	
+	public long getBytesIn() {
+		return _bytesIn;
+	}
+	
+	void setBytesIn(long bytesIn) {
+		_bytesIn = bytesIn;
+	}
+	
+	public long getVMBytesOut() {
+		return _vmBytesOut;
+	}
+	
+	void setVMBytesOut(long vmBytesOut) {
+		_vmBytesOut = vmBytesOut;
+	}
+	
+	public long getXMLBytesOut() {
+		return _xmlBytesOut;
+	}
+	
+	void setXMLBytesOut(long xmlBytesOut) {
+		_xmlBytesOut = xmlBytesOut;
+	}
+	
+	/*
+	 * Returns the number of VM commands generated, before any peephole rules
+	 * were applied
+	 */
+	public long getVMCommandsGenerated() {
+		return _vmCommandsGenerated;
+	}
+	
+	void setVMCommandsGenerated(long vmCommandsGenerated) {
+		_vmCommandsGenerated = vmCommandsGenerated;
+	}
+	
+	/*
+	 * Returns the number of VM commands written, after any peephole rules
+	 * were applied
+	 */
+	public long getVMCommandsWritten() {
+		return _vmCommandsWritten;
+	}
+	
+	void setVMCommandsWritten(long vmCommandsWritten) {
+		_vmCommandsWritten = vmCommandsWritten;
+	}
+	
+	private String _fileName;
+	private String _className;
+	private long[] _phaseNanos;
+	private int _tokens;
+	private long _bytesIn;
+	private long _vmBytesOut;
+	private long _xmlBytesOut;
+	private long _vmCommandsGenerated;
+	private long _vmCommandsWritten;
+	
+}
@@ -0,0 +1,26 @@
+package org.jrao.jacksyntaxanalyzer;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/*
+ * Flight Recorder event for CompilationEngine reading a source file
+ */
+@Name("org.jrao.jacksyntaxanalyzer.FileRead")
+@Label("Read Jack File")
+@Category("Jack Compiler")
+@Description("Reading a Jack source file into memory")
+public class FileReadEvent extends Event {
+	
+	@Label("File")
+	String fileName;
+	
+	@Label("Bytes Read")
+	@DataAmount(DataAmount.BYTES)
+	long bytes;
+	
+}
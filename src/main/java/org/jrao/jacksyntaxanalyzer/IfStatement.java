@@ -0,0 +1,35 @@
+package org.jrao.jacksyntaxanalyzer;
+
+import java.util.List;
+
+/*
+ * if '(' expression ')' '{' statements '}' (else '{' statements '}')?
+ */
+public class IfStatement extends Statement {
+	
+	public IfStatement(Expression condition, List<Statement> thenStatements, List<Statement> elseStatements) {
+		_condition = condition;
+		_thenStatements = thenStatements;
+		_elseStatements = elseStatements;
+	}
+	
+	public Expression getCondition() {
+		return _condition;
+	}
+	
+	public List<Statement> getThenStatements() {
+		return _thenStatements;
+	}
+	
+	/*
+	 * Returns the statements of the else branch, or null if there is no else branch
+	 */
+	public List<Statement> getElseStatements() {
+		return _elseStatements;
+	}
+	
+	private Expression _condition;
+	private List<Statement> _thenStatements;
+	private List<Statement> _elseStatements;
+	
+}
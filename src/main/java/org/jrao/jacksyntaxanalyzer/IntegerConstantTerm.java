@@ -0,0 +1,15 @@
+package org.jrao.jacksyntaxanalyzer;
+
+public class IntegerConstantTerm extends Term {
+	
+	public IntegerConstantTerm(int value) {
+		_value = value;
+	}
+	
+	public int getValue() {
+		return _value;
+	}
+	
+	private int _value;
+	
+}
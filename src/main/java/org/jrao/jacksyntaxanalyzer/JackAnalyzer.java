@@ -1,24 +1,34 @@
 package org.jrao.jacksyntaxanalyzer;
 
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileWriter;
 import java.io.FilenameFilter;
 import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Writer;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 public class JackAnalyzer {
 
 	public static void main(String[] args) {
         System.out.println("Welcome to org.jrao.jacksyntaxanalyzer!\n");
         
-        if (args.length < 1) {
-        	System.err.println("Usage: java -jar org.jrao.jacksyntaxanalyzer.jar [path-to-jack-source-file-or-directory]");
+        CompilerOptions options = CompilerOptions.parse(args);
+        if (options == null) {
         	return;
         }
         
 		String currentPathString = Paths.get("").toAbsolutePath().toString();
-		String inputPathString = currentPathString + "/" + args[0];
+		String inputPathString = currentPathString + "/" + options.getInputPath();
         File inputFile = new File(inputPathString);
         
         List<File> jackFiles = new ArrayList<File>();
@@ -45,38 +55,272 @@ public class JackAnalyzer {
         	System.err.println("Error: no Jack files found!");
         	return;
         }
-        for (File jackFile : jackFiles) {
-			String jackFilePathString = jackFile.getAbsolutePath();
-			String outputFilePathString = jackFilePathString.concat(".xml");
-			File outputFile = new File(outputFilePathString);
-			
-			CompilationEngine compilationEngine = null;
+        Collections.sort(jackFiles);
+        
+        BuildCache buildCache = null;
+        if (options.isIncremental()) {
+        	File directory = inputFile.isFile() ? inputFile.getParentFile() : inputFile;
+        	try {
+        		buildCache = new BuildCache(directory, BuildCache.compilerFingerprint(options.describeOutputOptions()));
+        	}
+        	catch (IOException ioe) {
+        		System.err.println("Failed to read build cache, compiling all files!");
+        		ioe.printStackTrace();
+        	}
+        }
+        
+        MetricsReport metricsReport = (options.getMetricsPath() != null) ? new MetricsReport() : null;
+        long buildStart = System.nanoTime();
+        boolean success = compileFiles(jackFiles, options, buildCache, metricsReport);
+        long buildNanos = System.nanoTime() - buildStart;
+        
+        if (buildCache != null) {
+        	try {
+        		buildCache.save();
+        	}
+        	catch (IOException ioe) {
+        		System.err.println("Failed to write build cache!");
+        		ioe.printStackTrace();
+        	}
+        }
+        
+        if (metricsReport != null) {
+        	try (Writer metricsWriter = new BufferedWriter(new FileWriter(options.getMetricsPath()))) {
+        		metricsReport.writeJSON(metricsWriter, buildNanos);
+        	}
+        	catch (IOException ioe) {
+        		System.err.println("Failed to write metrics!");
+        		ioe.printStackTrace();
+        	}
+        }
+        
+        if (!success) {
+        	System.exit(1);
+        }
+	}
+	
+	/*
+	 * Compiles the given files, up to options.getJobs() of them at a time. Each file's
+	 * error messages are collected separately and reported together, in file
+	 * order, so the output does not depend on how the files were scheduled.
+	 * Returns true if every file compiled without errors. A file whose
+	 * compilation throws is reported as failed with the exception, and the
+	 * other files are still compiled and reported.
+	 *
+	 * If a build cache is given, files it reports as up to date are skipped,
+	 * and each file that compiles cleanly is recorded in it. If a listener is
+	 * given, it receives the metrics of each file that is compiled.
+	 */
+	static boolean compileFiles(List<File> jackFiles, final CompilerOptions options, final BuildCache buildCache,
+			final CompilationListener listener) {
+		List<ByteArrayOutputStream> errorOutputs = new ArrayList<ByteArrayOutputStream>();
+		List<Callable<Boolean>> tasks = new ArrayList<Callable<Boolean>>();
+		for (final File jackFile : jackFiles) {
+			final ByteArrayOutputStream errorOutput = new ByteArrayOutputStream();
+			errorOutputs.add(errorOutput);
+			tasks.add(new Callable<Boolean>() {
+				@Override
+				public Boolean call() {
+					PrintStream err = new PrintStream(errorOutput, true);
+					try {
+						if (buildCache == null) {
+							return compileFile(jackFile, options, err, listener);
+						}
+						return compileFileIncrementally(jackFile, options, buildCache, err, listener);
+					}
+					catch (RuntimeException re) {
+						reportCrash(err, re);
+						return false;
+					}
+				}
+			});
+		}
+		
+		List<Boolean> results = new ArrayList<Boolean>();
+		int jobs = options.getJobs();
+		if (jobs <= 1 || jackFiles.size() == 1) {
+			for (int i = 0; i < tasks.size(); i++) {
+				try {
+					results.add(tasks.get(i).call());
+				}
+				catch (Exception e) {
+					reportCrash(new PrintStream(errorOutputs.get(i), true), e);
+					results.add(false);
+				}
+			}
+		}
+		else {
+			ForkJoinPool pool = new ForkJoinPool(jobs);
 			try {
-				compilationEngine = new CompilationEngine(jackFile, outputFile);
+				List<Future<Boolean>> futures = new ArrayList<Future<Boolean>>();
+				for (Callable<Boolean> task : tasks) {
+					futures.add(pool.submit(task));
+				}
+				for (int i = 0; i < futures.size(); i++) {
+					try {
+						results.add(futures.get(i).get());
+					}
+					catch (ExecutionException ee) {
+						reportCrash(new PrintStream(errorOutputs.get(i), true), ee.getCause());
+						results.add(false);
+					}
+					catch (InterruptedException ie) {
+						throw new IllegalStateException(ie);
+					}
+				}
 			}
-			catch (IOException ioe) {
-				System.err.println("Failed to create tokenizer!");
-				ioe.printStackTrace();
-				return;
+			finally {
+				pool.shutdown();
 			}
-
-			try {
-				compilationEngine.compileClass();
+		}
+		
+		boolean success = true;
+		for (int i = 0; i < jackFiles.size(); i++) {
+			String errors = errorOutputs.get(i).toString();
+			if (!errors.isEmpty()) {
+				for (String line : errors.split("\n")) {
+					System.err.println(jackFiles.get(i).getName() + ": " + line);
+				}
 			}
-			catch (IOException ioe) {
-				System.err.println("Failed to compile class!");
-				ioe.printStackTrace();
-				return;
+			if (!results.get(i) || !errors.isEmpty()) {
+				success = false;
+			}
+		}
+		return success;
+	}
+	
+	/*
+	 * Reports an exception thrown while compiling a file to that file's errors
+	 */
+	private static void reportCrash(PrintStream err, Throwable t) {
+		err.println("Failed to compile class!");
+		t.printStackTrace(err);
+	}
+	
+	/*
+	 * Compiles a single Jack file unless the build cache shows that neither
+	 * it nor its outputs have changed since it was last compiled
+	 */
+	private static boolean compileFileIncrementally(File jackFile, CompilerOptions options, BuildCache buildCache, PrintStream err,
+			CompilationListener listener) {
+		List<File> outputFiles = outputFilesFor(jackFile, options);
+		String sourceHash;
+		try {
+			sourceHash = BuildCache.hashFile(jackFile);
+			if (buildCache.isUpToDate(jackFile, sourceHash, outputFiles)) {
+				return true;
 			}
-			
+		}
+		catch (IOException ioe) {
+			err.println("Failed to check build cache!");
+			ioe.printStackTrace(err);
+			return false;
+		}
+		
+		buildCache.invalidate(jackFile);
+		ByteArrayOutputStream errorOutput = new ByteArrayOutputStream();
+		boolean success = compileFile(jackFile, options, new PrintStream(errorOutput, true), listener);
+		err.print(errorOutput.toString());
+		if (success && errorOutput.size() == 0) {
 			try {
-				compilationEngine.close();
+				buildCache.record(jackFile, sourceHash, outputFiles);
 			}
 			catch (IOException ioe) {
-				System.err.println("Failed to close compilation engine!");
-				ioe.printStackTrace();
+				err.println("Failed to update build cache!");
+				ioe.printStackTrace(err);
 			}
-        }
+		}
+		return success;
+	}
+	
+	/*
+	 * Returns the files written when compiling the given Jack file with the given options
+	 */
+	private static List<File> outputFilesFor(File jackFile, CompilerOptions options) {
+		String jackFilePathString = jackFile.getAbsolutePath();
+		List<File> outputFiles = new ArrayList<File>();
+		if (options.getOutputMode().writesXML()) {
+			outputFiles.add(new File(jackFilePathString.concat(".xml")));
+		}
+		if (options.getOutputMode().writesVM()) {
+			outputFiles.add(new File(jackFilePathString.concat(options.isBinaryVM() ? ".vmb" : ".vm")));
+		}
+		return outputFiles;
+	}
+	
+	/*
+	 * Compiles a single Jack file, reporting any errors to err, and its
+	 * metrics to listener if there is one, and records it as a Flight Recorder
+	 * FileCompileEvent. Returns false if the file could not be compiled.
+	 */
+	private static boolean compileFile(File jackFile, CompilerOptions options, PrintStream err, CompilationListener listener) {
+		if (!CompilerEvents.isEnabled()) {
+			return runCompilationEngine(jackFile, options, err, listener);
+		}
+		
+		FileCompileEvent event = new FileCompileEvent();
+		event.begin();
+		boolean success = runCompilationEngine(jackFile, options, err, listener);
+		event.end();
+		if (event.shouldCommit()) {
+			event.fileName = jackFile.getName();
+			event.bytes = jackFile.length();
+			event.success = success;
+			event.commit();
+		}
+		return success;
+	}
+	
+	private static boolean runCompilationEngine(File jackFile, CompilerOptions options, PrintStream err,
+			CompilationListener listener) {
+		String jackFilePathString = jackFile.getAbsolutePath();
+		String outputFilePathString = jackFilePathString.concat(".xml");
+		File outputFile = new File(outputFilePathString);
+		
+		CompilationEngine compilationEngine = null;
+		try {
+			compilationEngine = new CompilationEngine(jackFile, outputFile, options.getOutputMode(), options.isBinaryVM());
+		}
+		catch (IOException ioe) {
+			err.println("Failed to create tokenizer!");
+			ioe.printStackTrace(err);
+			return false;
+		}
+		compilationEngine.setErrorStream(err);
+		compilationEngine.setPeepholeRules(options.getPeepholeRules());
+		compilationEngine.setFoldConstants(options.isFoldConstants());
+		compilationEngine.setStrengthReduction(options.isStrengthReduction());
+		compilationEngine.setDirectBranches(options.isDirectBranches());
+		compilationEngine.setPoolStrings(options.isPoolStrings());
+		FileMetrics metrics = null;
+		if (listener != null) {
+			metrics = new FileMetrics(jackFile.getName());
+			compilationEngine.setMetrics(metrics);
+		}
+		
+		boolean success = true;
+		try {
+			compilationEngine.compileClass();
+		}
+		catch (IOException ioe) {
+			err.println("Failed to compile class!");
+			ioe.printStackTrace(err);
+			success = false;
+		}
+		
+		try {
+			compilationEngine.close();
+		}
+		catch (IOException ioe) {
+			err.println("Failed to close compilation engine!");
+			ioe.printStackTrace(err);
+			success = false;
+		}
+		
+		if (metrics != null) {
+			listener.fileCompiled(metrics);
+		}
+		return success;
 	}
 
 }
@@ -54,8 +54,26 @@ public class JackAnalyzerTokenizerOnly {
 				return;
 			}
 			
+			String outputFilePathString = jackFile.getAbsolutePath();
+			if (outputFilePathString.endsWith(".jack")) {
+				outputFilePathString = outputFilePathString.substring(0, outputFilePathString.length() - ".jack".length());
+			}
+			outputFilePathString = outputFilePathString.concat("T.xml");
+			
+			XMLTokenWriter tokenWriter = null;
+			try {
+				tokenWriter = new XMLTokenWriter(new File(outputFilePathString));
+			}
+			catch (IOException ioe) {
+				System.err.println("Failed to create writer!");
+				
+				ioe.printStackTrace();
+				
+				return;
+			}
+			
 			try {
-				tokenizer.writeXML();
+				tokenizer.writeTokens(tokenWriter);
 				System.out.println("Wrote XML!");
 			}
 			catch (IOException ieo) {
@@ -63,7 +81,7 @@ public class JackAnalyzerTokenizerOnly {
 			}
 			
 			try {
-				tokenizer.close();
+				tokenWriter.close();
 			}
 			catch (IOException ioe) {
 				System.err.println("Failed to close writer!");
@@ -0,0 +1,209 @@
+package org.jrao.jacksyntaxanalyzer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.EnumSet;
+import java.util.Set;
+
+/*
+ * Compiles Jack classes held in memory, for programs that embed the
+ * compiler. Nothing is read from or written to the filesystem: the source
+ * comes from a string, reader, or buffer, and the VM code and XML parse tree
+ * are either returned as strings or passed to outputs the caller supplies.
+ *
+ * A JackCompiler only holds options, so one instance can compile any number
+ * of classes, and can be shared between threads once it is configured.
+ */
+public class JackCompiler {
+	
+	/*
+	 * Creates a compiler that writes only VM code and does not optimize it
+	 */
+	public JackCompiler() {
+		_outputMode = OutputMode.VM;
+		_peepholeRules = EnumSet.noneOf(PeepholeRule.class);
+		_foldConstants = false;
+		_strengthReduction = false;
+		_directBranches = false;
+		_poolStrings = false;
+		_listener = null;
+	}
+	
+	/*
+	 * Takes the output mode and code generation settings from options parsed
+	 * from a JackAnalyzer command line
+	 */
+	public void setOptions(CompilerOptions options) {
+		_outputMode = options.getOutputMode();
+		_peepholeRules = options.getPeepholeRules();
+		_foldConstants = options.isFoldConstants();
+		_strengthReduction = options.isStrengthReduction();
+		_directBranches = options.isDirectBranches();
+		_poolStrings = options.isPoolStrings();
+	}
+	
+	/*
+	 * Sets which outputs compile() returns (VM only by default)
+	 */
+	public void setOutputMode(OutputMode outputMode) {
+		_outputMode = outputMode;
+	}
+	
+	/*
+	 * Sets the peephole rules applied to the generated VM code (none by default)
+	 */
+	public void setPeepholeRules(Set<PeepholeRule> peepholeRules) {
+		_peepholeRules = peepholeRules;
+	}
+	
+	/*
+	 * Sets whether constant expressions are computed at compile time (off by default)
+	 */
+	public void setFoldConstants(boolean foldConstants) {
+		_foldConstants = foldConstants;
+	}
+	
+	/*
+	 * Sets whether multiplication and division by constants avoid the OS
+	 * routines where a short inline sequence will do (off by default)
+	 */
+	public void setStrengthReduction(boolean strengthReduction) {
+		_strengthReduction = strengthReduction;
+	}
+	
+	/*
+	 * Sets whether if and while conditions jump straight to their targets
+	 * (off by default)
+	 */
+	public void setDirectBranches(boolean directBranches) {
+		_directBranches = directBranches;
+	}
+	
+	/*
+	 * Sets whether each distinct string constant is built once per class
+	 * (off by default)
+	 */
+	public void setPoolStrings(boolean poolStrings) {
+		_poolStrings = poolStrings;
+	}
+	
+	/*
+	 * Sets the listener that receives the metrics of each class compiled, or
+	 * null to record no metrics (the default). A compiler shared between
+	 * threads needs a listener that is safe to call from all of them.
+	 */
+	public void setListener(CompilationListener listener) {
+		_listener = listener;
+	}
+	
+	/*
+	 * Compiles the Jack class in source. Characters are taken as Latin-1, the
+	 * same way the tokenizer reads the bytes of a source file.
+	 */
+	public CompilationResult compile(CharSequence source) {
+		return compile(StandardCharsets.ISO_8859_1.encode(CharBuffer.wrap(source)));
+	}
+	
+	/*
+	 * Compiles the Jack class read from source, which the caller remains
+	 * responsible for closing
+	 */
+	public CompilationResult compile(Reader source) throws IOException {
+		StringBuilder sb = new StringBuilder();
+		char[] chars = new char[READ_BUFFER_SIZE];
+		int count;
+		while ((count = source.read(chars)) >= 0) {
+			sb.append(chars, 0, count);
+		}
+		return compile(sb);
+	}
+	
+	/*
+	 * Compiles the Jack class in the remaining bytes of source, which is read
+	 * in place and never modified
+	 */
+	public CompilationResult compile(ByteBuffer source) {
+		ByteArrayOutputStream errors = new ByteArrayOutputStream();
+		PrintStream err = new PrintStream(errors, true);
+		StringWriter xml = _outputMode.writesXML() ? new StringWriter() : null;
+		ByteArrayOutputStream vm = _outputMode.writesVM() ? new ByteArrayOutputStream() : null;
+		
+		FileMetrics metrics = (_listener != null) ? new FileMetrics(null) : null;
+		
+		try {
+			VMWriter vmWriter = null;
+			if (vm != null) {
+				vmWriter = new VMWriter(Channels.newChannel(vm));
+				vmWriter.setErrorStream(err);
+			}
+			compile(source, vmWriter, xml, err, metrics);
+		}
+		catch (IOException ioe) {
+			// Writing to memory never fails, so this can only be a bug
+			throw new IllegalStateException(ioe);
+		}
+		
+		if (metrics != null) {
+			metrics.setVMBytesOut(vm == null ? 0 : vm.size());
+			metrics.setXMLBytesOut(xml == null ? 0 : xml.getBuffer().length());
+			_listener.fileCompiled(metrics);
+		}
+		
+		return new CompilationResult(vm == null ? null : new String(vm.toByteArray(), StandardCharsets.ISO_8859_1),
+				xml == null ? null : xml.toString(), errors.toString());
+	}
+	
+	/*
+	 * Compiles the Jack class in the remaining bytes of source, passing its VM
+	 * code to vmOutput and writing its XML parse tree to xmlOutput, and
+	 * reporting errors to err. Either output may be null, in which case it is
+	 * not generated; the output mode is not used. vmOutput is flushed, but
+	 * neither output is closed. Returns true if no errors were reported.
+	 */
+	public boolean compile(ByteBuffer source, VMCommandSink vmOutput, Writer xmlOutput, PrintStream err) throws IOException {
+		FileMetrics metrics = (_listener != null) ? new FileMetrics(null) : null;
+		boolean success = compile(source, vmOutput, xmlOutput, err, metrics);
+		if (metrics != null) {
+			_listener.fileCompiled(metrics);
+		}
+		return success;
+	}
+	
+	private boolean compile(ByteBuffer source, VMCommandSink vmOutput, Writer xmlOutput, PrintStream err,
+			FileMetrics metrics) throws IOException {
+		ByteArrayOutputStream errorOutput = new ByteArrayOutputStream();
+		CompilationEngine compilationEngine = new CompilationEngine(new JackTokenizer(source), xmlOutput, vmOutput);
+		compilationEngine.setErrorStream(new PrintStream(errorOutput, true));
+		compilationEngine.setPeepholeRules(_peepholeRules);
+		compilationEngine.setFoldConstants(_foldConstants);
+		compilationEngine.setStrengthReduction(_strengthReduction);
+		compilationEngine.setDirectBranches(_directBranches);
+		compilationEngine.setPoolStrings(_poolStrings);
+		compilationEngine.setMetrics(metrics);
+		
+		compilationEngine.compileClass();
+		compilationEngine.close();
+		
+		err.print(errorOutput.toString());
+		return errorOutput.size() == 0;
+	}
+	
+	private static final int READ_BUFFER_SIZE = 8 * 1024;
+	
+	private OutputMode _outputMode;
+	private Set<PeepholeRule> _peepholeRules;
+	private boolean _foldConstants;
+	private boolean _strengthReduction;
+	private boolean _directBranches;
+	private boolean _poolStrings;
+	private CompilationListener _listener;
+	
+}
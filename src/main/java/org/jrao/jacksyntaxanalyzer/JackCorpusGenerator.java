@@ -0,0 +1,485 @@
+package org.jrao.jacksyntaxanalyzer;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Random;
+
+/*
+ * Writes synthetic Jack classes for benchmarks and scaling experiments.
+ * Every class is valid Jack that compiles without errors, and its shape
+ * (see CorpusShape) decides which part of the compiler it stresses: the
+ * tokenizer with long strings and comments, the symbol table with many
+ * locals, or the parser and code generator with many subroutines, deep
+ * nesting, or long expressions. All choices come from a seeded Random, so
+ * the same seed and options always produce the same classes.
+ */
+public class JackCorpusGenerator {
+	
+	public static final String USAGE =
+			"Usage: java -cp org.jrao.jacksyntaxanalyzer.jar org.jrao.jacksyntaxanalyzer.JackCorpusGenerator [options] output-directory\n"
+			+ "Options:\n"
+			+ "  --seed N         seed for the generator's random choices (default 1)\n"
+			+ "  --shape SHAPE    what the classes are made of (default mixed):\n"
+			+ "                   " + describeShapes() + "\n"
+			+ "  --size BYTES     approximate size of each class, optionally followed by k or m\n"
+			+ "                   (default 10k)\n"
+			+ "  --classes N      number of classes to write (default 1)\n";
+	
+	public static void main(String[] args) {
+		long seed = 1;
+		CorpusShape shape = CorpusShape.MIXED;
+		int size = 10 * 1024;
+		int classCount = 1;
+		
+		int i = 0;
+		while (i < args.length && args[i].startsWith("-")) {
+			String option = args[i];
+			i++;
+			if (i >= args.length) {
+				usageError("Missing value for " + option);
+			}
+			String value = args[i];
+			i++;
+			
+			try {
+				if (option.equals("--seed")) {
+					seed = Long.parseLong(value);
+				}
+				else if (option.equals("--shape")) {
+					shape = CorpusShape.fromOptionName(value);
+					if (shape == null) {
+						usageError("Unknown shape: " + value);
+					}
+				}
+				else if (option.equals("--size")) {
+					size = parseSize(value);
+				}
+				else if (option.equals("--classes")) {
+					classCount = Integer.parseInt(value);
+				}
+				else {
+					usageError("Unknown option: " + option);
+				}
+			}
+			catch (NumberFormatException nfe) {
+				usageError("Invalid value for " + option + ": " + value);
+			}
+		}
+		if (i != args.length - 1 || size < 0 || classCount < 1) {
+			usageError(null);
+		}
+		
+		File directory = new File(args[i]);
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			System.err.println("Error: Failed to create directory " + directory);
+			System.exit(1);
+		}
+		
+		JackCorpusGenerator generator = new JackCorpusGenerator(seed);
+		long totalBytes = 0;
+		for (int c = 0; c < classCount; c++) {
+			String className = CLASS_NAME_PREFIX + c;
+			byte[] source = generator.generateClass(className, shape, size).getBytes(StandardCharsets.ISO_8859_1);
+			try {
+				Files.write(new File(directory, className + ".jack").toPath(), source);
+			}
+			catch (IOException ioe) {
+				System.err.println("Error: Failed to write " + className + ".jack: " + ioe.getMessage());
+				System.exit(1);
+			}
+			totalBytes += source.length;
+		}
+		System.out.println("Wrote " + classCount + " " + shape.getOptionName() + " classes (" + totalBytes + " bytes) to "
+				+ directory);
+	}
+	
+	public JackCorpusGenerator(long seed) {
+		_random = new Random(seed);
+	}
+	
+	/*
+	 * Returns the source of a class named className, of the given shape, that
+	 * is about targetBytes long. A class is never smaller than the least code
+	 * its shape needs.
+	 */
+	public String generateClass(String className, CorpusShape shape, int targetBytes) {
+		_sb = new StringBuilder(targetBytes + MAX_OVERSHOOT);
+		_sb.append("class ").append(className).append(" {\n");
+		switch (shape) {
+		case MIXED:
+			generateMixed(targetBytes);
+			break;
+		case SUBROUTINES:
+			generateSubroutines(targetBytes);
+			break;
+		case LOCALS:
+			generateLocals(targetBytes);
+			break;
+		case NESTING:
+			generateNesting(targetBytes);
+			break;
+		case EXPRESSION:
+			generateExpression(targetBytes);
+			break;
+		case STRING:
+			generateString(targetBytes);
+			break;
+		case COMMENT:
+			generateComment(targetBytes);
+			break;
+		}
+		_sb.append("}\n");
+		
+		String source = _sb.toString();
+		_sb = null;
+		return source;
+	}
+	
+	private void generateMixed(int targetBytes) {
+		_sb.append("\tfield int x, y;\n");
+		_sb.append("\tfield Array data;\n");
+		_sb.append("\tstatic int count;\n");
+		
+		int subroutineCount = 0;
+		do {
+			_sb.append("\n");
+			_sb.append("\tmethod int run").append(subroutineCount).append("(int a, int b) {\n");
+			_sb.append("\t\tvar int i, j;\n");
+			_sb.append("\t\tvar boolean done;\n");
+			int statementCount = 2 + _random.nextInt(6);
+			for (int s = 0; s < statementCount; s++) {
+				appendStatement(2, subroutineCount + 1, 0);
+			}
+			_sb.append("\t\treturn ");
+			appendExpression(subroutineCount + 1, 0);
+			_sb.append(";\n");
+			_sb.append("\t}\n");
+			subroutineCount++;
+		} while (_sb.length() < targetBytes);
+	}
+	
+	/*
+	 * Appends a random statement, indented by indent tabs, that may call any
+	 * of the first subroutineCount subroutines. Statements stop nesting at
+	 * MAX_STATEMENT_DEPTH.
+	 */
+	private void appendStatement(int indent, int subroutineCount, int depth) {
+		int kind = _random.nextInt(depth < MAX_STATEMENT_DEPTH ? 6 : 3);
+		appendIndent(indent);
+		switch (kind) {
+		case 0:
+			_sb.append("let ").append(pick(INT_VARIABLES)).append(" = ");
+			appendExpression(subroutineCount, 0);
+			_sb.append(";\n");
+			break;
+		case 1:
+			_sb.append("let data[");
+			appendExpression(subroutineCount, 1);
+			_sb.append("] = ");
+			appendExpression(subroutineCount, 0);
+			_sb.append(";\n");
+			break;
+		case 2:
+			if (_random.nextBoolean()) {
+				_sb.append("do Output.printInt(");
+				appendExpression(subroutineCount, 0);
+				_sb.append(");\n");
+			}
+			else {
+				_sb.append("do run").append(_random.nextInt(subroutineCount)).append("(");
+				appendExpression(subroutineCount, 1);
+				_sb.append(", ");
+				appendExpression(subroutineCount, 1);
+				_sb.append(");\n");
+			}
+			break;
+		case 3:
+		case 4:
+			_sb.append(kind == 3 ? "if (" : "while (");
+			appendCondition(subroutineCount);
+			_sb.append(") {\n");
+			appendStatement(indent + 1, subroutineCount, depth + 1);
+			if (_random.nextBoolean()) {
+				appendStatement(indent + 1, subroutineCount, depth + 1);
+			}
+			appendIndent(indent);
+			_sb.append("}\n");
+			if (kind == 3 && _random.nextBoolean()) {
+				appendIndent(indent);
+				_sb.append("else {\n");
+				appendStatement(indent + 1, subroutineCount, depth + 1);
+				appendIndent(indent);
+				_sb.append("}\n");
+			}
+			break;
+		default:
+			_sb.append("let done = ");
+			appendCondition(subroutineCount);
+			_sb.append(";\n");
+			break;
+		}
+	}
+	
+	private void appendCondition(int subroutineCount) {
+		_sb.append("(");
+		appendExpression(subroutineCount, 1);
+		_sb.append(") ").append(pick(COMPARISONS)).append(" (");
+		appendExpression(subroutineCount, 1);
+		_sb.append(")");
+		if (_random.nextInt(3) == 0) {
+			_sb.append(_random.nextBoolean() ? " & " : " | ");
+			_sb.append("done");
+		}
+	}
+	
+	/*
+	 * Appends a random expression of one to four terms. Terms nest other
+	 * expressions only down to MAX_EXPRESSION_DEPTH.
+	 */
+	private void appendExpression(int subroutineCount, int depth) {
+		int termCount = 1 + _random.nextInt(4);
+		for (int t = 0; t < termCount; t++) {
+			if (t > 0) {
+				_sb.append(" ").append(pick(ARITHMETIC_OPERATORS)).append(" ");
+			}
+			appendTerm(subroutineCount, depth);
+		}
+	}
+	
+	private void appendTerm(int subroutineCount, int depth) {
+		int kind = _random.nextInt(depth < MAX_EXPRESSION_DEPTH ? 7 : 3);
+		switch (kind) {
+		case 0:
+			_sb.append(_random.nextInt(MAX_INT_CONSTANT + 1));
+			break;
+		case 1:
+		case 2:
+			_sb.append(pick(INT_VARIABLES));
+			break;
+		case 3:
+			_sb.append("data[");
+			appendExpression(subroutineCount, depth + 1);
+			_sb.append("]");
+			break;
+		case 4:
+			_sb.append("(");
+			appendExpression(subroutineCount, depth + 1);
+			_sb.append(")");
+			break;
+		case 5:
+			_sb.append("-");
+			appendTerm(subroutineCount, depth + 1);
+			break;
+		default:
+			_sb.append("run").append(_random.nextInt(subroutineCount)).append("(");
+			appendExpression(subroutineCount, depth + 1);
+			_sb.append(", ");
+			appendExpression(subroutineCount, depth + 1);
+			_sb.append(")");
+			break;
+		}
+	}
+	
+	private void generateSubroutines(int targetBytes) {
+		int subroutineCount = 0;
+		do {
+			_sb.append("\tfunction int f").append(subroutineCount).append("(int a) {\n");
+			if (subroutineCount > 0 && _random.nextInt(4) == 0) {
+				_sb.append("\t\treturn f").append(_random.nextInt(subroutineCount)).append("(a) + 1;\n");
+			}
+			else {
+				_sb.append("\t\treturn a + ").append(subroutineCount % (MAX_INT_CONSTANT + 1)).append(";\n");
+			}
+			_sb.append("\t}\n");
+			subroutineCount++;
+		} while (_sb.length() < targetBytes);
+	}
+	
+	private void generateLocals(int targetBytes) {
+		int localCount = Math.max(1, targetBytes / BYTES_PER_LOCAL);
+		
+		_sb.append("\tfunction int run() {\n");
+		for (int l = 0; l < localCount; l += LOCALS_PER_LINE) {
+			_sb.append("\t\tvar int ");
+			for (int k = l; k < Math.min(l + LOCALS_PER_LINE, localCount); k++) {
+				if (k > l) {
+					_sb.append(", ");
+				}
+				_sb.append("l").append(k);
+			}
+			_sb.append(";\n");
+		}
+		for (int l = 0; l < localCount; l++) {
+			_sb.append("\t\tlet l").append(l).append(" = l").append(_random.nextInt(localCount)).append(" + ")
+					.append(_random.nextInt(100)).append(";\n");
+		}
+		_sb.append("\t\treturn l0;\n");
+		_sb.append("\t}\n");
+	}
+	
+	/*
+	 * Nesting is indented by a fixed amount, since indenting every level
+	 * would make the class grow with the square of its depth. The parser
+	 * recurses once per level, so a larger class gets more nests rather than
+	 * deeper ones, each at most MAX_NESTING_DEPTH levels deep.
+	 */
+	private void generateNesting(int targetBytes) {
+		int levels = Math.max(1, targetBytes / BYTES_PER_NESTING_LEVEL);
+		
+		_sb.append("\tfunction int run(int a) {\n");
+		while (levels > 0) {
+			int depth = Math.min(levels, MAX_NESTING_DEPTH);
+			for (int d = 0; d < depth; d++) {
+				_sb.append(_random.nextBoolean() ? "\t\tif (a < " : "\t\twhile (a > ");
+				_sb.append(_random.nextInt(MAX_INT_CONSTANT + 1)).append(") {\n");
+				_sb.append("\t\tlet a = a + ").append(_random.nextInt(100)).append(";\n");
+			}
+			_sb.append("\t\tlet a = a - 1;\n");
+			for (int d = 0; d < depth; d++) {
+				_sb.append("\t\t}\n");
+			}
+			levels -= depth;
+		}
+		_sb.append("\t\treturn a;\n");
+		_sb.append("\t}\n");
+	}
+	
+	private void generateExpression(int targetBytes) {
+		_sb.append("\tfunction int run(int a, int b) {\n");
+		_sb.append("\t\tvar int x;\n");
+		_sb.append("\t\tlet x = ");
+		int termCount = 0;
+		do {
+			if (termCount > 0) {
+				_sb.append(" ").append(pick(ARITHMETIC_OPERATORS)).append(" ");
+			}
+			switch (_random.nextInt(4)) {
+			case 0:
+				_sb.append(_random.nextInt(MAX_INT_CONSTANT + 1));
+				break;
+			case 1:
+				_sb.append("(a - ").append(_random.nextInt(100)).append(")");
+				break;
+			default:
+				_sb.append(_random.nextBoolean() ? "a" : "b");
+				break;
+			}
+			termCount++;
+		} while (_sb.length() < targetBytes);
+		_sb.append(";\n");
+		_sb.append("\t\treturn x;\n");
+		_sb.append("\t}\n");
+	}
+	
+	private void generateString(int targetBytes) {
+		_sb.append("\tfunction void run() {\n");
+		_sb.append("\t\tdo Output.printString(\"");
+		do {
+			_sb.append(STRING_CHARACTERS.charAt(_random.nextInt(STRING_CHARACTERS.length())));
+		} while (_sb.length() < targetBytes);
+		_sb.append("\");\n");
+		_sb.append("\t\treturn;\n");
+		_sb.append("\t}\n");
+	}
+	
+	private void generateComment(int targetBytes) {
+		_sb.append("\t/*");
+		int lineLength = 0;
+		do {
+			String word = pick(COMMENT_WORDS);
+			if (lineLength + word.length() > COMMENT_LINE_LENGTH) {
+				_sb.append("\n\t *");
+				lineLength = 0;
+			}
+			_sb.append(" ").append(word);
+			lineLength += word.length() + 1;
+		} while (_sb.length() < targetBytes);
+		_sb.append("\n\t */\n");
+		_sb.append("\tfunction void run() {\n");
+		_sb.append("\t\treturn;\n");
+		_sb.append("\t}\n");
+	}
+	
+	private void appendIndent(int indent) {
+		for (int i = 0; i < indent; i++) {
+			_sb.append('\t');
+		}
+	}
+	
+	private String pick(String[] choices) {
+		return choices[_random.nextInt(choices.length)];
+	}
+	
+	/*
+	 * Parses a size in bytes, which may end in k (KiB) or m (MiB)
+	 */
+	private static int parseSize(String text) {
+		int multiplier = 1;
+		if (text.endsWith("k") || text.endsWith("K")) {
+			multiplier = 1024;
+		}
+		else if (text.endsWith("m") || text.endsWith("M")) {
+			multiplier = 1024 * 1024;
+		}
+		if (multiplier != 1) {
+			text = text.substring(0, text.length() - 1);
+		}
+		return Math.multiplyExact(Integer.parseInt(text), multiplier);
+	}
+	
+	private static String describeShapes() {
+		StringBuilder sb = new StringBuilder();
+		for (CorpusShape shape : CorpusShape.values()) {
+			if (sb.length() > 0) {
+				sb.append(",");
+			}
+			sb.append(shape.getOptionName());
+		}
+		return sb.toString();
+	}
+	
+	private static void usageError(String message) {
+		if (message != null) {
+			System.err.println("Error: " + message);
+		}
+		System.err.print(USAGE);
+		System.exit(1);
+	}
+	
+	private static final String CLASS_NAME_PREFIX = "Corpus";
+	
+	// Largest integer constant Jack allows
+	private static final int MAX_INT_CONSTANT = 32767;
+	
+	// Roughly how far past targetBytes a class can run
+	private static final int MAX_OVERSHOOT = 4096;
+	
+	private static final int MAX_STATEMENT_DEPTH = 3;
+	private static final int MAX_EXPRESSION_DEPTH = 2;
+	
+	// Deep enough to stress the parser, shallow enough for the default stack
+	private static final int MAX_NESTING_DEPTH = 1000;
+	
+	// Approximate bytes of source each local variable, nesting level adds
+	private static final int BYTES_PER_LOCAL = 30;
+	private static final int BYTES_PER_NESTING_LEVEL = 45;
+	
+	private static final int LOCALS_PER_LINE = 16;
+	private static final int COMMENT_LINE_LENGTH = 72;
+	
+	private static final String[] INT_VARIABLES = { "a", "b", "i", "j", "x", "y", "count" };
+	private static final String[] ARITHMETIC_OPERATORS = { "+", "-", "*", "/", "&", "|" };
+	private static final String[] COMPARISONS = { "<", ">", "=" };
+	private static final String[] COMMENT_WORDS = { "the", "compiler", "reads", "each", "token", "of", "this",
+			"class", "and", "skips", "comments", "like", "one", "without", "building", "any", "strings" };
+	
+	// Printable ASCII, without the double quote that would end the string
+	private static final String STRING_CHARACTERS =
+			" !#$%&'()*+,-./0123456789:;<=>?@ABCDEFGHIJKLMNOPQRSTUVWXYZ[\\]^_`abcdefghijklmnopqrstuvwxyz{|}~";
+	
+	private Random _random;
+	private StringBuilder _sb;
+	
+}
@@ -0,0 +1,744 @@
+package org.jrao.jacksyntaxanalyzer;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ * LL(1) recursive descent parser that turns the tokens of a Jack class into a
+ * syntax tree. Every decision is made by peeking at the next token, so the
+ * parser never backs up. Every variable name is resolved against the symbol table as it
+ * is parsed, so later passes over the tree never need the symbol table.
+ */
+public class JackParser {
+	
+	public JackParser(JackTokenizer tokenizer) {
+		_tokenizer = tokenizer;
+		_names = tokenizer.getNameTable();
+		_symbolTable = new SymbolTable(_names);
+		_err = System.err;
+		_phases = new PhaseRecorder(null);
+	}
+	
+	/*
+	 * Sets the stream that syntax errors are reported to (System.err by default)
+	 */
+	public void setErrorStream(PrintStream err) {
+		_err = err;
+		_tokenizer.setErrorStream(err);
+	}
+	
+	/*
+	 * Sets where the parsing of each subroutine is recorded (by default, a
+	 * recorder of its own that does not know the file name)
+	 */
+	void setPhaseRecorder(PhaseRecorder phases) {
+		_phases = phases;
+	}
+	
+	/*
+	 * Parses a complete class. Returns null if not even the class name could
+	 * be parsed.
+	 */
+	public ClassDec parseClass() throws IOException {
+		eatKeyword(KeyWord.CLASS);
+		
+		_tokenizer.advance();
+		if (!_tokenizer.tokenType().equals(TokenType.IDENTIFIER)) {
+			_err.println("Error compiling class!");
+			return null;
+		}
+		ClassDec classDec = new ClassDec(_tokenizer.identifier());
+		
+		eatSymbol('{');
+		
+		parseClassVarDecs(classDec);
+		classDec.setFieldCount(_symbolTable.varCount(Kind.FIELD));
+		classDec.setStaticCount(_symbolTable.varCount(Kind.STATIC));
+		
+		parseSubroutineDecs(classDec);
+		
+		eatSymbol('}');
+		
+		if (_tokenizer.hasMoreTokens()) {
+			_err.println("Error: There should be no more tokens!");
+		}
+		
+		return classDec;
+	}
+	
+	private void parseClassVarDecs(ClassDec classDec) throws IOException {
+		while (true) {
+			// Check for end of class
+			if (nextIsSymbol('}')) {
+				return;
+			}
+			
+			// Check for end of variable declarations (i.e., check for beginning of subroutine declarations)
+			KeyWord next = _tokenizer.peekKeyWord();
+			if (next == KeyWord.CONSTRUCTOR || next == KeyWord.FUNCTION || next == KeyWord.METHOD) {
+				return;
+			}
+			
+			_tokenizer.advance();
+			if (!_tokenizer.tokenType().equals(TokenType.KEYWORD) || !(_tokenizer.keyWord().equals(KeyWord.STATIC)
+					|| _tokenizer.keyWord().equals(KeyWord.FIELD))) {
+				
+				_err.println("Error compiling class variables declaration!");
+				return;
+			}
+			Kind kind = _tokenizer.keyWord().equals(KeyWord.STATIC) ? Kind.STATIC : Kind.FIELD;
+			
+			// Handle type
+			int typeId = parseType(false, "Error compiling class variables declaration!");
+			if (typeId < 0) {
+				return;
+			}
+			
+			// Handle varName
+			_tokenizer.advance();
+			if (!_tokenizer.tokenType().equals(TokenType.IDENTIFIER)) {
+				_err.println("Error compiling class variables declaration!");
+				return;
+			}
+			ClassVarDec classVarDec = new ClassVarDec(kind, _names.getName(typeId));
+			classDec.getClassVarDecs().add(classVarDec);
+			classVarDec.getVariables().add(defineVariable(_tokenizer.identifierId(), typeId, kind));
+			
+			// Handle ',' or ';'
+			handleVariableDeclarationList(classVarDec.getVariables(), kind, typeId);
+		}
+	}
+	
+	private void parseSubroutineDecs(ClassDec classDec) throws IOException {
+		int thisId = _names.intern("this");
+		int classNameId = _names.intern(classDec.getName());
+		
+		while (true) {
+			// Check for end of class
+			if (nextIsSymbol('}')) {
+				return;
+			}
+			
+			_phases.beginSubroutine(_tokenizer);
+			_tokenizer.advance();
+			if (!(_tokenizer.tokenType().equals(TokenType.KEYWORD) && (_tokenizer.keyWord().equals(KeyWord.CONSTRUCTOR)
+					|| _tokenizer.keyWord().equals(KeyWord.FUNCTION) || _tokenizer.keyWord().equals(KeyWord.METHOD)))) {
+				
+				_err.println("Error compiling subroutines!");
+				return;
+			}
+			KeyWord subroutineType = _tokenizer.keyWord();
+			
+			// Handle return type
+			int returnTypeId = parseType(true, "Error compiling subroutines!");
+			if (returnTypeId < 0) {
+				return;
+			}
+			
+			// Handle subroutine name
+			_tokenizer.advance();
+			if (!_tokenizer.tokenType().equals(TokenType.IDENTIFIER)) {
+				_err.println("Error compiling subroutines!");
+				return;
+			}
+			SubroutineDec subroutineDec = new SubroutineDec(subroutineType, _names.getName(returnTypeId), _tokenizer.identifier());
+			classDec.getSubroutineDecs().add(subroutineDec);
+			
+			_symbolTable.startSubroutine();
+			if (subroutineType == KeyWord.METHOD) {
+				_symbolTable.define(thisId, classNameId, Kind.ARG);
+			}
+			
+			// Handle parameter list
+			eatSymbol('(');
+			
+			parseParameterList(subroutineDec);
+			
+			eatSymbol(')');
+			
+			parseSubroutineBody(subroutineDec);
+			_phases.endSubroutine(_tokenizer, classDec, subroutineDec);
+		}
+	}
+	
+	private void parseSubroutineBody(SubroutineDec subroutineDec) throws IOException {
+		eatSymbol('{');
+		
+		while (_tokenizer.peekKeyWord() == KeyWord.VAR) {
+			parseVarDec(subroutineDec);
+		}
+		subroutineDec.setLocalCount(_symbolTable.varCount(Kind.VAR));
+		
+		parseStatements(subroutineDec.getStatements());
+		
+		eatSymbol('}');
+	}
+	
+	private void parseParameterList(SubroutineDec subroutineDec) throws IOException {
+		// check for end of parameter list
+		if (nextIsSymbol(')')) {
+			return;
+		}
+		
+		boolean first = true;
+		while (true) {
+			if (!first) {
+				if (nextIsSymbol(')')) {
+					return;
+				}
+				_tokenizer.advance();
+				if (!_tokenizer.tokenType().equals(TokenType.SYMBOL) || _tokenizer.symbol() != ',') {
+					_err.println("Error in handleMultipleVariableDeclarations!");
+					return;
+				}
+			}
+			first = false;
+			
+			// handle type
+			int typeId = parseType(false, "Error compiling parameter list!");
+			if (typeId < 0) {
+				return;
+			}
+			
+			// handle varName
+			_tokenizer.advance();
+			if (!_tokenizer.tokenType().equals(TokenType.IDENTIFIER)) {
+				_err.println("Error compiling parameter list!");
+				return;
+			}
+			subroutineDec.getParameters().add(defineVariable(_tokenizer.identifierId(), typeId, Kind.ARG));
+		}
+	}
+	
+	private void parseVarDec(SubroutineDec subroutineDec) throws IOException {
+		_tokenizer.advance();
+		if (!_tokenizer.tokenType().equals(TokenType.KEYWORD) || !_tokenizer.keyWord().equals(KeyWord.VAR)) {
+			_err.println("Error in compileVarDec!");
+			return;
+		}
+		
+		// handle type
+		int typeId = parseType(false, "Error in compileVarDec!");
+		if (typeId < 0) {
+			return;
+		}
+		
+		// Handle varName
+		_tokenizer.advance();
+		if (!_tokenizer.tokenType().equals(TokenType.IDENTIFIER)) {
+			_err.println("Error compiling class variables declaration!");
+			return;
+		}
+		VarDec varDec = new VarDec(_names.getName(typeId));
+		subroutineDec.getVarDecs().add(varDec);
+		varDec.getVariables().add(defineVariable(_tokenizer.identifierId(), typeId, Kind.VAR));
+		
+		// Handle ',' or ';'
+		handleVariableDeclarationList(varDec.getVariables(), Kind.VAR, typeId);
+	}
+	
+	/*
+	 * Parses a type: int, char, boolean, a class name, or void if allowVoid
+	 * is set, and returns the ID of its name. Returns -1 after reporting
+	 * errorMessage if the next token is not a type.
+	 */
+	private int parseType(boolean allowVoid, String errorMessage) throws IOException {
+		_tokenizer.advance();
+		if (_tokenizer.tokenType().equals(TokenType.IDENTIFIER)) {
+			return _tokenizer.identifierId();
+		}
+		if (_tokenizer.tokenType().equals(TokenType.KEYWORD)) {
+			switch (_tokenizer.keyWord()) {
+			case INT:
+			case CHAR:
+			case BOOLEAN:
+				return _tokenizer.identifierId();
+			case VOID:
+				if (allowVoid) {
+					return _tokenizer.identifierId();
+				}
+				break;
+			default:
+				break;
+			}
+		}
+		_err.println(errorMessage);
+		return -1;
+	}
+	
+	private void parseStatements(List<Statement> statements) throws IOException {
+		while (true) {
+			TokenType next = _tokenizer.peekType();
+			if (next == TokenType.SYMBOL) {
+				return;
+			}
+			if (next != TokenType.KEYWORD) {
+				_tokenizer.advance();
+				_err.println("Error compiling statements!");
+				return;
+			}
+			
+			Statement statement;
+			switch (_tokenizer.peekKeyWord()) {
+			case LET:
+				statement = parseLet();
+				break;
+			case IF:
+				statement = parseIf();
+				break;
+			case WHILE:
+				statement = parseWhile();
+				break;
+			case DO:
+				statement = parseDo();
+				break;
+			case RETURN:
+				statement = parseReturn();
+				break;
+			default:
+				_tokenizer.advance();
+				_err.println("Error compiling statements!");
+				return;
+			}
+			if (statement != null) {
+				statements.add(statement);
+			}
+		}
+	}
+	
+	private DoStatement parseDo() throws IOException {
+		eatKeyword(KeyWord.DO);
+		
+		_tokenizer.advance();
+		if (_tokenizer.tokenType() != TokenType.IDENTIFIER) {
+			_err.println("Error compiling subroutine call!");
+		}
+		int nameId = _tokenizer.identifierId();
+		
+		_tokenizer.advance();
+		if (!(_tokenizer.tokenType() == TokenType.SYMBOL && (_tokenizer.symbol() == '(' || _tokenizer.symbol() == '.'))) {
+			_err.println("Error compiling subroutine call!");
+		}
+		SubroutineCall call = parseSubroutineCallRest(nameId);
+		
+		eatSymbol(';');
+		
+		if (call == null) {
+			return null;
+		}
+		return new DoStatement(call);
+	}
+	
+	/*
+	 * Parses the rest of a subroutine call whose first name has already been
+	 * consumed, starting from the current '(' or '.' token
+	 */
+	private SubroutineCall parseSubroutineCallRest(int nameId) throws IOException {
+		SubroutineCall call = parseSubroutineCallStart(nameId);
+		if (call == null) {
+			return null;
+		}
+		
+		parseExpressionList(call.getArguments());
+		
+		eatSymbol(')');
+		
+		return call;
+	}
+	
+	/*
+	 * Parses a subroutine call up to and including the '(' before its
+	 * arguments, starting from the current '(' or '.' token
+	 */
+	private SubroutineCall parseSubroutineCallStart(int nameId) throws IOException {
+		SubroutineCall call;
+		if (_tokenizer.tokenType() == TokenType.SYMBOL && _tokenizer.symbol() == '(') {
+			// No object or class specified means that this is an implicit method call on "this" object
+			call = new SubroutineCall(null, _names.getName(nameId));
+		}
+		else {
+			Variable receiver = _symbolTable.lookup(nameId);
+			
+			_tokenizer.advance();
+			if (!_tokenizer.tokenType().equals(TokenType.IDENTIFIER)) {
+				_err.println("Error compiling subroutine call!");
+				return null;
+			}
+			call = new SubroutineCall(receiver, _tokenizer.identifier());
+			
+			eatSymbol('(');
+		}
+		
+		return call;
+	}
+	
+	private LetStatement parseLet() throws IOException {
+		eatKeyword(KeyWord.LET);
+		
+		// handle varName
+		_tokenizer.advance();
+		if (!_tokenizer.tokenType().equals(TokenType.IDENTIFIER)) {
+			_err.println("Error compiling Let!");
+			return null;
+		}
+		Variable target = _symbolTable.lookup(_tokenizer.identifierId());
+		
+		// handle optional array index
+		Expression index = null;
+		if (nextIsSymbol('[')) {
+			_tokenizer.advance();
+			
+			index = parseExpression();
+			
+			eatSymbol(']');
+		}
+		
+		// handle =
+		eatSymbol('=');
+		
+		Expression value = parseExpression();
+		
+		// handle ;
+		eatSymbol(';');
+		
+		return new LetStatement(target, index, value);
+	}
+	
+	private WhileStatement parseWhile() throws IOException {
+		eatKeyword(KeyWord.WHILE);
+		
+		eatSymbol('(');
+		
+		Expression condition = parseExpression();
+		
+		eatSymbol(')');
+		
+		eatSymbol('{');
+		
+		List<Statement> statements = new ArrayList<Statement>();
+		parseStatements(statements);
+		
+		eatSymbol('}');
+		
+		return new WhileStatement(condition, statements);
+	}
+	
+	private ReturnStatement parseReturn() throws IOException {
+		eatKeyword(KeyWord.RETURN);
+		
+		Expression value = null;
+		
+		if (!nextIsSymbol(';')) {
+			value = parseExpression();
+		}
+		
+		_tokenizer.advance();
+		
+		return new ReturnStatement(value);
+	}
+	
+	private IfStatement parseIf() throws IOException {
+		eatKeyword(KeyWord.IF);
+		
+		eatSymbol('(');
+		
+		Expression condition = parseExpression();
+		
+		eatSymbol(')');
+		
+		eatSymbol('{');
+		
+		List<Statement> thenStatements = new ArrayList<Statement>();
+		parseStatements(thenStatements);
+		
+		eatSymbol('}');
+		
+		List<Statement> elseStatements = null;
+		if (_tokenizer.peekKeyWord() == KeyWord.ELSE) {
+			_tokenizer.advance();
+			
+			eatSymbol('{');
+			
+			elseStatements = new ArrayList<Statement>();
+			parseStatements(elseStatements);
+			
+			eatSymbol('}');
+		}
+		
+		return new IfStatement(condition, thenStatements, elseStatements);
+	}
+	
+	/*
+	 * Parses an expression. Expressions nested inside it (in parentheses,
+	 * array indexes, and call arguments) are kept on an explicit stack of
+	 * PendingExpressions rather than parsed by recursion, so however deeply
+	 * they are nested the parser never runs out of thread stack.
+	 */
+	private Expression parseExpression() throws IOException {
+		PendingExpression pending = new PendingExpression(null, null);
+		
+		while (true) {
+			// Prefix operators are applied once the term they precede is complete
+			while (nextIsSymbol('-') || nextIsSymbol('~')) {
+				_tokenizer.advance();
+				pending.getUnaryOperators().append(_tokenizer.symbol());
+			}
+			
+			Term term = null;
+			PendingExpression nested = null;
+			switch (_tokenizer.peekType()) {
+			case INT_CONST:
+				_tokenizer.advance();
+				term = new IntegerConstantTerm(_tokenizer.intVal());
+				break;
+			case STRING_CONST:
+				_tokenizer.advance();
+				term = new StringConstantTerm(_tokenizer.stringVal());
+				break;
+			case KEYWORD:
+				KeyWord keyWord = _tokenizer.peekKeyWord();
+				if (keyWord == KeyWord.TRUE || keyWord == KeyWord.FALSE || keyWord == KeyWord.NULL || keyWord == KeyWord.THIS) {
+					_tokenizer.advance();
+					term = new KeywordConstantTerm(keyWord);
+				}
+				else {
+					reportTermError();
+				}
+				break;
+			case IDENTIFIER:
+				_tokenizer.advance();
+				int nameId = _tokenizer.identifierId();
+				
+				char next = _tokenizer.peekSymbol();
+				if (next == '[') {
+					_tokenizer.advance();
+					nested = new PendingExpression(pending, _symbolTable.lookup(nameId));
+				}
+				else if (next == '(' || next == '.') {
+					_tokenizer.advance();
+					SubroutineCall call = parseSubroutineCallStart(nameId);
+					if (call != null && nextIsSymbol(')')) {
+						_tokenizer.advance();
+						term = new SubroutineCallTerm(call);
+					}
+					else if (call != null) {
+						nested = new PendingExpression(pending, call);
+					}
+				}
+				else {
+					term = new VariableTerm(_symbolTable.lookup(nameId), null);
+				}
+				break;
+			case SYMBOL:
+				if (nextIsSymbol('(')) {
+					_tokenizer.advance();
+					nested = new PendingExpression(pending, PARENTHESES);
+				}
+				else {
+					reportTermError();
+				}
+				break;
+			default:
+				reportTermError();
+				break;
+			}
+			
+			if (nested != null) {
+				pending = nested;
+				continue;
+			}
+			
+			// Add the term, then close every expression that ends right after it
+			while (true) {
+				pending.addTerm(term);
+				
+				if (isOperator(_tokenizer.peekSymbol())) {
+					_tokenizer.advance();
+					pending.setOperator(_tokenizer.symbol());
+					break;
+				}
+				
+				PendingExpression enclosing = pending.getEnclosing();
+				if (enclosing == null) {
+					return pending.getExpression();
+				}
+				
+				Object owner = pending.getOwner();
+				if (owner instanceof SubroutineCall) {
+					SubroutineCall call = (SubroutineCall) owner;
+					call.getArguments().add(pending.getExpression());
+					if (nextIsSymbol(',')) {
+						_tokenizer.advance();
+						pending = new PendingExpression(enclosing, call);
+						break;
+					}
+					
+					eatSymbol(')');
+					
+					term = new SubroutineCallTerm(call);
+				}
+				else if (owner instanceof Variable) {
+					eatSymbol(']');
+					
+					term = new VariableTerm((Variable) owner, pending.getExpression());
+				}
+				else {
+					eatSymbol(')');
+					
+					term = new ParenthesizedTerm(pending.getExpression());
+				}
+				pending = enclosing;
+			}
+		}
+	}
+	
+	/*
+	 * Reports a token that cannot start a term. The token is left for the
+	 * enclosing construct to report.
+	 */
+	private void reportTermError() {
+		_err.println("Error compiling term!");
+	}
+	
+	private void parseExpressionList(List<Expression> expressions) throws IOException {
+		if (nextIsSymbol(')')) {
+			return;
+		}
+		
+		expressions.add(parseExpression());
+		
+		while (nextIsSymbol(',')) {
+			_tokenizer.advance();
+			expressions.add(parseExpression());
+		}
+	}
+	
+	// to invoke this method, next token must a comma or a semicolon symbol
+	private void handleVariableDeclarationList(List<Variable> variables, Kind kind, int typeId) throws IOException {
+		while (true) {
+			_tokenizer.advance();
+			if (!_tokenizer.tokenType().equals(TokenType.SYMBOL) || (_tokenizer.symbol() != ',' && _tokenizer.symbol() != ';')) {
+				_err.println("Error in handleMultipleVariableDeclarations!");
+				return;
+			}
+			if (_tokenizer.symbol() == ';') {
+				return;
+			}
+			
+			_tokenizer.advance();
+			if (!_tokenizer.tokenType().equals(TokenType.IDENTIFIER)) {
+				_err.println("Error in handleMultipleVariableDeclarations!");
+				return;
+			}
+			variables.add(defineVariable(_tokenizer.identifierId(), typeId, kind));
+		}
+	}
+	
+	/*
+	 * Defines a new variable in the symbol table and returns it with its assigned index
+	 */
+	private Variable defineVariable(int nameId, int typeId, Kind kind) {
+		int index = _symbolTable.varCount(kind);
+		_symbolTable.define(nameId, typeId, kind);
+		return new Variable(_names.getName(nameId), _names.getName(typeId), kind, index);
+	}
+	
+	private static boolean isOperator(char symbol) {
+		return symbol == '+' || symbol == '-' || symbol == '*' || symbol == '/' || symbol == '&'
+				|| symbol == '|' || symbol == '<' || symbol == '>' || symbol == '=';
+	}
+	
+	private boolean nextIsSymbol(char symbol) throws IOException {
+		return _tokenizer.peekSymbol() == symbol;
+	}
+	
+	private void eatKeyword(KeyWord keyword) throws IOException {
+		_tokenizer.advance();
+		if (!_tokenizer.tokenType().equals(TokenType.KEYWORD) || !_tokenizer.keyWord().equals(keyword)) {
+			_err.println("Error eating keyword " + keyword + "!");
+		}
+	}
+	
+	private void eatSymbol(char symbol) throws IOException {
+		_tokenizer.advance();
+		if (!_tokenizer.tokenType().equals(TokenType.SYMBOL) || _tokenizer.symbol() != symbol) {
+			_err.println("Error eating symbol " + symbol + "!");
+		}
+	}
+	
+	/*
+	 * An expression whose terms are still being parsed, together with the
+	 * construct that encloses it. owner is the array Variable for an index,
+	 * the SubroutineCall for an argument, or PARENTHESES.
+	 */
+	private static class PendingExpression {
+		
+		public PendingExpression(PendingExpression enclosing, Object owner) {
+			_enclosing = enclosing;
+			_owner = owner;
+			_expression = new Expression();
+			_unaryOperators = new StringBuilder();
+		}
+		
+		public PendingExpression getEnclosing() {
+			return _enclosing;
+		}
+		
+		public Object getOwner() {
+			return _owner;
+		}
+		
+		public Expression getExpression() {
+			return _expression;
+		}
+		
+		/*
+		 * Returns the prefix operators read before the term being parsed, in order
+		 */
+		public StringBuilder getUnaryOperators() {
+			return _unaryOperators;
+		}
+		
+		/*
+		 * Sets the operator between the last term added and the next one
+		 */
+		public void setOperator(char operator) {
+			_operator = operator;
+		}
+		
+		/*
+		 * Adds a parsed term, applying the prefix operators read before it. A
+		 * null term, which could not be parsed, is skipped along with them.
+		 */
+		public void addTerm(Term term) {
+			if (term != null) {
+				for (int i = _unaryOperators.length() - 1; i >= 0; i--) {
+					term = new UnaryOpTerm(_unaryOperators.charAt(i), term);
+				}
+				if (!_expression.getTerms().isEmpty()) {
+					_expression.getOperators().add(_operator);
+				}
+				_expression.getTerms().add(term);
+			}
+			_unaryOperators.setLength(0);
+		}
+		
+		private PendingExpression _enclosing;
+		private Object _owner;
+		private Expression _expression;
+		private StringBuilder _unaryOperators;
+		private char _operator;
+		
+	}
+	
+	private static final Object PARENTHESES = new Object();
+	
+	private JackTokenizer _tokenizer;
+	private NameTable _names;
+	private SymbolTable _symbolTable;
+	private PrintStream _err;
+	private PhaseRecorder _phases;
+	
+}
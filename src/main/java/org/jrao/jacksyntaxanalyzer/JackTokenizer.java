@@ -1,14 +1,13 @@
 package org.jrao.jacksyntaxanalyzer;
 
-import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Scanner;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
 
 public class JackTokenizer {
 	
@@ -23,59 +22,101 @@ public class JackTokenizer {
 	}
 	
 	/*
-	 * TODO: fix this method so that comments can be safely used inside of string literals
+	 * Opens the input file and gets ready to tokenize it. The tokenizer only
+	 * reads; it never creates any output of its own.
 	 */
-	public static String removeCommentsAndWhitespace(String string) {
-		// regex from http://blog.ostermiller.org/find-comment
-		String result = string.replaceAll("(?:/\\*(?:[^*]|(?:\\*+[^*/]))*\\*+/)|(?://.*)", "");
-		result = result.trim();
-		
-		return result;
+	public JackTokenizer(File inputFile) throws IOException {
+		this(readInput(inputFile), null);
 	}
 	
 	/*
-	 * Opens the input file and gets ready to tokenize it
+	 * Gets ready to tokenize the Jack source in the remaining bytes of input,
+	 * which is read in place and never modified
 	 */
-	public JackTokenizer(File inputFile) throws IOException {
-		_scanner = new Scanner(inputFile);
-		StringBuffer sb = new StringBuffer();
-		while (_scanner.hasNextLine()) {
-			sb.append(_scanner.nextLine() + "\n");
-		}
-		_input = sb.toString();
-		_input = removeCommentsAndWhitespace(_input);
+	public JackTokenizer(ByteBuffer input) {
+		this(input.slice(), null);
+	}
+	
+	/*
+	 * Gets ready to tokenize the Jack source read from the given channel.
+	 * Tokens are lexed as the parser asks for them, and the channel is read
+	 * in chunks only as far as the lexer needs, so parsing can begin before
+	 * the whole input has arrived. The caller remains responsible for closing
+	 * the channel.
+	 */
+	public JackTokenizer(ReadableByteChannel inputChannel) throws IOException {
+		this(ByteBuffer.allocate(INITIAL_WINDOW_SIZE), inputChannel);
+		_input.flip();
+	}
+	
+	private JackTokenizer(ByteBuffer input, ReadableByteChannel inputChannel) {
+		_input = input;
+		_inputChannel = inputChannel;
+		_inputBase = 0;
+		_inputExhausted = (inputChannel == null);
+		
+		_tokenTypes = new byte[TOKEN_RING_SIZE];
+		_tokenValues = new int[TOKEN_RING_SIZE];
+		_tokenOffsets = new int[TOKEN_RING_SIZE];
+		_tokenLengths = new int[TOKEN_RING_SIZE];
+		_tokenCount = 0;
+		_scanPosition = 0;
+		_tokenStart = 0;
 		
 		_currentTokenIndex = -1;
 		_tokenType = TokenType.UNKNOWN;
 		
-		populateTokenList();
-
-		String inputFileParentPathString = inputFile.getParentFile().getAbsolutePath();
-		String outputFileName = inputFile.getName();
-		if (outputFileName.contains(".")) {
-			outputFileName = outputFileName.substring(0, outputFileName.lastIndexOf('.'));
+		// Keywords are interned first, so that a keyword's ID is its ordinal
+		_names = new NameTable();
+		for (String keywordText : KEYWORD_TEXTS) {
+			_names.intern(keywordText);
 		}
-		outputFileName = outputFileName.concat(".vm");
-		String outputPathString = inputFileParentPathString + "/" + outputFileName;
-        File outputFile = new File(outputPathString);
-		_bw = new BufferedWriter(new FileWriter(outputFile));
+		
+		_err = System.err;
+	}
+	
+	/*
+	 * Sets the stream that errors are reported to (System.err by default)
+	 */
+	public void setErrorStream(PrintStream err) {
+		_err = err;
 	}
 	
-	public void close() throws IOException {
-		if (_bw != null) {
-			_bw.flush();
-			_bw.close();
+	/*
+	 * Returns the contents of the given file as a read-only buffer of bytes.
+	 * Large files are memory-mapped so that their contents are never copied
+	 * onto the heap and are paged in only as the lexer reaches them; smaller
+	 * files are read with a single bulk read, which is cheaper than setting up
+	 * a mapping.
+	 */
+	private static ByteBuffer readInput(File inputFile) throws IOException {
+		try (FileChannel channel = FileChannel.open(inputFile.toPath(), StandardOpenOption.READ)) {
+			long size = channel.size();
+			if (size > Integer.MAX_VALUE) {
+				throw new IOException("Input file too large: " + inputFile.getName());
+			}
+			if (size >= MAP_THRESHOLD) {
+				return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+			}
+			ByteBuffer buffer = ByteBuffer.allocate((int) size);
+			while (buffer.hasRemaining()) {
+				if (channel.read(buffer) < 0) {
+					break;
+				}
+			}
+			buffer.flip();
+			return buffer;
 		}
 	}
 	
 	/*
 	 * Are there more tokens in the input?
 	 */
-	public boolean hasMoreTokens() {
-		if (_currentTokenIndex < _tokenList.size() - 1) {
+	public boolean hasMoreTokens() throws IOException {
+		if (_currentTokenIndex < _tokenCount - 1) {
 			return true;
 		}
-		return false;
+		return lexNextToken();
 	}
 	
 	/*
@@ -85,96 +126,45 @@ public class JackTokenizer {
 	 */
 	public void advance() throws IOException {
 		if (!hasMoreTokens()) {
-			System.err.println("Error: Must not invoke advance() when there are no more tokens!");
+			_err.println("Error: Must not invoke advance() when there are no more tokens!");
 			return;
 		}
 		
 		_currentTokenIndex++;
-		_currentToken = _tokenList.get(_currentTokenIndex);
-		
-		if (
-			_currentToken.equals("class") || _currentToken.equals("constructor") || _currentToken.equals("function") ||
-			_currentToken.equals("method") || _currentToken.equals("field") || _currentToken.equals("static") ||
-			_currentToken.equals("var") || _currentToken.equals("int") || _currentToken.equals("char") ||
-			_currentToken.equals("boolean") || _currentToken.equals("void") || _currentToken.equals("true") ||
-			_currentToken.equals("false") || _currentToken.equals("null") || _currentToken.equals("this") ||
-			_currentToken.equals("let") || _currentToken.equals("do") || _currentToken.equals("if") ||
-			_currentToken.equals("else") || _currentToken.equals("while") || _currentToken.equals("return")
-		) {
-			_tokenType = TokenType.KEYWORD;
-		}
-		else if (
-			_currentToken.equals("{") || _currentToken.equals("}") || _currentToken.equals("(") ||
-			_currentToken.equals(")") || _currentToken.equals("[") || _currentToken.equals("]") ||
-			_currentToken.equals(".") || _currentToken.equals(",") || _currentToken.equals(";") ||
-			_currentToken.equals("+") || _currentToken.equals("-") || _currentToken.equals("*") ||
-			_currentToken.equals("/") || _currentToken.equals("&") || _currentToken.equals("|") ||
-			_currentToken.equals("<") || _currentToken.equals(">") || _currentToken.equals("=") ||
-			_currentToken.equals("~")
-		) {
-			_tokenType = TokenType.SYMBOL;
-		}
-		else if (_currentToken.matches("[0-9]+")) {
-			_tokenType = TokenType.INT_CONST;
-		}
-		else if (_currentToken.matches("\".*\"")) {
-			_tokenType = TokenType.STRING_CONST;
-		}
-		else if (_currentToken.matches("[a-zA-Z_][a-zA-Z0-9_]*")) {
-			_tokenType = TokenType.IDENTIFIER;
-		}
-		else {
-			_tokenType = TokenType.UNKNOWN;
-		}
+		loadCurrentToken();
 	}
 	
 	/*
-	 * Gets the previous token from the input and makes it the current token.
-	 * Should only be called if _currentToken index is greater than 0.
+	 * Returns the type of the next token without advancing to it, or UNKNOWN
+	 * if there are no more tokens
 	 */
-	public void retreat() throws IOException {
-		if (_currentTokenIndex < 1) {
-			System.err.println("Error: Must not invoke when current token is less than 1!");
-			return;
-		}
-		
-		_currentTokenIndex--;
-		_currentToken = _tokenList.get(_currentTokenIndex);
-		
-		if (
-			_currentToken.equals("class") || _currentToken.equals("constructor") || _currentToken.equals("function") ||
-			_currentToken.equals("method") || _currentToken.equals("field") || _currentToken.equals("static") ||
-			_currentToken.equals("var") || _currentToken.equals("int") || _currentToken.equals("char") ||
-			_currentToken.equals("boolean") || _currentToken.equals("void") || _currentToken.equals("true") ||
-			_currentToken.equals("false") || _currentToken.equals("null") || _currentToken.equals("this") ||
-			_currentToken.equals("let") || _currentToken.equals("do") || _currentToken.equals("if") ||
-			_currentToken.equals("else") || _currentToken.equals("while") || _currentToken.equals("return")
-		) {
-			_tokenType = TokenType.KEYWORD;
-		}
-		else if (
-			_currentToken.equals("{") || _currentToken.equals("}") || _currentToken.equals("(") ||
-			_currentToken.equals(")") || _currentToken.equals("[") || _currentToken.equals("]") ||
-			_currentToken.equals(".") || _currentToken.equals(",") || _currentToken.equals(";") ||
-			_currentToken.equals("+") || _currentToken.equals("-") || _currentToken.equals("*") ||
-			_currentToken.equals("/") || _currentToken.equals("&") || _currentToken.equals("|") ||
-			_currentToken.equals("<") || _currentToken.equals(">") || _currentToken.equals("=") ||
-			_currentToken.equals("~")
-		) {
-			_tokenType = TokenType.SYMBOL;
-		}
-		else if (_currentToken.matches("[0-9]+")) {
-			_tokenType = TokenType.INT_CONST;
-		}
-		else if (_currentToken.matches("\".*\"")) {
-			_tokenType = TokenType.STRING_CONST;
+	public TokenType peekType() throws IOException {
+		if (!hasMoreTokens()) {
+			return TokenType.UNKNOWN;
 		}
-		else if (_currentToken.matches("[a-zA-Z_][a-zA-Z0-9_]*")) {
-			_tokenType = TokenType.IDENTIFIER;
+		return TOKEN_TYPES[_tokenTypes[(_currentTokenIndex + 1) & TOKEN_RING_MASK]];
+	}
+	
+	/*
+	 * Returns the keyword which is the next token without advancing to it, or
+	 * UNKNOWN if the next token is not a keyword
+	 */
+	public KeyWord peekKeyWord() throws IOException {
+		if (peekType() != TokenType.KEYWORD) {
+			return KeyWord.UNKNOWN;
 		}
-		else {
-			_tokenType = TokenType.UNKNOWN;
+		return KEYWORDS[_tokenValues[(_currentTokenIndex + 1) & TOKEN_RING_MASK]];
+	}
+	
+	/*
+	 * Returns the symbol which is the next token without advancing to it, or
+	 * 0 if the next token is not a symbol
+	 */
+	public char peekSymbol() throws IOException {
+		if (peekType() != TokenType.SYMBOL) {
+			return 0;
 		}
+		return (char) _tokenValues[(_currentTokenIndex + 1) & TOKEN_RING_MASK];
 	}
 	
 	/*
@@ -189,165 +179,402 @@ public class JackTokenizer {
 	 * when tokenType() is KEYWORD.
 	 */
 	public KeyWord keyWord() {
-		String token = _currentToken.toLowerCase();
-		switch (token) {
-		case "class":
-			return KeyWord.CLASS;
-		case "method":
-			return KeyWord.METHOD;
-		case "function":
-			return KeyWord.FUNCTION;
-		case "constructor":
-			return KeyWord.CONSTRUCTOR;
-		case "int":
-			return KeyWord.INT;
-		case "boolean":
-			return KeyWord.BOOLEAN;
-		case "char":
-			return KeyWord.CHAR;
-		case "void":
-			return KeyWord.VOID;
-		case "var":
-			return KeyWord.VAR;
-		case "static":
-			return KeyWord.STATIC;
-		case "field":
-			return KeyWord.FIELD;
-		case "let":
-			return KeyWord.LET;
-		case "do":
-			return KeyWord.DO;
-		case "if":
-			return KeyWord.IF;
-		case "else":
-			return KeyWord.ELSE;
-		case "while":
-			return KeyWord.WHILE;
-		case "return":
-			return KeyWord.RETURN;
-		case "true":
-			return KeyWord.TRUE;
-		case "false":
-			return KeyWord.FALSE;
-		case "null":
-			return KeyWord.NULL;
-		case "this":
-			return KeyWord.THIS;
-		default:
+		if (_tokenType != TokenType.KEYWORD) {
 			return KeyWord.UNKNOWN;
 		}
+		return KEYWORDS[_currentValue];
 	}
-
+	
 	/*
 	 * Returns the symbol which is the current token. Should be called only
 	 * when tokenType() is SYMBOL.
 	 */
 	public char symbol() {
-		return _currentToken.charAt(0);
+		return (char) _currentValue;
 	}
-
+	
 	/*
 	 * Returns the identifier which is the current token. Should be called only
 	 * when tokenType() is IDENTIFIER.
 	 */
 	public String identifier() {
-		return _currentToken;
+		if (_tokenType == TokenType.IDENTIFIER || _tokenType == TokenType.KEYWORD) {
+			return _names.getName(_currentValue);
+		}
+		return text(_currentOffset, _currentLength);
 	}
-
+	
+	/*
+	 * Returns the ID that getNameTable() gives the identifier which is the
+	 * current token. Should be called only when tokenType() is IDENTIFIER.
+	 * Keywords have IDs too, equal to their ordinal.
+	 */
+	public int identifierId() {
+		if (_tokenType == TokenType.IDENTIFIER || _tokenType == TokenType.KEYWORD) {
+			return _currentValue;
+		}
+		return _names.intern(identifier());
+	}
+	
+	/*
+	 * Returns the table of every keyword and identifier seen so far
+	 */
+	public NameTable getNameTable() {
+		return _names;
+	}
+	
+	/*
+	 * Returns the number of tokens lexed so far, which is every token in the
+	 * input once hasMoreTokens() has returned false
+	 */
+	public int getTokenCount() {
+		return _tokenCount;
+	}
+	
+	/*
+	 * Returns the number of bytes of input read so far
+	 */
+	public long getBytesRead() {
+		return (long) _inputBase + _input.limit();
+	}
+	
 	/*
 	 * Returns the integer value of the current token. Should be called only
 	 * when tokenType() is INT_CONST.
 	 */
 	public int intVal() {
-		return Integer.parseInt(_currentToken);
+		return _currentValue;
 	}
-
+	
 	/*
 	 * Returns the string value of the current token, without the double quotes.
 	 * Should be called only when tokenType() is STRING_CONST.
 	 */
 	public String stringVal() {
-		return _currentToken.replaceAll("\"", "");
+		return text(_currentOffset + 1, _currentLength - 2);
 	}
 	
-	public void writeXML() throws IOException {
-		writeOpeningTokensTag();
+	/*
+	 * Advances through all remaining tokens, passing each one to the given sink
+	 */
+	public void writeTokens(TokenSink sink) throws IOException {
+		sink.startTokens();
 		
-		/*
-		for (String token : _tokenList) {
-			_bw.write(token + "\n");
-		}
-		*/
 		while (hasMoreTokens()) {
 			advance();
 			switch (_tokenType) {
 			case KEYWORD:
-				_bw.write("<keyword> " + _currentToken + " </keyword>" + "\n");
+				sink.keyword(keyWord());
 				break;
 			case SYMBOL:
-				String escapedStr = _currentToken;
-				if (escapedStr.equals("&")) {
-					escapedStr = "&amp;";
-				}
-				else if (escapedStr.equals("<")) {
-					escapedStr = "&lt;";
-				}
-				else if (escapedStr.equals(">")) {
-					escapedStr = "&gt;";
-				}
-				_bw.write("<symbol> " + escapedStr + " </symbol>" + "\n");
+				sink.symbol(symbol());
 				break;
 			case INT_CONST:
-				_bw.write("<integerConstant> " + _currentToken + " </integerConstant>" + "\n");
+				sink.integerConstant(intVal());
 				break;
 			case STRING_CONST:
-				String strWithoutQuotes = _currentToken.replaceAll("\"", "");
-				_bw.write("<stringConstant > " + strWithoutQuotes + " </stringConstant>" + "\n");
+				sink.stringConstant(stringVal());
 				break;
 			case IDENTIFIER:
-				_bw.write("<identifier> " + _currentToken + " </identifier>" + "\n");
+				sink.identifier(identifier());
 				break;
 			case UNKNOWN:
-				_bw.write("<UNKNOWN> " + _currentToken + " </UNKNOWN>" + "\n");
+				sink.unknown(identifier());
 				break;
 			}
 		}
 		
-		writeClosingTokensTag();
+		sink.endTokens();
 	}
-
-	private void writeOpeningTokensTag() throws IOException {
-		_bw.write("<tokens>\n");
+	
+	/*
+	 * Decodes the given region of the input. Jack source is ASCII, so each
+	 * byte maps directly to one character.
+	 */
+	private String text(int offset, int length) {
+		int start = offset - _inputBase;
+		if (_input.hasArray()) {
+			return new String(_input.array(), _input.arrayOffset() + start, length, StandardCharsets.ISO_8859_1);
+		}
+		byte[] bytes = new byte[length];
+		for (int i = 0; i < length; i++) {
+			bytes[i] = _input.get(start + i);
+		}
+		return new String(bytes, StandardCharsets.ISO_8859_1);
 	}
-
-	private void writeClosingTokensTag() throws IOException {
-		_bw.write("</tokens>\n");
+	
+	/*
+	 * Copies the classification of the token at _currentTokenIndex out of the
+	 * token ring into the current token fields
+	 */
+	private void loadCurrentToken() {
+		int slot = _currentTokenIndex & TOKEN_RING_MASK;
+		_tokenType = TOKEN_TYPES[_tokenTypes[slot]];
+		_currentValue = _tokenValues[slot];
+		_currentOffset = _tokenOffsets[slot];
+		_currentLength = _tokenLengths[slot];
 	}
 	
-	private void populateTokenList() {
-		_tokenList = new ArrayList<String>();
+	/*
+	 * Returns the input byte at the given absolute position, or -1 if the
+	 * position is past the end of the input. When reading from a channel,
+	 * more input is read as needed.
+	 */
+	private int byteAt(int position) throws IOException {
+		int index = position - _inputBase;
+		if (index < _input.limit()) {
+			return _input.get(index) & 0xff;
+		}
+		while (!_inputExhausted) {
+			fillInput();
+			index = position - _inputBase;
+			if (index < _input.limit()) {
+				return _input.get(index) & 0xff;
+			}
+		}
+		return -1;
+	}
+	
+	/*
+	 * Reads the next chunk of the input channel into the input window. Bytes
+	 * before the oldest buffered token and the token currently being scanned
+	 * are no longer needed and are discarded to make room, so the window stays
+	 * about as large as the longest token.
+	 */
+	private void fillInput() throws IOException {
+		int retainFrom = _tokenStart;
+		if (_tokenCount > 0) {
+			int oldestToken = Math.max(0, _tokenCount - TOKEN_RING_SIZE);
+			retainFrom = Math.min(retainFrom, _tokenOffsets[oldestToken & TOKEN_RING_MASK]);
+		}
 		
-		//String keywordRegex = "class|constructor|function|method|field|static|var|int|char|boolean|void|true|false|null|this|let|do|if|else|while|return";
-		String symbolRegex = "[\\{\\}\\(\\)\\[\\]\\.,;\\+\\-\\*/&\\|\\<\\>\\=~]";
-		String intConstRegex = "[0-9]+";
-		String strConstRegex = "\".*\"";
-		String identifierRegex = "[a-zA-Z_][a-zA-Z0-9_]*";
-		//String regex = keywordRegex + "|" + symbolRegex + "|" + intConstRegex + "|" + strConstRegex + "|" + identifierRegex;
-		String regex = symbolRegex + "|" + intConstRegex + "|" + strConstRegex + "|" + identifierRegex;
+		_input.position(retainFrom - _inputBase);
+		_input.compact();
+		_inputBase = retainFrom;
+		if (!_input.hasRemaining()) {
+			ByteBuffer larger = ByteBuffer.allocate(_input.capacity() * 2);
+			_input.flip();
+			larger.put(_input);
+			_input = larger;
+		}
 		
-		Pattern pattern = Pattern.compile(regex);
-		Matcher matcher = pattern.matcher(_input);
-		while (matcher.find()) {
-			_tokenList.add(matcher.group());
+		int bytesRead = 0;
+		while (bytesRead == 0) {
+			bytesRead = _inputChannel.read(_input);
+		}
+		if (bytesRead < 0) {
+			_inputExhausted = true;
 		}
+		_input.flip();
 	}
-
-	private Scanner _scanner;
-	private BufferedWriter _bw;
-	private List<String> _tokenList;
+	
+	/*
+	 * Scans the next token of the input into the token ring, skipping any
+	 * whitespace and comments before it. Returns false if the end of the input
+	 * has been reached. Comment markers inside string literals are part of the
+	 * literal and are left alone.
+	 *
+	 * Each token is classified as it is scanned: the ring records its type, a
+	 * value (the name ID of a keyword or identifier, the symbol character, or
+	 * the integer value), and its offset and length in the input.
+	 */
+	private boolean lexNextToken() throws IOException {
+		int position = _scanPosition;
+		while (true) {
+			_tokenStart = position;
+			int c = byteAt(position);
+			
+			if (c < 0) {
+				_scanPosition = position;
+				return false;
+			}
+			else if (c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\f') {
+				position++;
+			}
+			else if (c == '/' && byteAt(position + 1) == '/') {
+				position = skipLineComment(position + 2);
+			}
+			else if (c == '/' && byteAt(position + 1) == '*') {
+				position = skipBlockComment(position + 2);
+			}
+			else if (c == '"') {
+				int end = scanStringConstant(position + 1);
+				if (end > position + 1 && byteAt(end - 1) == '"') {
+					addToken(TokenType.STRING_CONST, 0, position, end - position);
+				}
+				else {
+					addToken(TokenType.UNKNOWN, 0, position, end - position);
+				}
+				_scanPosition = end;
+				return true;
+			}
+			else if (isDigit(c)) {
+				int end = position;
+				int value = 0;
+				int digit = c;
+				while (isDigit(digit)) {
+					value = value * 10 + (digit - '0');
+					end++;
+					digit = byteAt(end);
+				}
+				addToken(TokenType.INT_CONST, value, position, end - position);
+				_scanPosition = end;
+				return true;
+			}
+			else if (isIdentifierStart(c)) {
+				int end = position;
+				int hash = 0;
+				int part = c;
+				while (isIdentifierPart(part)) {
+					hash = NameTable.hash(hash, part);
+					end++;
+					part = byteAt(end);
+				}
+				int id = _names.intern(_input, position - _inputBase, end - position, hash);
+				if (id < KEYWORD_TEXTS.length) {
+					addToken(TokenType.KEYWORD, id, position, end - position);
+				}
+				else {
+					addToken(TokenType.IDENTIFIER, id, position, end - position);
+				}
+				_scanPosition = end;
+				return true;
+			}
+			else {
+				// Symbols are single characters; anything else becomes an UNKNOWN token
+				addToken(isSymbol(c) ? TokenType.SYMBOL : TokenType.UNKNOWN, c, position, 1);
+				_scanPosition = position + 1;
+				return true;
+			}
+		}
+	}
+	
+	private void addToken(TokenType type, int value, int offset, int length) {
+		int slot = _tokenCount & TOKEN_RING_MASK;
+		_tokenTypes[slot] = (byte) type.ordinal();
+		_tokenValues[slot] = value;
+		_tokenOffsets[slot] = offset;
+		_tokenLengths[slot] = length;
+		_tokenCount++;
+	}
+	
+	/*
+	 * Returns the position just past the end of the line comment whose body starts at position
+	 */
+	private int skipLineComment(int position) throws IOException {
+		while (true) {
+			_tokenStart = position;
+			int c = byteAt(position);
+			if (c < 0 || c == '\n') {
+				return position;
+			}
+			position++;
+		}
+	}
+	
+	/*
+	 * Returns the position just past the end of the block comment whose body
+	 * starts at position, or the end of the input if the comment is unterminated
+	 */
+	private int skipBlockComment(int position) throws IOException {
+		while (true) {
+			_tokenStart = position;
+			int c = byteAt(position);
+			if (c < 0) {
+				_err.println("Error: Unterminated comment!");
+				return position;
+			}
+			if (c == '*' && byteAt(position + 1) == '/') {
+				return position + 2;
+			}
+			position++;
+		}
+	}
+	
+	/*
+	 * Returns the position just past the closing double quote of the string
+	 * constant whose body starts at position. String constants may not span lines.
+	 */
+	private int scanStringConstant(int position) throws IOException {
+		while (true) {
+			int c = byteAt(position);
+			if (c == '"') {
+				return position + 1;
+			}
+			if (c < 0 || c == '\n') {
+				_err.println("Error: Unterminated string constant!");
+				return position;
+			}
+			position++;
+		}
+	}
+	
+	private static boolean isDigit(int c) {
+		return c >= '0' && c <= '9';
+	}
+	
+	private static boolean isIdentifierStart(int c) {
+		return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '_';
+	}
+	
+	private static boolean isIdentifierPart(int c) {
+		return isIdentifierStart(c) || isDigit(c);
+	}
+	
+	private static boolean isSymbol(int c) {
+		switch (c) {
+		case '{': case '}': case '(': case ')': case '[': case ']':
+		case '.': case ',': case ';': case '+': case '-': case '*':
+		case '/': case '&': case '|': case '<': case '>': case '=':
+		case '~':
+			return true;
+		default:
+			return false;
+		}
+	}
+	
+	// Files at least this large are memory-mapped rather than read onto the heap
+	private static final int MAP_THRESHOLD = 64 * 1024;
+	
+	// Initial size of the input window when reading from a channel
+	private static final int INITIAL_WINDOW_SIZE = 8 * 1024;
+	
+	// Number of tokens kept: the current token and the one after it for the
+	// peek methods; must be a power of two
+	private static final int TOKEN_RING_SIZE = 2;
+	private static final int TOKEN_RING_MASK = TOKEN_RING_SIZE - 1;
+	
+	private static final TokenType[] TOKEN_TYPES = TokenType.values();
+	private static final KeyWord[] KEYWORDS = KeyWord.values();
+	private static final String[] KEYWORD_TEXTS = new String[KeyWord.UNKNOWN.ordinal()];
+	static {
+		for (int i = 0; i < KEYWORD_TEXTS.length; i++) {
+			KEYWORD_TEXTS[i] = KEYWORDS[i].toString().toLowerCase();
+		}
+	}
+	
+	private PrintStream _err;
+	private NameTable _names;
+	
+	// Window onto the input; _inputBase is the absolute position of its first byte
+	private ByteBuffer _input;
+	private ReadableByteChannel _inputChannel;
+	private int _inputBase;
+	private boolean _inputExhausted;
+	
+	// Ring of the current and next tokens, indexed by token number & TOKEN_RING_MASK
+	private byte[] _tokenTypes;
+	private int[] _tokenValues;
+	private int[] _tokenOffsets;
+	private int[] _tokenLengths;
+	private int _tokenCount;
+	private int _scanPosition;
+	private int _tokenStart;
+	
 	private int _currentTokenIndex;
-	private String _currentToken;
 	private TokenType _tokenType;
-	private String _input;
-
+	private int _currentValue;
+	private int _currentOffset;
+	private int _currentLength;
+	
 }
@@ -0,0 +1,18 @@
+package org.jrao.jacksyntaxanalyzer;
+
+/*
+ * true, false, null, or this
+ */
+public class KeywordConstantTerm extends Term {
+	
+	public KeywordConstantTerm(KeyWord keyWord) {
+		_keyWord = keyWord;
+	}
+	
+	public KeyWord getKeyWord() {
+		return _keyWord;
+	}
+	
+	private KeyWord _keyWord;
+	
+}
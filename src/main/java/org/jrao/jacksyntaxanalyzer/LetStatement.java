@@ -0,0 +1,33 @@
+package org.jrao.jacksyntaxanalyzer;
+
+/*
+ * let varName ('[' expression ']')? '=' expression ';'
+ */
+public class LetStatement extends Statement {
+	
+	public LetStatement(Variable target, Expression index, Expression value) {
+		_target = target;
+		_index = index;
+		_value = value;
+	}
+	
+	public Variable getTarget() {
+		return _target;
+	}
+	
+	/*
+	 * Returns the array index expression, or null if the target is not indexed
+	 */
+	public Expression getIndex() {
+		return _index;
+	}
+	
+	public Expression getValue() {
+		return _value;
+	}
+	
+	private Variable _target;
+	private Expression _index;
+	private Expression _value;
+	
+}
@@ -0,0 +1,139 @@
+package org.jrao.jacksyntaxanalyzer;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/*
+ * Collects the FileMetrics of a build and writes them out as JSON, one
+ * entry per file followed by the totals:
+ *
+ *   {
+ *     "wallNanos": 123456789,
+ *     "files": [
+ *       { "file": "Main.jack", "class": "Main", "tokens": 1234, ..., "phaseNanos": { "read": 1234, ... } },
+ *       ...
+ *     ],
+ *     "total": { "files": 8, "tokens": 9876, ... }
+ *   }
+ *
+ * wallNanos is the elapsed time of the whole build, which is less than the
+ * total of the files' times when they are compiled in parallel. Files are
+ * listed in order of name, whatever order they finished in.
+ */
+public class MetricsReport implements CompilationListener {
+	
+	public MetricsReport() {
+		_files = new ArrayList<FileMetrics>();
+	}
+	
+	@Override
+	public synchronized void fileCompiled(FileMetrics metrics) {
+		_files.add(metrics);
+	}
+	
+	/*
+	 * Returns the metrics of every file reported so far
+	 */
+	public synchronized List<FileMetrics> getFiles() {
+		return new ArrayList<FileMetrics>(_files);
+	}
+	
+	/*
+	 * Writes the report as JSON, with wallNanos as the build's elapsed time
+	 */
+	public void writeJSON(Writer out, long wallNanos) throws IOException {
+		List<FileMetrics> files = getFiles();
+		Collections.sort(files, new Comparator<FileMetrics>() {
+			@Override
+			public int compare(FileMetrics a, FileMetrics b) {
+				return String.valueOf(a.getFileName()).compareTo(String.valueOf(b.getFileName()));
+			}
+		});
+		
+		FileMetrics total = new FileMetrics(null);
+		long tokens = 0;
+		for (FileMetrics file : files) {
+			for (CompilationPhase phase : CompilationPhase.values()) {
+				total.addNanos(phase, file.getNanos(phase));
+			}
+			tokens += file.getTokens();
+			total.setBytesIn(total.getBytesIn() + file.getBytesIn());
+			total.setVMBytesOut(total.getVMBytesOut() + file.getVMBytesOut());
+			total.setXMLBytesOut(total.getXMLBytesOut() + file.getXMLBytesOut());
+			total.setVMCommandsGenerated(total.getVMCommandsGenerated() + file.getVMCommandsGenerated());
+			total.setVMCommandsWritten(total.getVMCommandsWritten() + file.getVMCommandsWritten());
+		}
+		
+		StringBuilder sb = new StringBuilder();
+		sb.append("{\n");
+		sb.append("  \"wallNanos\": ").append(wallNanos).append(",\n");
+		sb.append("  \"files\": [");
+		for (int i = 0; i < files.size(); i++) {
+			FileMetrics file = files.get(i);
+			sb.append(i == 0 ? "\n" : ",\n");
+			sb.append("    { \"file\": ");
+			appendString(sb, file.getFileName());
+			sb.append(", \"class\": ");
+			appendString(sb, file.getClassName());
+			sb.append(", \"tokens\": ").append(file.getTokens());
+			appendSizes(sb, file);
+			sb.append(" }");
+		}
+		sb.append(files.isEmpty() ? "],\n" : "\n  ],\n");
+		sb.append("  \"total\": { \"files\": ").append(files.size());
+		sb.append(", \"tokens\": ").append(tokens);
+		appendSizes(sb, total);
+		sb.append(" }\n");
+		sb.append("}\n");
+		out.write(sb.toString());
+	}
+	
+	/*
+	 * Appends the fields that files and the totals have in common
+	 */
+	private static void appendSizes(StringBuilder sb, FileMetrics metrics) {
+		sb.append(", \"bytesIn\": ").append(metrics.getBytesIn());
+		sb.append(", \"vmBytesOut\": ").append(metrics.getVMBytesOut());
+		sb.append(", \"xmlBytesOut\": ").append(metrics.getXMLBytesOut());
+		sb.append(", \"vmCommandsGenerated\": ").append(metrics.getVMCommandsGenerated());
+		sb.append(", \"vmCommandsWritten\": ").append(metrics.getVMCommandsWritten());
+		sb.append(", \"totalNanos\": ").append(metrics.getTotalNanos());
+		sb.append(", \"phaseNanos\": {");
+		for (CompilationPhase phase : CompilationPhase.values()) {
+			sb.append(phase.ordinal() == 0 ? " " : ", ");
+			sb.append("\"").append(phase.getReportName()).append("\": ").append(metrics.getNanos(phase));
+		}
+		sb.append(" }");
+	}
+	
+	/*
+	 * Appends text as a JSON string, or null
+	 */
+	private static void appendString(StringBuilder sb, String text) {
+		if (text == null) {
+			sb.append("null");
+			return;
+		}
+		sb.append('"');
+		for (int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			if (c == '"' || c == '\\') {
+				sb.append('\\').append(c);
+			}
+			else if (c < 0x20) {
+				sb.append(String.format("\\u%04x", (int) c));
+			}
+			else {
+				sb.append(c);
+			}
+		}
+		sb.append('"');
+	}
+	
+	private List<FileMetrics> _files;
+	
+}
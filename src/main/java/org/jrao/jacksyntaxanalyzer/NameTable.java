@@ -0,0 +1,156 @@
+package org.jrao.jacksyntaxanalyzer;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/*
+ * Interns the names that appear in a Jack source file, giving each distinct
+ * name a small integer ID. IDs are handed out in order starting from 0, so
+ * they can index arrays directly, and each name's String is only created the
+ * first time it is seen.
+ */
+public class NameTable {
+	
+	public NameTable() {
+		_slots = new int[INITIAL_CAPACITY];
+		_names = new String[INITIAL_CAPACITY / 2];
+		_hashes = new int[INITIAL_CAPACITY / 2];
+		_size = 0;
+	}
+	
+	/*
+	 * Returns the ID of the given name, interning it if it is new
+	 */
+	public int intern(String name) {
+		int hash = 0;
+		for (int i = 0; i < name.length(); i++) {
+			hash = hash(hash, name.charAt(i));
+		}
+		
+		int mask = _slots.length - 1;
+		for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+			int id = _slots[slot] - 1;
+			if (id < 0) {
+				return add(slot, name, hash);
+			}
+			if (_hashes[id] == hash && _names[id].equals(name)) {
+				return id;
+			}
+		}
+	}
+	
+	/*
+	 * Returns the ID of the name spelled by length bytes of input starting at
+	 * index, interning it if it is new. hash must be the hash of those bytes,
+	 * as computed with hash().
+	 */
+	public int intern(ByteBuffer input, int index, int length, int hash) {
+		int mask = _slots.length - 1;
+		for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+			int id = _slots[slot] - 1;
+			if (id < 0) {
+				return add(slot, text(input, index, length), hash);
+			}
+			if (_hashes[id] == hash && matches(_names[id], input, index, length)) {
+				return id;
+			}
+		}
+	}
+	
+	/*
+	 * Returns the name with the given ID
+	 */
+	public String getName(int id) {
+		return _names[id];
+	}
+	
+	/*
+	 * Returns the number of names interned so far, which is one more than the
+	 * largest ID
+	 */
+	public int size() {
+		return _size;
+	}
+	
+	/*
+	 * Returns the hash of a name whose characters before c hash to hash. The
+	 * hash of the empty name is 0.
+	 */
+	public static int hash(int hash, int c) {
+		return hash * 31 + c;
+	}
+	
+	private int add(int slot, String name, int hash) {
+		if (_size == _names.length) {
+			String[] names = new String[_size * 2];
+			System.arraycopy(_names, 0, names, 0, _size);
+			_names = names;
+			int[] hashes = new int[_size * 2];
+			System.arraycopy(_hashes, 0, hashes, 0, _size);
+			_hashes = hashes;
+		}
+		
+		int id = _size;
+		_names[id] = name;
+		_hashes[id] = hash;
+		_slots[slot] = id + 1;
+		_size++;
+		
+		// Keep the table at most half full so that probe sequences stay short
+		if (_size * 2 > _slots.length) {
+			rehash(_slots.length * 2);
+		}
+		return id;
+	}
+	
+	private void rehash(int capacity) {
+		_slots = new int[capacity];
+		int mask = capacity - 1;
+		for (int id = 0; id < _size; id++) {
+			int slot = _hashes[id] & mask;
+			while (_slots[slot] != 0) {
+				slot = (slot + 1) & mask;
+			}
+			_slots[slot] = id + 1;
+		}
+	}
+	
+	private static boolean matches(String name, ByteBuffer input, int index, int length) {
+		if (name.length() != length) {
+			return false;
+		}
+		for (int i = 0; i < length; i++) {
+			if ((input.get(index + i) & 0xff) != name.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/*
+	 * Decodes the given region of the input. Jack source is ASCII, so each
+	 * byte maps directly to one character.
+	 */
+	private static String text(ByteBuffer input, int index, int length) {
+		if (input.hasArray()) {
+			return new String(input.array(), input.arrayOffset() + index, length, StandardCharsets.ISO_8859_1);
+		}
+		byte[] bytes = new byte[length];
+		for (int i = 0; i < length; i++) {
+			bytes[i] = input.get(index + i);
+		}
+		return new String(bytes, StandardCharsets.ISO_8859_1);
+	}
+	
+	// Number of hash slots to start with; must be a power of two
+	private static final int INITIAL_CAPACITY = 256;
+	
+	// Open-addressed hash table of ID + 1, or 0 for an empty slot
+	private int[] _slots;
+	
+	// Name and hash of each ID
+	private String[] _names;
+	private int[] _hashes;
+	private int _size;
+	
+}
@@ -0,0 +1,31 @@
+package org.jrao.jacksyntaxanalyzer;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/*
+ * Flight Recorder event for CompilationEngine flushing and closing its output
+ * files
+ */
+@Name("org.jrao.jacksyntaxanalyzer.OutputFlush")
+@Label("Flush Outputs")
+@Category("Jack Compiler")
+@Description("Flushing and closing the output files of a Jack file")
+public class OutputFlushEvent extends Event {
+	
+	@Label("File")
+	String fileName;
+	
+	@Label("VM Bytes Written")
+	@DataAmount(DataAmount.BYTES)
+	long vmBytes;
+	
+	@Label("XML Bytes Written")
+	@DataAmount(DataAmount.BYTES)
+	long xmlBytes;
+	
+}
@@ -0,0 +1,19 @@
+package org.jrao.jacksyntaxanalyzer;
+
+/*
+ * Which outputs the compiler writes for each Jack file: the VM code
+ * (.jack.vm), the XML parse tree (.jack.xml), or both
+ */
+public enum OutputMode {
+	VM,
+	XML,
+	BOTH;
+
+	public boolean writesVM() {
+		return this != XML;
+	}
+
+	public boolean writesXML() {
+		return this != VM;
+	}
+}
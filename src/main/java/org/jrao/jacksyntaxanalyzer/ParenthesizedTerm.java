@@ -0,0 +1,18 @@
+package org.jrao.jacksyntaxanalyzer;
+
+/*
+ * '(' expression ')'
+ */
+public class ParenthesizedTerm extends Term {
+	
+	public ParenthesizedTerm(Expression expression) {
+		_expression = expression;
+	}
+	
+	public Expression getExpression() {
+		return _expression;
+	}
+	
+	private Expression _expression;
+	
+}
@@ -0,0 +1,426 @@
+package org.jrao.jacksyntaxanalyzer;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/*
+ * Rewrites VM commands before passing them on to another sink. Commands are
+ * held back one function at a time, since VM labels are local to a function,
+ * and the enabled rules are applied to the function until none of them
+ * changes it any more.
+ */
+public class PeepholeOptimizer implements VMCommandSink {
+	
+	public PeepholeOptimizer(VMCommandSink out, Set<PeepholeRule> rules) {
+		_out = out;
+		_rules = rules.isEmpty() ? EnumSet.noneOf(PeepholeRule.class) : EnumSet.copyOf(rules);
+		_function = new ArrayList<Instruction>();
+	}
+	
+	@Override
+	public void writePush(Segment segment, int index) throws IOException {
+		_function.add(new Instruction(Opcode.PUSH, segment, index));
+	}
+	
+	@Override
+	public void writePop(Segment segment, int index) throws IOException {
+		_function.add(new Instruction(Opcode.POP, segment, index));
+	}
+	
+	@Override
+	public void writeArithmetic(Command command) throws IOException {
+		_function.add(new Instruction(command));
+	}
+	
+	@Override
+	public void writeLabel(String label) throws IOException {
+		_function.add(new Instruction(Opcode.LABEL, label, 0));
+	}
+	
+	@Override
+	public void writeGoto(String label) throws IOException {
+		_function.add(new Instruction(Opcode.GOTO, label, 0));
+	}
+	
+	@Override
+	public void writeIf(String label) throws IOException {
+		_function.add(new Instruction(Opcode.IF_GOTO, label, 0));
+	}
+	
+	@Override
+	public void writeCall(String name, int nArgs) throws IOException {
+		_function.add(new Instruction(Opcode.CALL, name, nArgs));
+	}
+	
+	@Override
+	public void writeFunction(String name, int nLocals) throws IOException {
+		flushFunction();
+		_function.add(new Instruction(Opcode.FUNCTION, name, nLocals));
+	}
+	
+	@Override
+	public void writeReturn() throws IOException {
+		_function.add(new Instruction(Opcode.RETURN, (String) null, 0));
+	}
+	
+	@Override
+	public void flush() throws IOException {
+		flushFunction();
+		_out.flush();
+	}
+	
+	private void flushFunction() throws IOException {
+		optimize(_function);
+		for (Instruction instruction : _function) {
+			instruction.writeTo(_out);
+		}
+		_function.clear();
+	}
+	
+	/*
+	 * Applies the enabled rules until the code stops changing
+	 */
+	private void optimize(List<Instruction> code) {
+		boolean changed = true;
+		while (changed) {
+			changed = false;
+			if (_rules.contains(PeepholeRule.DOUBLE_NOT)) {
+				changed |= removeDoubleNots(code);
+			}
+			if (_rules.contains(PeepholeRule.CONSTANT_BRANCH)) {
+				changed |= foldConstantBranches(code);
+			}
+			if (_rules.contains(PeepholeRule.COLLAPSE_CONDITIONAL_JUMP)) {
+				changed |= collapseConditionalJumps(code);
+			}
+			if (_rules.contains(PeepholeRule.ARRAY_STORE)) {
+				changed |= simplifyArrayStores(code);
+			}
+			if (_rules.contains(PeepholeRule.JUMP_TO_NEXT)) {
+				changed |= removeJumpsToNext(code);
+			}
+			if (_rules.contains(PeepholeRule.DEAD_CODE)) {
+				changed |= removeDeadCode(code);
+			}
+			if (_rules.contains(PeepholeRule.UNUSED_LABEL)) {
+				changed |= removeUnusedLabels(code);
+			}
+		}
+	}
+	
+	private boolean removeDoubleNots(List<Instruction> code) {
+		boolean changed = false;
+		for (int i = 0; i + 1 < code.size(); i++) {
+			if (code.get(i).is(Opcode.NOT) && code.get(i + 1).is(Opcode.NOT)) {
+				code.subList(i, i + 2).clear();
+				changed = true;
+				i = Math.max(i - 2, -1);
+			}
+		}
+		return changed;
+	}
+	
+	private boolean foldConstantBranches(List<Instruction> code) {
+		boolean changed = false;
+		for (int i = 0; i + 1 < code.size(); i++) {
+			if (!code.get(i).is(Opcode.PUSH, Segment.CONSTANT)) {
+				continue;
+			}
+			int constant = code.get(i).getIndex();
+			
+			if (code.get(i + 1).is(Opcode.IF_GOTO)) {
+				Instruction branch = code.get(i + 1);
+				code.subList(i, i + 2).clear();
+				if (constant != 0) {
+					code.add(i, new Instruction(Opcode.GOTO, branch.getArg(), 0));
+				}
+				changed = true;
+			}
+			else if (i + 2 < code.size() && code.get(i + 1).is(Opcode.NOT) && code.get(i + 2).is(Opcode.IF_GOTO)) {
+				// Constants are never -1, so their negation is never 0
+				Instruction branch = code.get(i + 2);
+				code.subList(i, i + 3).clear();
+				code.add(i, new Instruction(Opcode.GOTO, branch.getArg(), 0));
+				changed = true;
+			}
+		}
+		return changed;
+	}
+	
+	private boolean collapseConditionalJumps(List<Instruction> code) {
+		boolean changed = false;
+		for (int i = 1; i + 2 < code.size(); i++) {
+			Instruction ifGoto = code.get(i);
+			Instruction jump = code.get(i + 1);
+			Instruction label = code.get(i + 2);
+			if (!(ifGoto.is(Opcode.IF_GOTO) && jump.is(Opcode.GOTO) && label.is(Opcode.LABEL)
+					&& label.getArg().equals(ifGoto.getArg()))) {
+				continue;
+			}
+			if (!isBoolean(code, i - 1)) {
+				// Negating any other value with not would not negate its truth
+				continue;
+			}
+			
+			code.set(i, new Instruction(Opcode.IF_GOTO, jump.getArg(), 0));
+			code.remove(i + 1);
+			if (code.get(i - 1).is(Opcode.NOT)) {
+				code.remove(i - 1);
+			}
+			else {
+				code.add(i, new Instruction(Command.NOT));
+			}
+			changed = true;
+		}
+		return changed;
+	}
+	
+	/*
+	 * Returns true if the command at index always leaves exactly true (-1) or
+	 * false (0) on the stack
+	 */
+	private boolean isBoolean(List<Instruction> code, int index) {
+		if (index < 0) {
+			return false;
+		}
+		Instruction instruction = code.get(index);
+		if (instruction.is(Opcode.EQ) || instruction.is(Opcode.LT) || instruction.is(Opcode.GT)) {
+			return true;
+		}
+		if (instruction.is(Opcode.PUSH, Segment.CONSTANT)) {
+			return instruction.getIndex() == 0;
+		}
+		if (instruction.is(Opcode.NOT)) {
+			return isBoolean(code, index - 1);
+		}
+		return false;
+	}
+	
+	private boolean simplifyArrayStores(List<Instruction> code) {
+		boolean changed = false;
+		for (int i = 0; i + 4 < code.size(); i++) {
+			Instruction value = code.get(i);
+			if (!(value.is(Opcode.PUSH) && code.get(i + 1).is(Opcode.POP, Segment.TEMP, 0)
+					&& code.get(i + 2).is(Opcode.POP, Segment.POINTER, 1) && code.get(i + 3).is(Opcode.PUSH, Segment.TEMP, 0)
+					&& code.get(i + 4).is(Opcode.POP, Segment.THAT, 0))) {
+				continue;
+			}
+			Segment segment = value.getSegment();
+			if (segment == Segment.THAT || segment == Segment.POINTER || segment == Segment.TEMP) {
+				continue;
+			}
+			
+			code.set(i, code.get(i + 2));
+			code.set(i + 1, value);
+			code.set(i + 2, code.get(i + 4));
+			code.subList(i + 3, i + 5).clear();
+			changed = true;
+		}
+		return changed;
+	}
+	
+	private boolean removeJumpsToNext(List<Instruction> code) {
+		boolean changed = false;
+		for (int i = 0; i < code.size(); i++) {
+			if (!code.get(i).is(Opcode.GOTO)) {
+				continue;
+			}
+			for (int j = i + 1; j < code.size() && code.get(j).is(Opcode.LABEL); j++) {
+				if (code.get(j).getArg().equals(code.get(i).getArg())) {
+					code.remove(i);
+					i--;
+					changed = true;
+					break;
+				}
+			}
+		}
+		return changed;
+	}
+	
+	private boolean removeDeadCode(List<Instruction> code) {
+		boolean changed = false;
+		for (int i = 0; i < code.size(); i++) {
+			if (!(code.get(i).is(Opcode.GOTO) || code.get(i).is(Opcode.RETURN))) {
+				continue;
+			}
+			int end = i + 1;
+			while (end < code.size() && !code.get(end).is(Opcode.LABEL)) {
+				end++;
+			}
+			if (end > i + 1) {
+				code.subList(i + 1, end).clear();
+				changed = true;
+			}
+		}
+		return changed;
+	}
+	
+	private boolean removeUnusedLabels(List<Instruction> code) {
+		Set<String> targets = new HashSet<String>();
+		for (Instruction instruction : code) {
+			if (instruction.is(Opcode.GOTO) || instruction.is(Opcode.IF_GOTO)) {
+				targets.add(instruction.getArg());
+			}
+		}
+		
+		boolean changed = false;
+		for (int i = code.size() - 1; i >= 0; i--) {
+			if (code.get(i).is(Opcode.LABEL) && !targets.contains(code.get(i).getArg())) {
+				code.remove(i);
+				changed = true;
+			}
+		}
+		return changed;
+	}
+	
+	/*
+	 * A single buffered VM command. segment is set for push and pop; arg holds
+	 * the label or function name, and index holds the segment index, argument
+	 * count, or local count.
+	 */
+	private static class Instruction {
+		
+		public Instruction(Opcode opcode, String arg, int index) {
+			_opcode = opcode;
+			_arg = arg;
+			_index = index;
+		}
+		
+		public Instruction(Opcode opcode, Segment segment, int index) {
+			_opcode = opcode;
+			_segment = segment;
+			_index = index;
+		}
+		
+		public Instruction(Command arithmetic) {
+			_opcode = Opcode.forArithmetic(arithmetic);
+		}
+		
+		public String getArg() {
+			return _arg;
+		}
+		
+		public Segment getSegment() {
+			return _segment;
+		}
+		
+		public int getIndex() {
+			return _index;
+		}
+		
+		public boolean is(Opcode opcode) {
+			return _opcode == opcode;
+		}
+		
+		public boolean is(Opcode opcode, Segment segment) {
+			return _opcode == opcode && _segment == segment;
+		}
+		
+		public boolean is(Opcode opcode, Segment segment, int index) {
+			return is(opcode, segment) && _index == index;
+		}
+		
+		public void writeTo(VMCommandSink out) throws IOException {
+			switch (_opcode) {
+			case PUSH:
+				out.writePush(_segment, _index);
+				break;
+			case POP:
+				out.writePop(_segment, _index);
+				break;
+			case LABEL:
+				out.writeLabel(_arg);
+				break;
+			case GOTO:
+				out.writeGoto(_arg);
+				break;
+			case IF_GOTO:
+				out.writeIf(_arg);
+				break;
+			case CALL:
+				out.writeCall(_arg, _index);
+				break;
+			case FUNCTION:
+				out.writeFunction(_arg, _index);
+				break;
+			case RETURN:
+				out.writeReturn();
+				break;
+			default:
+				out.writeArithmetic(_opcode.getArithmetic());
+				break;
+			}
+		}
+		
+		private Opcode _opcode;
+		private Segment _segment;
+		private String _arg;
+		private int _index;
+		
+	}
+	
+	/*
+	 * The kinds of buffered VM command. Each arithmetic-logical command has an
+	 * opcode of its own, so that every kind of command is told apart the same
+	 * way.
+	 */
+	private enum Opcode {
+		PUSH,
+		POP,
+		LABEL,
+		GOTO,
+		IF_GOTO,
+		CALL,
+		FUNCTION,
+		RETURN,
+		ADD(Command.ADD),
+		SUB(Command.SUB),
+		NEG(Command.NEG),
+		EQ(Command.EQ),
+		GT(Command.GT),
+		LT(Command.LT),
+		AND(Command.AND),
+		OR(Command.OR),
+		NOT(Command.NOT);
+		
+		private Opcode() {
+			this(null);
+		}
+		
+		private Opcode(Command arithmetic) {
+			_arithmetic = arithmetic;
+		}
+		
+		/*
+		 * Returns the arithmetic-logical command of this opcode, or null if it
+		 * is not one
+		 */
+		public Command getArithmetic() {
+			return _arithmetic;
+		}
+		
+		public static Opcode forArithmetic(Command arithmetic) {
+			return ARITHMETIC_OPCODES[arithmetic.ordinal()];
+		}
+		
+		private static final Opcode[] ARITHMETIC_OPCODES = new Opcode[Command.values().length];
+		static {
+			for (Opcode opcode : values()) {
+				if (opcode._arithmetic != null) {
+					ARITHMETIC_OPCODES[opcode._arithmetic.ordinal()] = opcode;
+				}
+			}
+		}
+		
+		private final Command _arithmetic;
+	}
+	
+	private VMCommandSink _out;
+	private Set<PeepholeRule> _rules;
+	private List<Instruction> _function;
+	
+}
@@ -0,0 +1,57 @@
+package org.jrao.jacksyntaxanalyzer;
+
+/*
+ * The rewrite rules PeepholeOptimizer can apply to the VM code of a function
+ */
+public enum PeepholeRule {
+	/*
+	 * if-goto A; goto B; label A  =>  (negated condition) if-goto B; label A,
+	 * when the condition is known to be true (-1) or false (0)
+	 */
+	COLLAPSE_CONDITIONAL_JUMP,
+	/*
+	 * not; not  =>  (nothing)
+	 */
+	DOUBLE_NOT,
+	/*
+	 * push constant 0; if-goto L  =>  (nothing), and
+	 * push constant N; if-goto L  =>  goto L for any other constant
+	 */
+	CONSTANT_BRANCH,
+	/*
+	 * push X; pop temp 0; pop pointer 1; push temp 0; pop that 0
+	 * =>  pop pointer 1; push X; pop that 0, when X does not depend on pointer 1
+	 */
+	ARRAY_STORE,
+	/*
+	 * goto L; label L  =>  label L
+	 */
+	JUMP_TO_NEXT,
+	/*
+	 * Removes commands that follow a goto or return and are not labelled
+	 */
+	DEAD_CODE,
+	/*
+	 * Removes labels that no goto or if-goto refers to
+	 */
+	UNUSED_LABEL;
+	
+	/*
+	 * Returns the name used for this rule on the command line, e.g. "double-not"
+	 */
+	public String getOptionName() {
+		return toString().toLowerCase().replace('_', '-');
+	}
+	
+	/*
+	 * Returns the rule with the given command line name, or null if there is none
+	 */
+	public static PeepholeRule fromOptionName(String optionName) {
+		for (PeepholeRule rule : values()) {
+			if (rule.getOptionName().equals(optionName)) {
+				return rule;
+			}
+		}
+		return null;
+	}
+}
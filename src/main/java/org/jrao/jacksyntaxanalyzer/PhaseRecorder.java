@@ -0,0 +1,338 @@
+package org.jrao.jacksyntaxanalyzer;
+
+import java.io.File;
+import java.io.IOException;
+
+/*
+ * Records the phases of compiling one file: their times and sizes into
+ * FileMetrics, if any were set, and each phase as a Flight Recorder event
+ * while Flight Recorder is running (see CompilerEvents). The compiler marks
+ * each phase with a begin and an end call, and everything else about timing
+ * and recording the phase happens here.
+ *
+ * Phases of one kind do not overlap, so one event of each kind is kept at a
+ * time. Each kind has its own field, rather than sharing one of type Event,
+ * so that the event classes are never loaded while no events are recorded.
+ */
+final class PhaseRecorder {
+	
+	PhaseRecorder(String sourceName) {
+		_sourceName = sourceName;
+		_recordEvents = CompilerEvents.isEnabled();
+	}
+	
+	/*
+	 * Sets the metrics that phases are recorded into, or null to record none.
+	 * Reading the file may already have been recorded, and is added to them.
+	 */
+	void setMetrics(FileMetrics metrics) {
+		_metrics = metrics;
+		if (_metrics != null) {
+			_metrics.addNanos(CompilationPhase.READ, _readNanos);
+		}
+	}
+	
+	void beginRead() {
+		if (_recordEvents) {
+			_readEvent = new FileReadEvent();
+			_readEvent.begin();
+		}
+		// Reading happens before any metrics are set, so it is always timed
+		_phaseStart = System.nanoTime();
+	}
+	
+	void endRead(JackTokenizer tokenizer) {
+		_readNanos = System.nanoTime() - _phaseStart;
+		if (_readEvent != null) {
+			_readEvent.end();
+			if (_readEvent.shouldCommit()) {
+				_readEvent.fileName = _sourceName;
+				_readEvent.bytes = tokenizer.getBytesRead();
+				_readEvent.commit();
+			}
+			_readEvent = null;
+		}
+	}
+	
+	void beginParse() {
+		if (_recordEvents) {
+			_parseEvent = new ClassParseEvent();
+			_parseEvent.begin();
+		}
+		startTiming();
+	}
+	
+	/*
+	 * Ends the parse phase. classDec is null if the class could not be parsed.
+	 */
+	void endParse(JackTokenizer tokenizer, ClassDec classDec) {
+		if (_metrics != null) {
+			endTiming(CompilationPhase.PARSE);
+			_metrics.setTokens(tokenizer.getTokenCount());
+			_metrics.setBytesIn(tokenizer.getBytesRead());
+			if (classDec != null) {
+				_metrics.setClassName(classDec.getName());
+			}
+		}
+		if (_parseEvent != null) {
+			_parseEvent.end();
+			if (_parseEvent.shouldCommit()) {
+				_parseEvent.fileName = _sourceName;
+				_parseEvent.className = (classDec != null) ? classDec.getName() : null;
+				_parseEvent.tokens = tokenizer.getTokenCount();
+				_parseEvent.bytes = tokenizer.getBytesRead();
+				_parseEvent.subroutines = (classDec != null) ? classDec.getSubroutineDecs().size() : 0;
+				_parseEvent.commit();
+			}
+			_parseEvent = null;
+		}
+	}
+	
+	/*
+	 * Begins parsing one subroutine, which happens within the parse phase and
+	 * is only recorded as an event
+	 */
+	void beginSubroutine(JackTokenizer tokenizer) {
+		if (_recordEvents) {
+			_subroutineEvent = new SubroutineParseEvent();
+			_subroutineEvent.begin();
+			_subroutineFirstToken = tokenizer.getTokenCount();
+		}
+	}
+	
+	void endSubroutine(JackTokenizer tokenizer, ClassDec classDec, SubroutineDec subroutineDec) {
+		if (_subroutineEvent != null) {
+			_subroutineEvent.end();
+			if (_subroutineEvent.shouldCommit()) {
+				_subroutineEvent.fileName = _sourceName;
+				_subroutineEvent.className = classDec.getName();
+				_subroutineEvent.subroutineName = subroutineDec.getName();
+				_subroutineEvent.tokens = tokenizer.getTokenCount() - _subroutineFirstToken;
+				_subroutineEvent.commit();
+			}
+			_subroutineEvent = null;
+		}
+	}
+	
+	void beginXML() {
+		if (_recordEvents) {
+			_xmlEvent = new XMLWriteEvent();
+			_xmlEvent.begin();
+		}
+		startTiming();
+	}
+	
+	void endXML(ClassDec classDec) {
+		if (_metrics != null) {
+			endTiming(CompilationPhase.XML);
+		}
+		if (_xmlEvent != null) {
+			_xmlEvent.end();
+			if (_xmlEvent.shouldCommit()) {
+				_xmlEvent.fileName = _sourceName;
+				_xmlEvent.className = classDec.getName();
+				_xmlEvent.commit();
+			}
+			_xmlEvent = null;
+		}
+	}
+	
+	/*
+	 * Begins generating VM code. Commands are only counted if there are
+	 * metrics, or the event is enabled now; a recording that starts during
+	 * this class has no counts to report.
+	 */
+	void beginCodegen() {
+		if (_recordEvents) {
+			_emitEvent = new VMEmitEvent();
+			_emitEvent.begin();
+		}
+		startTiming();
+		_countCommands = (_metrics != null) || (_emitEvent != null && _emitEvent.isEnabled());
+		_commandsGenerated = null;
+		_commandsWritten = null;
+	}
+	
+	/*
+	 * Returns a sink that counts the commands the code generator writes to
+	 * vmOutput, or vmOutput itself if commands are not being counted
+	 */
+	VMCommandSink countGenerated(VMCommandSink vmOutput) {
+		if (!_countCommands) {
+			return vmOutput;
+		}
+		_commandsGenerated = new CommandCounter(vmOutput);
+		return _commandsGenerated;
+	}
+	
+	/*
+	 * Returns a sink that counts the commands that reach vmOutput after any
+	 * peephole rules, or vmOutput itself if commands are not being counted
+	 */
+	VMCommandSink countWritten(VMCommandSink vmOutput) {
+		if (!_countCommands) {
+			return vmOutput;
+		}
+		_commandsWritten = new CommandCounter(vmOutput);
+		return _commandsWritten;
+	}
+	
+	void endCodegen(ClassDec classDec) {
+		if (_metrics != null) {
+			endTiming(CompilationPhase.CODEGEN);
+			_metrics.setVMCommandsGenerated(_commandsGenerated.getCount());
+			_metrics.setVMCommandsWritten(_commandsWritten.getCount());
+		}
+		if (_emitEvent != null) {
+			_emitEvent.end();
+			if (_countCommands && _emitEvent.shouldCommit()) {
+				_emitEvent.fileName = _sourceName;
+				_emitEvent.className = classDec.getName();
+				_emitEvent.commandsGenerated = _commandsGenerated.getCount();
+				_emitEvent.commandsWritten = _commandsWritten.getCount();
+				_emitEvent.commit();
+			}
+			_emitEvent = null;
+		}
+	}
+	
+	void beginFlush() {
+		if (_recordEvents) {
+			_flushEvent = new OutputFlushEvent();
+			_flushEvent.begin();
+		}
+		startTiming();
+	}
+	
+	/*
+	 * Ends flushing the outputs, whose sizes are taken from the given files,
+	 * either of which is null if that output was not written to a file
+	 */
+	void endFlush(File xmlFile, File vmFile) {
+		if (_metrics != null) {
+			endTiming(CompilationPhase.FLUSH);
+			if (xmlFile != null) {
+				_metrics.setXMLBytesOut(xmlFile.length());
+			}
+			if (vmFile != null) {
+				_metrics.setVMBytesOut(vmFile.length());
+			}
+		}
+		if (_flushEvent != null) {
+			_flushEvent.end();
+			if (_flushEvent.shouldCommit()) {
+				_flushEvent.fileName = _sourceName;
+				_flushEvent.xmlBytes = (xmlFile != null) ? xmlFile.length() : 0;
+				_flushEvent.vmBytes = (vmFile != null) ? vmFile.length() : 0;
+				_flushEvent.commit();
+			}
+			_flushEvent = null;
+		}
+	}
+	
+	private void startTiming() {
+		if (_metrics != null) {
+			_phaseStart = System.nanoTime();
+		}
+	}
+	
+	private void endTiming(CompilationPhase phase) {
+		_metrics.addNanos(phase, System.nanoTime() - _phaseStart);
+	}
+	
+	/*
+	 * Counts the VM commands passed through it on their way to another sink
+	 */
+	private static class CommandCounter implements VMCommandSink {
+		
+		public CommandCounter(VMCommandSink output) {
+			_output = output;
+			_count = 0;
+		}
+		
+		public long getCount() {
+			return _count;
+		}
+		
+		@Override
+		public void writePush(Segment segment, int index) throws IOException {
+			_count++;
+			_output.writePush(segment, index);
+		}
+		
+		@Override
+		public void writePop(Segment segment, int index) throws IOException {
+			_count++;
+			_output.writePop(segment, index);
+		}
+		
+		@Override
+		public void writeArithmetic(Command command) throws IOException {
+			_count++;
+			_output.writeArithmetic(command);
+		}
+		
+		@Override
+		public void writeLabel(String label) throws IOException {
+			_count++;
+			_output.writeLabel(label);
+		}
+		
+		@Override
+		public void writeGoto(String label) throws IOException {
+			_count++;
+			_output.writeGoto(label);
+		}
+		
+		@Override
+		public void writeIf(String label) throws IOException {
+			_count++;
+			_output.writeIf(label);
+		}
+		
+		@Override
+		public void writeCall(String name, int nArgs) throws IOException {
+			_count++;
+			_output.writeCall(name, nArgs);
+		}
+		
+		@Override
+		public void writeFunction(String name, int nLocals) throws IOException {
+			_count++;
+			_output.writeFunction(name, nLocals);
+		}
+		
+		@Override
+		public void writeReturn() throws IOException {
+			_count++;
+			_output.writeReturn();
+		}
+		
+		@Override
+		public void flush() throws IOException {
+			_output.flush();
+		}
+		
+		private VMCommandSink _output;
+		private long _count;
+		
+	}
+	
+	private String _sourceName;
+	private boolean _recordEvents;
+	private FileMetrics _metrics;
+	private long _phaseStart;
+	private long _readNanos;
+	private boolean _countCommands;
+	private CommandCounter _commandsGenerated;
+	private CommandCounter _commandsWritten;
+	private int _subroutineFirstToken;
+	
+	private FileReadEvent _readEvent;
+	private ClassParseEvent _parseEvent;
+	private SubroutineParseEvent _subroutineEvent;
+	private XMLWriteEvent _xmlEvent;
+	private VMEmitEvent _emitEvent;
+	private OutputFlushEvent _flushEvent;
+	
+}
@@ -0,0 +1,21 @@
+package org.jrao.jacksyntaxanalyzer;
+
+/*
+ * return expression? ';'
+ */
+public class ReturnStatement extends Statement {
+	
+	public ReturnStatement(Expression value) {
+		_value = value;
+	}
+	
+	/*
+	 * Returns the returned expression, or null for a bare return
+	 */
+	public Expression getValue() {
+		return _value;
+	}
+	
+	private Expression _value;
+	
+}
@@ -0,0 +1,34 @@
+package org.jrao.jacksyntaxanalyzer;
+
+/*
+ * The memory segments that VM push and pop commands address
+ */
+public enum Segment {
+	CONSTANT,
+	ARGUMENT,
+	LOCAL,
+	STATIC,
+	THIS,
+	THAT,
+	POINTER,
+	TEMP;
+	
+	/*
+	 * Returns the name used for this segment in VM code, e.g. "argument"
+	 */
+	public String getName() {
+		return toString().toLowerCase();
+	}
+	
+	/*
+	 * Returns the segment with the given name in VM code, or null if there is none
+	 */
+	public static Segment fromName(String name) {
+		for (Segment segment : values()) {
+			if (segment.getName().equals(name)) {
+				return segment;
+			}
+		}
+		return null;
+	}
+}
@@ -0,0 +1,8 @@
+package org.jrao.jacksyntaxanalyzer;
+
+/*
+ * Base class of the let, if, while, do, and return statements
+ */
+public abstract class Statement {
+	
+}
@@ -0,0 +1,18 @@
+package org.jrao.jacksyntaxanalyzer;
+
+public class StringConstantTerm extends Term {
+	
+	/*
+	 * Creates a term for the given string constant, without its double quotes
+	 */
+	public StringConstantTerm(String value) {
+		_value = value;
+	}
+	
+	public String getValue() {
+		return _value;
+	}
+	
+	private String _value;
+	
+}
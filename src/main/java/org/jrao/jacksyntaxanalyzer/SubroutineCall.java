@@ -0,0 +1,39 @@
+package org.jrao.jacksyntaxanalyzer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ * subroutineName '(' expressionList ')'
+ * | (className | varName) '.' subroutineName '(' expressionList ')'
+ */
+public class SubroutineCall {
+	
+	/*
+	 * Creates a call. receiver is null for an unqualified call on the current
+	 * object; otherwise it is the variable or class name before the '.', and
+	 * has kind NONE if it names a class.
+	 */
+	public SubroutineCall(Variable receiver, String subroutineName) {
+		_receiver = receiver;
+		_subroutineName = subroutineName;
+		_arguments = new ArrayList<Expression>();
+	}
+	
+	public Variable getReceiver() {
+		return _receiver;
+	}
+	
+	public String getSubroutineName() {
+		return _subroutineName;
+	}
+	
+	public List<Expression> getArguments() {
+		return _arguments;
+	}
+	
+	private Variable _receiver;
+	private String _subroutineName;
+	private List<Expression> _arguments;
+	
+}
@@ -0,0 +1,15 @@
+package org.jrao.jacksyntaxanalyzer;
+
+public class SubroutineCallTerm extends Term {
+	
+	public SubroutineCallTerm(SubroutineCall call) {
+		_call = call;
+	}
+	
+	public SubroutineCall getCall() {
+		return _call;
+	}
+	
+	private SubroutineCall _call;
+	
+}
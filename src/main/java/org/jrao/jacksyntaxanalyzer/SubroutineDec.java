@@ -0,0 +1,67 @@
+package org.jrao.jacksyntaxanalyzer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ * A constructor, function, or method declaration and its body
+ */
+public class SubroutineDec {
+	
+	public SubroutineDec(KeyWord subroutineType, String returnType, String name) {
+		_subroutineType = subroutineType;
+		_returnType = returnType;
+		_name = name;
+		_parameters = new ArrayList<Variable>();
+		_varDecs = new ArrayList<VarDec>();
+		_statements = new ArrayList<Statement>();
+		_localCount = 0;
+	}
+	
+	/*
+	 * Returns CONSTRUCTOR, FUNCTION, or METHOD
+	 */
+	public KeyWord getSubroutineType() {
+		return _subroutineType;
+	}
+	
+	public String getReturnType() {
+		return _returnType;
+	}
+	
+	public String getName() {
+		return _name;
+	}
+	
+	public List<Variable> getParameters() {
+		return _parameters;
+	}
+	
+	public List<VarDec> getVarDecs() {
+		return _varDecs;
+	}
+	
+	public List<Statement> getStatements() {
+		return _statements;
+	}
+	
+	/*
+	 * Returns the number of local variables declared in the body
+	 */
+	public int getLocalCount() {
+		return _localCount;
+	}
+	
+	public void setLocalCount(int localCount) {
+		_localCount = localCount;
+	}
+	
+	private KeyWord _subroutineType;
+	private String _returnType;
+	private String _name;
+	private List<Variable> _parameters;
+	private List<VarDec> _varDecs;
+	private List<Statement> _statements;
+	private int _localCount;
+	
+}
@@ -0,0 +1,31 @@
+package org.jrao.jacksyntaxanalyzer;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/*
+ * Flight Recorder event for JackParser parsing one subroutine. These fall
+ * within the ClassParseEvent of their class.
+ */
+@Name("org.jrao.jacksyntaxanalyzer.SubroutineParse")
+@Label("Parse Jack Subroutine")
+@Category("Jack Compiler")
+@Description("Tokenizing and parsing one subroutine of a Jack class")
+public class SubroutineParseEvent extends Event {
+	
+	@Label("File")
+	String fileName;
+	
+	@Label("Class")
+	String className;
+	
+	@Label("Subroutine")
+	String subroutineName;
+	
+	@Label("Tokens")
+	int tokens;
+	
+}
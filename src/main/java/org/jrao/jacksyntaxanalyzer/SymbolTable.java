@@ -1,158 +1,139 @@
 package org.jrao.jacksyntaxanalyzer;
 
-import java.util.HashMap;
-import java.util.Map;
-
+/*
+ * Keeps track of the variables defined in the class and subroutine being
+ * compiled. Variables are identified by the IDs a NameTable gives their
+ * names, and each scope stores its Variables in an array indexed by that ID.
+ * A Variable is created once when it is defined (or, for an unknown name,
+ * the first time it is looked up), so looking up a variable never hashes or
+ * allocates anything.
+ */
 public class SymbolTable {
-
-	public SymbolTable() {
-		_classSymbolTable = new HashMap<String, SymbolTableRow>();
-		_subroutineSymbolTable = new HashMap<String, SymbolTableRow>();
-		_nextStaticNumber = 0;
-		_nextFieldNumber = 0;
-		_nextArgNumber = 0;
-		_nextVarNumber = 0;
+	
+	public SymbolTable(NameTable names) {
+		_names = names;
+		_classScope = new Scope();
+		_subroutineScope = new Scope();
+		_undefined = new Variable[INITIAL_CAPACITY];
+		_varCounts = new int[KINDS.length];
 	}
-
+	
 	/*
-	 * Starts a new subroutine scope (i.e., resets the subroutine's symbol
-	 * table)
+	 * Starts a new subroutine scope (i.e., forgets the previous subroutine's
+	 * arguments and local variables)
 	 */
 	public void startSubroutine() {
-		_subroutineSymbolTable.clear();
-		_nextArgNumber = 0;
-		_nextVarNumber = 0;
+		_subroutineScope.clear();
+		_varCounts[Kind.ARG.ordinal()] = 0;
+		_varCounts[Kind.VAR.ordinal()] = 0;
 	}
-
+	
 	/*
 	 * Defines a new identifier of the given name, type, and kind and assigns it
 	 * a running index. STATIC and FIELD identifiers have a class scope, while
 	 * ARG and VAR identifiers have a subroutine scope.
 	 */
-	public void define(String name, String type, Kind kind) {
-		SymbolTableRow row = new SymbolTableRow(name, type, kind, varCount(kind));
-		if (kind == Kind.STATIC) {
-			_classSymbolTable.put(name, row);
-			_nextStaticNumber++;
-		}
-		else if (kind == Kind.FIELD) {
-			_classSymbolTable.put(name, row);
-			_nextFieldNumber++;
-		}
-		else if (kind == Kind.ARG) {
-			_subroutineSymbolTable.put(name, row);
-			_nextArgNumber++;
-		}
-		else if (kind == Kind.VAR) {
-			_subroutineSymbolTable.put(name, row);
-			_nextVarNumber++;
+	public void define(int nameId, int typeId, Kind kind) {
+		if (kind == Kind.NONE) {
+			return;
 		}
+		Scope scope = (kind == Kind.STATIC || kind == Kind.FIELD) ? _classScope : _subroutineScope;
+		Variable variable = new Variable(_names.getName(nameId), _names.getName(typeId), kind, _varCounts[kind.ordinal()]);
+		scope.define(nameId, variable);
+		_varCounts[kind.ordinal()]++;
 	}
 	
 	/*
 	 * Returns the number of variables of the given kind already defined in the current scope
 	 */
 	public int varCount(Kind kind) {
-		if (kind == Kind.STATIC) {
-			return _nextStaticNumber;
-		}
-		else if (kind == Kind.FIELD) {
-			return _nextFieldNumber;
-		}
-		else if (kind == Kind.ARG) {
-			return _nextArgNumber;
-		}
-		else if (kind == Kind.VAR) {
-			return _nextVarNumber;
-		}
-		else {
+		if (kind == Kind.NONE) {
 			return -1;
 		}
+		return _varCounts[kind.ordinal()];
 	}
 	
 	/*
-	 * Returns the kind of the named identifier in the current scope. If the
-	 * identifier is unknown in the current scope, return NONE.
+	 * Returns the variable that the named identifier refers to in the current
+	 * scope. If the identifier is unknown in the current scope, its kind is
+	 * NONE, its type is empty, and its index is -1.
 	 */
-	public Kind kindOf(String name) {
-		if (_subroutineSymbolTable.containsKey(name)) {
-			SymbolTableRow row = (SymbolTableRow) _subroutineSymbolTable.get(name);
-			return row.getKind();
+	public Variable lookup(int nameId) {
+		if (_subroutineScope.contains(nameId)) {
+			return _subroutineScope.get(nameId);
 		}
-		else if (_classSymbolTable.containsKey(name)) {
-			SymbolTableRow row = (SymbolTableRow) _classSymbolTable.get(name);
-			return row.getKind();
+		if (_classScope.contains(nameId)) {
+			return _classScope.get(nameId);
 		}
-		return Kind.NONE;
-	}
-	
-	/*
-	 * Returns the type of the named identifier in the current scope
-	 */
-	public String typeOf(String name) {
-		if (_subroutineSymbolTable.containsKey(name)) {
-			SymbolTableRow row = (SymbolTableRow) _subroutineSymbolTable.get(name);
-			return row.getType();
+		
+		if (nameId >= _undefined.length) {
+			Variable[] undefined = new Variable[Math.max(nameId + 1, _undefined.length * 2)];
+			System.arraycopy(_undefined, 0, undefined, 0, _undefined.length);
+			_undefined = undefined;
 		}
-		else if (_classSymbolTable.containsKey(name)) {
-			SymbolTableRow row = (SymbolTableRow) _classSymbolTable.get(name);
-			return row.getType();
+		if (_undefined[nameId] == null) {
+			_undefined[nameId] = new Variable(_names.getName(nameId), "", Kind.NONE, -1);
 		}
-		return "";
+		return _undefined[nameId];
 	}
 	
 	/*
-	 * Returns the index assigned to the named identifier
+	 * The variables defined in one scope, by name ID. A name is defined only
+	 * if it was defined in the scope's current generation, so clearing the
+	 * scope just starts a new generation. Variables from earlier generations
+	 * stay in the syntax tree, so they are replaced rather than changed.
 	 */
-	public int indexOf(String name) {
-		if (_subroutineSymbolTable.containsKey(name)) {
-			SymbolTableRow row = (SymbolTableRow) _subroutineSymbolTable.get(name);
-			return row.getNumber();
+	private static class Scope {
+		
+		public Scope() {
+			_generations = new int[INITIAL_CAPACITY];
+			_variables = new Variable[INITIAL_CAPACITY];
+			_generation = 1;
 		}
-		else if (_classSymbolTable.containsKey(name)) {
-			SymbolTableRow row = (SymbolTableRow) _classSymbolTable.get(name);
-			return row.getNumber();
+		
+		public void clear() {
+			_generation++;
 		}
-		return -1;
-	}
-	
-	public void incrementStaticNumber() {
-		_nextStaticNumber++;
+		
+		public boolean contains(int nameId) {
+			return nameId < _generations.length && _generations[nameId] == _generation;
+		}
+		
+		public void define(int nameId, Variable variable) {
+			if (nameId >= _generations.length) {
+				grow(Math.max(nameId + 1, _generations.length * 2));
+			}
+			_generations[nameId] = _generation;
+			_variables[nameId] = variable;
+		}
+		
+		public Variable get(int nameId) {
+			return _variables[nameId];
+		}
+		
+		private void grow(int capacity) {
+			int[] generations = new int[capacity];
+			System.arraycopy(_generations, 0, generations, 0, _generations.length);
+			_generations = generations;
+			Variable[] variables = new Variable[capacity];
+			System.arraycopy(_variables, 0, variables, 0, _variables.length);
+			_variables = variables;
+		}
+		
+		private int[] _generations;
+		private Variable[] _variables;
+		private int _generation;
+		
 	}
 	
-	public void incrementFieldNumber() {
-		_nextFieldNumber++;
-	}
+	private static final int INITIAL_CAPACITY = 256;
 	
-	public void incrementArgNumber() {
-		_nextArgNumber++;
-	}
-
-	public void incrementVarNumber() {
-		_nextVarNumber++;
-	}
-
-	public void resetStaticNumber() {
-		_nextStaticNumber = 0;
-	}
+	private static final Kind[] KINDS = Kind.values();
 	
-	public void resetFieldNumber() {
-		_nextFieldNumber = 0;
-	}
-
-	public void resetArgNumber() {
-		_nextArgNumber = 0;
-	}
-
-	public void resetVarNumber() {
-		_nextVarNumber = 0;
-	}
+	private NameTable _names;
+	private Scope _classScope;
+	private Scope _subroutineScope;
+	private Variable[] _undefined;
+	private int[] _varCounts;
 	
-	private Map _classSymbolTable;
-	private Map _subroutineSymbolTable;
-	private int _nextStaticNumber;
-	private int _nextFieldNumber;
-	private int _nextArgNumber;
-	private int _nextVarNumber;
-
 }
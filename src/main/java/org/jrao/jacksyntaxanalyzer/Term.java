@@ -0,0 +1,8 @@
+package org.jrao.jacksyntaxanalyzer;
+
+/*
+ * Base class of the kinds of term that can appear in an expression
+ */
+public abstract class Term {
+	
+}
@@ -0,0 +1,39 @@
+package org.jrao.jacksyntaxanalyzer;
+
+import java.io.IOException;
+
+/*
+ * Receives the tokens of a Jack source file, in order, from
+ * JackTokenizer.writeTokens()
+ */
+public interface TokenSink {
+	
+	/*
+	 * Called once before the first token
+	 */
+	void startTokens() throws IOException;
+	
+	void keyword(KeyWord keyWord) throws IOException;
+	
+	void symbol(char symbol) throws IOException;
+	
+	void integerConstant(int value) throws IOException;
+	
+	/*
+	 * Receives the string value of a string constant, without the double quotes
+	 */
+	void stringConstant(String value) throws IOException;
+	
+	void identifier(String identifier) throws IOException;
+	
+	/*
+	 * Receives the text of input that could not be recognized as a token
+	 */
+	void unknown(String text) throws IOException;
+	
+	/*
+	 * Called once after the last token
+	 */
+	void endTokens() throws IOException;
+	
+}
@@ -0,0 +1,24 @@
+package org.jrao.jacksyntaxanalyzer;
+
+/*
+ * unaryOp term, where unaryOp is '-' or '~'
+ */
+public class UnaryOpTerm extends Term {
+	
+	public UnaryOpTerm(char operator, Term term) {
+		_operator = operator;
+		_term = term;
+	}
+	
+	public char getOperator() {
+		return _operator;
+	}
+	
+	public Term getTerm() {
+		return _term;
+	}
+	
+	private char _operator;
+	private Term _term;
+	
+}
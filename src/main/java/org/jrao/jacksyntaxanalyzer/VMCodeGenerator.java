@@ -0,0 +1,955 @@
+package org.jrao.jacksyntaxanalyzer;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * Generates VM code for the syntax tree of a Jack class
+ */
+public class VMCodeGenerator {
+	
+	public VMCodeGenerator(VMCommandSink vmWriter) {
+		_vw = vmWriter;
+		_err = System.err;
+		_strengthReduction = false;
+		_poolStrings = false;
+		_directBranches = false;
+		_stringPool = new HashMap<String, Integer>();
+		_work = new ArrayDeque<Object>();
+	}
+	
+	/*
+	 * Sets the stream that code generation errors are reported to (System.err by default)
+	 */
+	public void setErrorStream(PrintStream err) {
+		_err = err;
+	}
+	
+	/*
+	 * Sets whether multiplication and division by constants are replaced by
+	 * cheaper command sequences where possible, instead of always calling
+	 * Math.multiply and Math.divide (off by default)
+	 */
+	public void setStrengthReduction(boolean strengthReduction) {
+		_strengthReduction = strengthReduction;
+	}
+	
+	/*
+	 * Sets whether each distinct string constant in a class is built only
+	 * once and then shared by every evaluation of it (off by default).
+	 * Pooled strings are kept in hidden static variables numbered after the
+	 * class's own; a program that modifies a string constant sees the change
+	 * the next time the same constant is evaluated.
+	 */
+	public void setPoolStrings(boolean poolStrings) {
+		_poolStrings = poolStrings;
+	}
+	
+	/*
+	 * Sets whether if and while conditions made of comparisons and boolean
+	 * operators jump directly to their targets instead of first computing
+	 * their value (off by default)
+	 */
+	public void setDirectBranches(boolean directBranches) {
+		_directBranches = directBranches;
+	}
+	
+	public void generateClass(ClassDec classDec) throws IOException {
+		_currentClass = classDec.getName();
+		_fieldCount = classDec.getFieldCount();
+		_staticCount = classDec.getStaticCount();
+		_stringPool.clear();
+		_stringLabelNumber = 0;
+		_conditionLabelNumber = 0;
+		
+		_ifLabelNumber = 0;
+		_whileLabelNumber = 0;
+		
+		for (SubroutineDec subroutineDec : classDec.getSubroutineDecs()) {
+			generateSubroutine(subroutineDec);
+		}
+	}
+	
+	private void generateSubroutine(SubroutineDec subroutineDec) throws IOException {
+		_vw.writeFunction(_currentClass + "." + subroutineDec.getName(), subroutineDec.getLocalCount());
+		
+		if (subroutineDec.getSubroutineType() == KeyWord.CONSTRUCTOR) {
+			_vw.writePush(Segment.CONSTANT, _fieldCount);
+			_vw.writeCall("Memory.alloc", 1);
+			_vw.writePop(Segment.POINTER, 0);
+		}
+		else if (subroutineDec.getSubroutineType() == KeyWord.METHOD) {
+			_vw.writePush(Segment.ARGUMENT, 0);
+			_vw.writePop(Segment.POINTER, 0);
+		}
+		
+		generateStatements(subroutineDec.getStatements());
+	}
+	
+	private void generateStatements(List<Statement> statements) throws IOException {
+		for (Statement statement : statements) {
+			if (statement instanceof LetStatement) {
+				generateLet((LetStatement) statement);
+			}
+			else if (statement instanceof IfStatement) {
+				generateIf((IfStatement) statement);
+			}
+			else if (statement instanceof WhileStatement) {
+				generateWhile((WhileStatement) statement);
+			}
+			else if (statement instanceof DoStatement) {
+				generateDo((DoStatement) statement);
+			}
+			else if (statement instanceof ReturnStatement) {
+				generateReturn((ReturnStatement) statement);
+			}
+		}
+	}
+	
+	private void generateLet(LetStatement let) throws IOException {
+		Variable target = let.getTarget();
+		Segment segment = segmentFromKind(target.getKind());
+		
+		if (let.getIndex() != null) {
+			generateExpression(let.getIndex());
+			_vw.writePush(segment, target.getIndex());
+			_vw.writeArithmetic(Command.ADD);
+		}
+		
+		generateExpression(let.getValue());
+		
+		if (segment == null) {
+			_err.println("Error: Can only assign values to argument, field, static, or local variables!");
+			return;
+		}
+		
+		if (let.getIndex() == null) {
+			_vw.writePop(segment, target.getIndex());
+		}
+		else {
+			_vw.writePop(Segment.TEMP, 0);
+			_vw.writePop(Segment.POINTER, 1);
+			_vw.writePush(Segment.TEMP, 0);
+			_vw.writePop(Segment.THAT, 0);
+		}
+	}
+	
+	private void generateIf(IfStatement ifStatement) throws IOException {
+		String ifTrueLabel = "IF_TRUE" + String.valueOf(_ifLabelNumber);
+		String ifFalseLabel = "IF_FALSE" + String.valueOf(_ifLabelNumber);
+		String ifEndLabel = "IF_END" + String.valueOf(_ifLabelNumber);
+		_ifLabelNumber++;
+		
+		if (_directBranches && isBoolean(ifStatement.getCondition())) {
+			generateIfWithDirectBranches(ifStatement, ifFalseLabel, ifEndLabel);
+			return;
+		}
+		
+		generateExpression(ifStatement.getCondition());
+		
+		_vw.writeIf(ifTrueLabel);
+		_vw.writeGoto(ifFalseLabel);
+		_vw.writeLabel(ifTrueLabel);
+		
+		generateStatements(ifStatement.getThenStatements());
+		
+		if (ifStatement.getElseStatements() != null) {
+			_vw.writeGoto(ifEndLabel);
+			_vw.writeLabel(ifFalseLabel);
+			
+			generateStatements(ifStatement.getElseStatements());
+			
+			_vw.writeLabel(ifEndLabel);
+		}
+		else {
+			_vw.writeLabel(ifFalseLabel);
+		}
+	}
+	
+	private void generateWhile(WhileStatement whileStatement) throws IOException {
+		String whileExpLabel = "WHILE_EXP" + String.valueOf(_whileLabelNumber);
+		String whileEndLabel = "WHILE_END" + String.valueOf(_whileLabelNumber);
+		_whileLabelNumber++;
+		
+		if (_directBranches && isBoolean(whileStatement.getCondition())) {
+			generateRotatedWhile(whileStatement, whileExpLabel, "WHILE_BODY" + String.valueOf(_whileLabelNumber - 1));
+			return;
+		}
+		
+		_vw.writeLabel(whileExpLabel);
+		
+		generateExpression(whileStatement.getCondition());
+		
+		_vw.writeArithmetic(Command.NOT);
+		_vw.writeIf(whileEndLabel);
+		
+		generateStatements(whileStatement.getStatements());
+		
+		_vw.writeGoto(whileExpLabel);
+		_vw.writeLabel(whileEndLabel);
+	}
+	
+	/*
+	 * if (cond) { A } else { B }  =>  (if not cond) goto F; A; goto E; F: B; E:
+	 */
+	private void generateIfWithDirectBranches(IfStatement ifStatement, String ifFalseLabel, String ifEndLabel) throws IOException {
+		Expression condition = ifStatement.getCondition();
+		generateJump(condition, condition.getTerms().size(), false, ifFalseLabel);
+		
+		generateStatements(ifStatement.getThenStatements());
+		
+		if (ifStatement.getElseStatements() != null) {
+			_vw.writeGoto(ifEndLabel);
+			_vw.writeLabel(ifFalseLabel);
+			
+			generateStatements(ifStatement.getElseStatements());
+			
+			_vw.writeLabel(ifEndLabel);
+		}
+		else {
+			_vw.writeLabel(ifFalseLabel);
+		}
+	}
+	
+	/*
+	 * while (cond) { A }  =>  goto E; B: A; E: (if cond) goto B
+	 *
+	 * Testing the condition at the bottom of the loop means each iteration
+	 * takes one branch instead of a conditional branch and a goto.
+	 */
+	private void generateRotatedWhile(WhileStatement whileStatement, String whileExpLabel, String whileBodyLabel) throws IOException {
+		_vw.writeGoto(whileExpLabel);
+		_vw.writeLabel(whileBodyLabel);
+		
+		generateStatements(whileStatement.getStatements());
+		
+		_vw.writeLabel(whileExpLabel);
+		Expression condition = whileStatement.getCondition();
+		generateJump(condition, condition.getTerms().size(), true, whileBodyLabel);
+	}
+	
+	/*
+	 * Jumps to label if the first termCount terms of a boolean expression
+	 * evaluate to jumpIfTrue, and falls through otherwise. The conditions
+	 * nested inside are kept on an explicit stack of Jumps, along with the
+	 * labels to place after them, rather than handled by recursion.
+	 */
+	private void generateJump(Expression expression, int termCount, boolean jumpIfTrue, String label) throws IOException {
+		Deque<Object> jumps = new ArrayDeque<Object>();
+		jumps.push(new Jump(expression, termCount, null, jumpIfTrue, label));
+		while (!jumps.isEmpty()) {
+			Object next = jumps.pop();
+			if (next instanceof String) {
+				_vw.writeLabel((String) next);
+			}
+			else if (((Jump) next).getExpression() != null) {
+				generateExpressionJump((Jump) next, jumps);
+			}
+			else {
+				generateTermJump((Jump) next, jumps);
+			}
+		}
+	}
+	
+	private void generateExpressionJump(Jump jump, Deque<Object> jumps) throws IOException {
+		Expression expression = jump.getExpression();
+		int termCount = jump.getTermCount();
+		boolean jumpIfTrue = jump.isJumpIfTrue();
+		String label = jump.getLabel();
+		if (termCount == 1) {
+			jumps.push(new Jump(null, 0, expression.getTerms().get(0), jumpIfTrue, label));
+			return;
+		}
+		
+		char operator = expression.getOperators().get(termCount - 2);
+		Term right = expression.getTerms().get(termCount - 1);
+		
+		// Pushed in reverse, so that the left side is generated first
+		if ((operator == '&' || operator == '|') && ConstantFolder.isPure(right)) {
+			// Both sides are booleans, so the bitwise operators short-circuit
+			// like logical ones, and skipping the pure right side changes nothing
+			if ((operator == '&') != jumpIfTrue) {
+				// false & x is false, true | x is true: either side decides
+				jumps.push(new Jump(null, 0, right, jumpIfTrue, label));
+				jumps.push(new Jump(expression, termCount - 1, null, jumpIfTrue, label));
+			}
+			else {
+				// Both sides must agree for the jump to be taken
+				String skipLabel = "COND_SKIP" + String.valueOf(_conditionLabelNumber);
+				_conditionLabelNumber++;
+				jumps.push(skipLabel);
+				jumps.push(new Jump(null, 0, right, jumpIfTrue, label));
+				jumps.push(new Jump(expression, termCount - 1, null, !jumpIfTrue, skipLabel));
+			}
+			return;
+		}
+		
+		generateTerms(expression, termCount - 1);
+		generateTerm(right);
+		if (operator == '=' && !jumpIfTrue) {
+			// a - b is nonzero exactly when a = b is false
+			_vw.writeArithmetic(Command.SUB);
+			_vw.writeIf(label);
+			return;
+		}
+		generateOperator(operator);
+		generateBooleanJump(jumpIfTrue, label);
+	}
+	
+	private void generateTermJump(Jump jump, Deque<Object> jumps) throws IOException {
+		Term term = jump.getTerm();
+		if (term instanceof KeywordConstantTerm) {
+			boolean value = ((KeywordConstantTerm) term).getKeyWord() == KeyWord.TRUE;
+			if (value == jump.isJumpIfTrue()) {
+				_vw.writeGoto(jump.getLabel());
+			}
+		}
+		else if (term instanceof ParenthesizedTerm) {
+			Expression expression = ((ParenthesizedTerm) term).getExpression();
+			jumps.push(new Jump(expression, expression.getTerms().size(), null, jump.isJumpIfTrue(), jump.getLabel()));
+		}
+		else if (term instanceof UnaryOpTerm && ((UnaryOpTerm) term).getOperator() == '~') {
+			jumps.push(new Jump(null, 0, ((UnaryOpTerm) term).getTerm(), !jump.isJumpIfTrue(), jump.getLabel()));
+		}
+		else {
+			generateTerm(term);
+			generateBooleanJump(jump.isJumpIfTrue(), jump.getLabel());
+		}
+	}
+	
+	/*
+	 * Jumps to label if the boolean on top of the stack is jumpIfTrue
+	 */
+	private void generateBooleanJump(boolean jumpIfTrue, String label) throws IOException {
+		if (!jumpIfTrue) {
+			_vw.writeArithmetic(Command.NOT);
+		}
+		_vw.writeIf(label);
+	}
+	
+	/*
+	 * Returns true if the expression always evaluates to exactly true (-1) or
+	 * false (0), so that ~, & and | act on it as logical operators
+	 */
+	private boolean isBoolean(Expression expression) {
+		// Terms that must themselves be booleans for the expression to be one
+		Deque<Term> unchecked = new ArrayDeque<Term>();
+		if (!addBooleanOperands(expression, unchecked)) {
+			return false;
+		}
+		while (!unchecked.isEmpty()) {
+			Term term = unchecked.pop();
+			if (term instanceof KeywordConstantTerm) {
+				KeyWord keyWord = ((KeywordConstantTerm) term).getKeyWord();
+				if (keyWord != KeyWord.TRUE && keyWord != KeyWord.FALSE) {
+					return false;
+				}
+			}
+			else if (term instanceof ParenthesizedTerm) {
+				if (!addBooleanOperands(((ParenthesizedTerm) term).getExpression(), unchecked)) {
+					return false;
+				}
+			}
+			else if (term instanceof UnaryOpTerm && ((UnaryOpTerm) term).getOperator() == '~') {
+				unchecked.push(((UnaryOpTerm) term).getTerm());
+			}
+			else {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/*
+	 * Adds the terms of the expression that must be booleans for it to be a
+	 * boolean. Returns false if it cannot be one whatever its terms are.
+	 */
+	private boolean addBooleanOperands(Expression expression, Deque<Term> operands) {
+		List<Term> terms = expression.getTerms();
+		List<Character> operators = expression.getOperators();
+		if (terms.isEmpty()) {
+			return false;
+		}
+		for (int i = terms.size() - 1; i > 0; i--) {
+			switch (operators.get(i - 1)) {
+			case '<':
+			case '>':
+			case '=':
+				// Comparisons are booleans whatever their operands
+				return true;
+			case '&':
+			case '|':
+				operands.push(terms.get(i));
+				break;
+			default:
+				return false;
+			}
+		}
+		operands.push(terms.get(0));
+		return true;
+	}
+	
+	private void generateDo(DoStatement doStatement) throws IOException {
+		SubroutineCall call = doStatement.getCall();
+		Variable receiver = call.getReceiver();
+		
+		if (receiver == null) {
+			// No object or class specified means that this is an implicit method call on "this" object
+			_vw.writePush(Segment.POINTER, 0);
+			
+			int nArgs = generateExpressionList(call.getArguments()) + 1;
+			
+			_vw.writeCall(_currentClass + "." + call.getSubroutineName(), nArgs);
+		}
+		else {
+			int nArgs = 0;
+			String objectType = receiver.getType();
+			if (!objectType.equals("")) {
+				// This is an explicit method method on a specified object
+				nArgs = 1;
+				_vw.writePush(segmentFromKind(receiver.getKind()), receiver.getIndex());
+			}
+			else {
+				// This is a static function call where both the class and function are specified
+				objectType = receiver.getName();
+			}
+			
+			nArgs += generateExpressionList(call.getArguments());
+			
+			_vw.writeCall(objectType + "." + call.getSubroutineName(), nArgs);
+		}
+		
+		/*
+		 * For a Do statement, unlike a Let, the return value must be popped
+		 * here (and thrown away) since it's not explicitly popped to a variable
+		 */
+		_vw.writePop(Segment.TEMP, 0);
+	}
+	
+	private void generateReturn(ReturnStatement returnStatement) throws IOException {
+		if (returnStatement.getValue() != null) {
+			generateExpression(returnStatement.getValue());
+		}
+		else {
+			// Even void subroutines must return something
+			_vw.writePush(Segment.CONSTANT, 0);
+		}
+		
+		_vw.writeReturn();
+	}
+	
+	private void generateExpression(Expression expression) throws IOException {
+		generateTerms(expression, expression.getTerms().size());
+	}
+	
+	/*
+	 * Generates the value of the first termCount terms of an expression
+	 */
+	private void generateTerms(Expression expression, int termCount) throws IOException {
+		int base = _work.size();
+		pushTerms(expression, termCount);
+		generateWork(base);
+	}
+	
+	private void generateTerm(Term term) throws IOException {
+		int base = _work.size();
+		_work.push(term);
+		generateWork(base);
+	}
+	
+	/*
+	 * Expressions are generated from an explicit stack of pending work rather
+	 * than by recursion, so however deeply they are nested they cannot
+	 * overflow the thread stack. Each entry is a Term to generate, or a Step
+	 * to carry out once the entries pushed after it are done. Works until
+	 * only the bottom base entries are left.
+	 */
+	private void generateWork(int base) throws IOException {
+		while (_work.size() > base) {
+			Object next = _work.pop();
+			if (next instanceof Term) {
+				startTerm((Term) next);
+			}
+			else {
+				finishStep((Step) next);
+			}
+		}
+	}
+	
+	/*
+	 * Pushes the work for the first termCount terms of an expression
+	 */
+	private void pushTerms(Expression expression, int termCount) {
+		List<Term> terms = expression.getTerms();
+		List<Character> operators = expression.getOperators();
+		boolean reorder = _strengthReduction && termCount > 1 && operators.get(0) == '*'
+				&& constantValue(terms.get(0)) != null && constantValue(terms.get(1)) == null;
+		int first = reorder ? 2 : 0;
+		
+		// Pushed from last to first, so that they are generated from first to last
+		for (int i = termCount - 1; i >= first; i--) {
+			if (i > 0) {
+				char operator = operators.get(i - 1);
+				Integer constant = _strengthReduction ? constantValue(terms.get(i)) : null;
+				if (constant != null && operator == '*' && canMultiplyByConstant(constant)) {
+					Term left = i == 1 ? simpleTerm(terms.get(0)) : null;
+					_work.push(new Step(StepKind.MULTIPLY, left, constant));
+					continue;
+				}
+				if (constant != null && operator == '/' && canDivideByConstant(constant)) {
+					_work.push(new Step(StepKind.DIVIDE, null, constant));
+					continue;
+				}
+				_work.push(new Step(StepKind.OPERATOR, null, operator));
+			}
+			_work.push(terms.get(i));
+		}
+		
+		if (reorder) {
+			// c * x is x * c, and evaluating c first or last has no side effects
+			int constant = constantValue(terms.get(0));
+			if (canMultiplyByConstant(constant)) {
+				_work.push(new Step(StepKind.MULTIPLY, simpleTerm(terms.get(1)), constant));
+			}
+			else {
+				_work.push(new Step(StepKind.OPERATOR, null, '*'));
+				_work.push(terms.get(0));
+			}
+			_work.push(terms.get(1));
+		}
+	}
+	
+	/*
+	 * Generates a term that has no subexpressions, or pushes the work for one
+	 * that does
+	 */
+	private void startTerm(Term term) throws IOException {
+		if (term instanceof IntegerConstantTerm) {
+			_vw.writePush(Segment.CONSTANT, ((IntegerConstantTerm) term).getValue());
+		}
+		else if (term instanceof StringConstantTerm) {
+			String stringVal = ((StringConstantTerm) term).getValue();
+			if (_poolStrings) {
+				generatePooledString(stringVal);
+			}
+			else {
+				generateNewString(stringVal);
+			}
+		}
+		else if (term instanceof KeywordConstantTerm) {
+			switch (((KeywordConstantTerm) term).getKeyWord()) {
+			case TRUE:
+				_vw.writePush(Segment.CONSTANT, 0);
+				_vw.writeArithmetic(Command.NOT);
+				break;
+			case FALSE:
+				_vw.writePush(Segment.CONSTANT, 0);
+				break;
+			case NULL:
+				_vw.writePush(Segment.CONSTANT, 0);
+				break;
+			case THIS:
+				_vw.writePush(Segment.POINTER, 0);
+				break;
+			default:
+				_err.println("Error: Unreachable code!");
+			}
+		}
+		else if (term instanceof VariableTerm) {
+			VariableTerm variableTerm = (VariableTerm) term;
+			Variable variable = variableTerm.getVariable();
+			if (variableTerm.getIndex() != null) {
+				_work.push(new Step(StepKind.ARRAY_READ, term, 0));
+				pushTerms(variableTerm.getIndex(), variableTerm.getIndex().getTerms().size());
+			}
+			else {
+				_vw.writePush(segmentFromKind(variable.getKind()), variable.getIndex());
+			}
+		}
+		else if (term instanceof SubroutineCallTerm) {
+			List<Expression> arguments = ((SubroutineCallTerm) term).getCall().getArguments();
+			_work.push(new Step(StepKind.CALL, term, 0));
+			for (int i = arguments.size() - 1; i >= 0; i--) {
+				pushTerms(arguments.get(i), arguments.get(i).getTerms().size());
+			}
+		}
+		else if (term instanceof ParenthesizedTerm) {
+			Expression expression = ((ParenthesizedTerm) term).getExpression();
+			pushTerms(expression, expression.getTerms().size());
+		}
+		else if (term instanceof UnaryOpTerm) {
+			UnaryOpTerm unaryOpTerm = (UnaryOpTerm) term;
+			_work.push(new Step(StepKind.UNARY, null, unaryOpTerm.getOperator()));
+			_work.push(unaryOpTerm.getTerm());
+		}
+	}
+	
+	private void finishStep(Step step) throws IOException {
+		switch (step.getKind()) {
+		case OPERATOR:
+			generateOperator((char) step.getValue());
+			break;
+		case MULTIPLY:
+			generateMultiplyByConstant(step.getValue(), step.getTerm());
+			break;
+		case DIVIDE:
+			generateDivideByConstant(step.getValue());
+			break;
+		case ARRAY_READ:
+			Variable variable = ((VariableTerm) step.getTerm()).getVariable();
+			_vw.writePush(segmentFromKind(variable.getKind()), variable.getIndex());
+			_vw.writeArithmetic(Command.ADD);
+			_vw.writePop(Segment.POINTER, 1);
+			_vw.writePush(Segment.THAT, 0);
+			break;
+		case CALL:
+			SubroutineCall call = ((SubroutineCallTerm) step.getTerm()).getCall();
+			Variable receiver = call.getReceiver();
+			int nArgs = call.getArguments().size();
+			if (receiver == null) {
+				_vw.writeCall(_currentClass + "." + call.getSubroutineName(), nArgs);
+			}
+			else if (receiver.getKind() == Kind.NONE) {
+				// Class function (static function) call
+				_vw.writeCall(receiver.getName() + "." + call.getSubroutineName(), nArgs);
+			}
+			else {
+				// Object function (method) call
+				_vw.writePush(segmentFromKind(receiver.getKind()), receiver.getIndex());
+				_vw.writeCall(receiver.getType() + "." + call.getSubroutineName(), nArgs + 1);
+			}
+			break;
+		case UNARY:
+			if (step.getValue() == '-') {
+				_vw.writeArithmetic(Command.NEG);
+			}
+			else if (step.getValue() == '~') {
+				_vw.writeArithmetic(Command.NOT);
+			}
+			break;
+		}
+	}
+	
+	/*
+	 * Returns true if multiplying by constant inline takes no more than
+	 * MAX_MULTIPLY_EXPANSION commands
+	 */
+	private boolean canMultiplyByConstant(int constant) {
+		if (constant == 0) {
+			return true;
+		}
+		int multiplier = Math.abs(constant);
+		int doublings = 31 - Integer.numberOfLeadingZeros(multiplier);
+		int additions = Integer.bitCount(multiplier) - 1;
+		int cost = additions == 0 ? 4 * doublings : 2 + 4 * doublings + 2 * additions;
+		return cost <= MAX_MULTIPLY_EXPANSION;
+	}
+	
+	/*
+	 * Multiplies the value on top of the stack by constant without calling
+	 * Math.multiply, using shifts and adds. left is the term that computed the
+	 * value if it can be pushed again cheaply, or null. Should only be called
+	 * if canMultiplyByConstant(constant) is true.
+	 */
+	private void generateMultiplyByConstant(int constant, Term left) throws IOException {
+		if (constant == 0) {
+			// The value was already computed for its side effects; discard it
+			_vw.writePush(Segment.CONSTANT, 0);
+			_vw.writeArithmetic(Command.AND);
+			return;
+		}
+		
+		int multiplier = Math.abs(constant);
+		int doublings = 31 - Integer.numberOfLeadingZeros(multiplier);
+		boolean powerOfTwo = Integer.bitCount(multiplier) == 1;
+		
+		if (powerOfTwo) {
+			for (int i = 0; i < doublings; i++) {
+				if (i == 0 && left != null) {
+					generateTerm(left);
+				}
+				else {
+					_vw.writePop(Segment.TEMP, 1);
+					_vw.writePush(Segment.TEMP, 1);
+					_vw.writePush(Segment.TEMP, 1);
+				}
+				_vw.writeArithmetic(Command.ADD);
+			}
+		}
+		else {
+			// Keep the multiplicand in temp 1 and double the product through temp 2
+			_vw.writePop(Segment.TEMP, 1);
+			_vw.writePush(Segment.TEMP, 1);
+			for (int bit = doublings - 1; bit >= 0; bit--) {
+				_vw.writePop(Segment.TEMP, 2);
+				_vw.writePush(Segment.TEMP, 2);
+				_vw.writePush(Segment.TEMP, 2);
+				_vw.writeArithmetic(Command.ADD);
+				if ((multiplier & (1 << bit)) != 0) {
+					_vw.writePush(Segment.TEMP, 1);
+					_vw.writeArithmetic(Command.ADD);
+				}
+			}
+		}
+		
+		if (constant < 0) {
+			_vw.writeArithmetic(Command.NEG);
+		}
+	}
+	
+	/*
+	 * Returns true if dividing by constant can be done without calling
+	 * Math.divide. Hack has no shift commands, so only 1 and -1 qualify.
+	 */
+	private boolean canDivideByConstant(int constant) {
+		return constant == 1 || constant == -1;
+	}
+	
+	/*
+	 * Divides the value on top of the stack by constant. Should only be
+	 * called if canDivideByConstant(constant) is true.
+	 */
+	private void generateDivideByConstant(int constant) throws IOException {
+		if (constant == -1) {
+			_vw.writeArithmetic(Command.NEG);
+		}
+	}
+	
+	/*
+	 * Returns the value of an integer constant or a negated integer constant,
+	 * or null for any other term
+	 */
+	private Integer constantValue(Term term) {
+		if (term instanceof IntegerConstantTerm) {
+			return ((IntegerConstantTerm) term).getValue();
+		}
+		if (term instanceof UnaryOpTerm && ((UnaryOpTerm) term).getOperator() == '-'
+				&& ((UnaryOpTerm) term).getTerm() instanceof IntegerConstantTerm) {
+			
+			return -((IntegerConstantTerm) ((UnaryOpTerm) term).getTerm()).getValue();
+		}
+		return null;
+	}
+	
+	/*
+	 * Returns term if it is a constant or a variable without an index, which
+	 * can be pushed a second time with a single command, or null otherwise
+	 */
+	private Term simpleTerm(Term term) {
+		if (term instanceof IntegerConstantTerm) {
+			return term;
+		}
+		if (term instanceof VariableTerm && ((VariableTerm) term).getIndex() == null) {
+			return term;
+		}
+		return null;
+	}
+	
+	private void generateOperator(char operator) throws IOException {
+		switch (operator) {
+		case '+':
+			_vw.writeArithmetic(Command.ADD);
+			break;
+		case '-':
+			_vw.writeArithmetic(Command.SUB);
+			break;
+		case '*':
+			_vw.writeCall("Math.multiply", 2);
+			break;
+		case '/':
+			_vw.writeCall("Math.divide", 2);
+			break;
+		case '&':
+			_vw.writeArithmetic(Command.AND);
+			break;
+		case '|':
+			_vw.writeArithmetic(Command.OR);
+			break;
+		case '<':
+			_vw.writeArithmetic(Command.LT);
+			break;
+		case '>':
+			_vw.writeArithmetic(Command.GT);
+			break;
+		case '=':
+			_vw.writeArithmetic(Command.EQ);
+			break;
+		default:
+			_err.println("Error: Invalid operator " + operator);
+			return;
+		}
+	}
+	
+	private void generateNewString(String stringVal) throws IOException {
+		_vw.writePush(Segment.CONSTANT, stringVal.length());
+		_vw.writeCall("String.new", 1);
+		for (int i = 0; i < stringVal.length(); i++) {
+			int asciiVal = (int) stringVal.charAt(i);
+			_vw.writePush(Segment.CONSTANT, asciiVal);
+			_vw.writeCall("String.appendChar", 2);
+		}
+	}
+	
+	/*
+	 * Pushes the pooled copy of a string constant, building it first if this
+	 * is the first time any use of the constant has been evaluated. Static
+	 * variables start out as 0, and no String is ever at address 0.
+	 */
+	private void generatePooledString(String stringVal) throws IOException {
+		Integer index = _stringPool.get(stringVal);
+		if (index == null) {
+			index = _staticCount + _stringPool.size();
+			_stringPool.put(stringVal, index);
+		}
+		String builtLabel = "STRING_BUILT" + String.valueOf(_stringLabelNumber);
+		_stringLabelNumber++;
+		
+		_vw.writePush(Segment.STATIC, index);
+		_vw.writeIf(builtLabel);
+		generateNewString(stringVal);
+		_vw.writePop(Segment.STATIC, index);
+		_vw.writeLabel(builtLabel);
+		_vw.writePush(Segment.STATIC, index);
+	}
+	
+	/*
+	 * Returns the number of expressions in the list, i.e. the number of
+	 * arguments they pass
+	 */
+	private int generateExpressionList(List<Expression> expressions) throws IOException {
+		for (Expression expression : expressions) {
+			generateExpression(expression);
+		}
+		return expressions.size();
+	}
+	
+	private Segment segmentFromKind(Kind kind) {
+		switch (kind) {
+		case ARG:
+			return Segment.ARGUMENT;
+		case FIELD:
+			return Segment.THIS;
+		case STATIC:
+			return Segment.STATIC;
+		case VAR:
+			return Segment.LOCAL;
+		case NONE:
+		default:
+			return null;
+		}
+	}
+	
+	/*
+	 * Work on the expression stack that is carried out once the entries
+	 * pushed after it are done. term and value hold what the kind of step
+	 * needs: the operator or constant, the multiplicand that can be pushed
+	 * again, or the array or call term being finished.
+	 */
+	private static class Step {
+		
+		public Step(StepKind kind, Term term, int value) {
+			_kind = kind;
+			_term = term;
+			_value = value;
+		}
+		
+		public StepKind getKind() {
+			return _kind;
+		}
+		
+		public Term getTerm() {
+			return _term;
+		}
+		
+		public int getValue() {
+			return _value;
+		}
+		
+		private StepKind _kind;
+		private Term _term;
+		private int _value;
+		
+	}
+	
+	/*
+	 * A conditional jump still to be generated: to label if the first
+	 * termCount terms of expression, or term if expression is null, evaluate
+	 * to jumpIfTrue
+	 */
+	private static class Jump {
+		
+		public Jump(Expression expression, int termCount, Term term, boolean jumpIfTrue, String label) {
+			_expression = expression;
+			_termCount = termCount;
+			_term = term;
+			_jumpIfTrue = jumpIfTrue;
+			_label = label;
+		}
+		
+		public Expression getExpression() {
+			return _expression;
+		}
+		
+		public int getTermCount() {
+			return _termCount;
+		}
+		
+		public Term getTerm() {
+			return _term;
+		}
+		
+		public boolean isJumpIfTrue() {
+			return _jumpIfTrue;
+		}
+		
+		public String getLabel() {
+			return _label;
+		}
+		
+		private Expression _expression;
+		private int _termCount;
+		private Term _term;
+		private boolean _jumpIfTrue;
+		private String _label;
+		
+	}
+	
+	private enum StepKind {
+		OPERATOR,
+		MULTIPLY,
+		DIVIDE,
+		ARRAY_READ,
+		CALL,
+		UNARY
+	}
+	
+	private static final int MAX_MULTIPLY_EXPANSION = 24;
+	
+	private VMCommandSink _vw;
+	private PrintStream _err;
+	private boolean _strengthReduction;
+	
+	private boolean _poolStrings;
+	
+	private String _currentClass;
+	private int _fieldCount;
+	private int _staticCount;
+	
+	// Static variable index of each pooled string constant in the current class
+	private Map<String, Integer> _stringPool;
+	private int _stringLabelNumber;
+	
+	private boolean _directBranches;
+	private int _conditionLabelNumber;
+	
+	private int _ifLabelNumber;
+	private int _whileLabelNumber;
+	
+	private Deque<Object> _work;
+	
+}
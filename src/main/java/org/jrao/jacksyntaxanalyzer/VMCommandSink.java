@@ -0,0 +1,34 @@
+package org.jrao.jacksyntaxanalyzer;
+
+import java.io.IOException;
+
+/*
+ * Receives VM commands, in order, from VMCodeGenerator. VMWriter writes
+ * them to a .vm file; PeepholeOptimizer rewrites them before passing them on.
+ */
+public interface VMCommandSink {
+	
+	void writePush(Segment segment, int index) throws IOException;
+	
+	void writePop(Segment segment, int index) throws IOException;
+	
+	void writeArithmetic(Command command) throws IOException;
+	
+	void writeLabel(String label) throws IOException;
+	
+	void writeGoto(String label) throws IOException;
+	
+	void writeIf(String label) throws IOException;
+	
+	void writeCall(String name, int nArgs) throws IOException;
+	
+	void writeFunction(String name, int nLocals) throws IOException;
+	
+	void writeReturn() throws IOException;
+	
+	/*
+	 * Passes on any commands that are still being held back
+	 */
+	void flush() throws IOException;
+	
+}
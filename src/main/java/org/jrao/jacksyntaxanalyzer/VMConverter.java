@@ -0,0 +1,93 @@
+package org.jrao.jacksyntaxanalyzer;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+
+/*
+ * Converts VM code between the text form (.vm) and the binary form (.vmb).
+ * The direction is chosen by the input file's extension: a .vmb file is
+ * converted to text, and any other file is converted to binary. If no
+ * output file is given, the input must be a .vm or .vmb file, and the
+ * output is the input file with its extension swapped.
+ */
+public class VMConverter {
+	
+	public static final String USAGE =
+			"Usage: java -cp org.jrao.jacksyntaxanalyzer.jar org.jrao.jacksyntaxanalyzer.VMConverter input-file [output-file]\n"
+			+ "Converts a .vm file to .vmb, or a .vmb file to .vm\n";
+	
+	public static void main(String[] args) {
+		if (args.length < 1 || args.length > 2) {
+			System.err.print(USAGE);
+			System.exit(1);
+		}
+		
+		File inputFile = new File(args[0]);
+		boolean toText = args[0].endsWith(BINARY_EXTENSION);
+		File outputFile;
+		if (args.length == 2) {
+			outputFile = new File(args[1]);
+		}
+		else if (toText) {
+			outputFile = new File(args[0].substring(0, args[0].length() - BINARY_EXTENSION.length()) + TEXT_EXTENSION);
+		}
+		else if (args[0].endsWith(TEXT_EXTENSION)) {
+			outputFile = new File(args[0].substring(0, args[0].length() - TEXT_EXTENSION.length()) + BINARY_EXTENSION);
+		}
+		else {
+			System.err.println("Error: Input file must end in " + TEXT_EXTENSION + " or " + BINARY_EXTENSION
+					+ " unless an output file is given");
+			System.err.print(USAGE);
+			System.exit(1);
+			return;
+		}
+		
+		try {
+			if (toText) {
+				binaryToText(inputFile, outputFile);
+			}
+			else {
+				textToBinary(inputFile, outputFile);
+			}
+		}
+		catch (IOException ioe) {
+			System.err.println("Error: Failed to convert " + inputFile.getName() + ": " + ioe.getMessage());
+			System.exit(1);
+		}
+	}
+	
+	/*
+	 * Writes the VM code in the binary inputFile to outputFile as text
+	 */
+	public static void binaryToText(File inputFile, File outputFile) throws IOException {
+		BinaryVMReader reader = new BinaryVMReader(inputFile);
+		VMWriter writer = new VMWriter(outputFile);
+		try {
+			reader.read(writer);
+		}
+		finally {
+			writer.close();
+		}
+	}
+	
+	/*
+	 * Writes the VM code in the text inputFile to outputFile in binary
+	 */
+	public static void textToBinary(File inputFile, File outputFile) throws IOException {
+		try (Reader input = new FileReader(inputFile)) {
+			BinaryVMWriter writer = new BinaryVMWriter(outputFile);
+			try {
+				new VMTextReader(input).read(writer);
+			}
+			finally {
+				writer.close();
+			}
+		}
+	}
+	
+	private static final String TEXT_EXTENSION = ".vm";
+	private static final String BINARY_EXTENSION = ".vmb";
+	
+}
@@ -0,0 +1,33 @@
+package org.jrao.jacksyntaxanalyzer;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/*
+ * Flight Recorder event for CompilationEngine generating a class's VM code. The
+ * commands are only counted while the event is enabled.
+ */
+@Name("org.jrao.jacksyntaxanalyzer.VMEmit")
+@Label("Emit VM Code")
+@Category("Jack Compiler")
+@Description("Folding constants, generating VM code, and applying peephole rules for a Jack class")
+public class VMEmitEvent extends Event {
+	
+	@Label("File")
+	String fileName;
+	
+	@Label("Class")
+	String className;
+	
+	@Label("VM Commands Generated")
+	@Description("Before any peephole rules were applied")
+	long commandsGenerated;
+	
+	@Label("VM Commands Written")
+	@Description("After any peephole rules were applied")
+	long commandsWritten;
+	
+}
@@ -0,0 +1,134 @@
+package org.jrao.jacksyntaxanalyzer;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+
+/*
+ * Parses VM code in the text form written by VMWriter and passes its
+ * commands, in order, to a VMCommandSink. Comments starting with // and
+ * blank lines are skipped.
+ */
+public class VMTextReader {
+	
+	/*
+	 * Reads VM code from the given reader, which the caller remains
+	 * responsible for closing
+	 */
+	public VMTextReader(Reader input) {
+		_br = new BufferedReader(input);
+	}
+	
+	/*
+	 * Passes every command in the input to out, then flushes it. Throws an
+	 * IOException naming the line if the input is not valid VM code.
+	 */
+	public void read(VMCommandSink out) throws IOException {
+		int lineNumber = 0;
+		String line;
+		while ((line = _br.readLine()) != null) {
+			lineNumber++;
+			int commentStart = line.indexOf("//");
+			if (commentStart >= 0) {
+				line = line.substring(0, commentStart);
+			}
+			line = line.trim();
+			if (line.isEmpty()) {
+				continue;
+			}
+			
+			String[] fields = line.split("\\s+");
+			if (!readCommand(fields, out)) {
+				throw new IOException("Invalid VM command on line " + lineNumber + ": " + line);
+			}
+		}
+		out.flush();
+	}
+	
+	/*
+	 * Passes the command made of the given fields to out. Returns false if
+	 * the fields are not a valid command.
+	 */
+	private boolean readCommand(String[] fields, VMCommandSink out) throws IOException {
+		switch (fields[0]) {
+		case "push":
+		case "pop":
+			if (fields.length != 3) {
+				return false;
+			}
+			Segment segment = Segment.fromName(fields[1]);
+			Integer index = parseCount(fields[2]);
+			if (segment == null || index == null) {
+				return false;
+			}
+			if (fields[0].equals("push")) {
+				out.writePush(segment, index);
+			}
+			else {
+				out.writePop(segment, index);
+			}
+			return true;
+		case "label":
+		case "goto":
+		case "if-goto":
+			if (fields.length != 2) {
+				return false;
+			}
+			if (fields[0].equals("label")) {
+				out.writeLabel(fields[1]);
+			}
+			else if (fields[0].equals("goto")) {
+				out.writeGoto(fields[1]);
+			}
+			else {
+				out.writeIf(fields[1]);
+			}
+			return true;
+		case "call":
+		case "function":
+			if (fields.length != 3) {
+				return false;
+			}
+			Integer count = parseCount(fields[2]);
+			if (count == null) {
+				return false;
+			}
+			if (fields[0].equals("call")) {
+				out.writeCall(fields[1], count);
+			}
+			else {
+				out.writeFunction(fields[1], count);
+			}
+			return true;
+		case "return":
+			if (fields.length != 1) {
+				return false;
+			}
+			out.writeReturn();
+			return true;
+		default:
+			Command command = Command.fromName(fields[0]);
+			if (command == null || fields.length != 1) {
+				return false;
+			}
+			out.writeArithmetic(command);
+			return true;
+		}
+	}
+	
+	/*
+	 * Returns the non-negative integer spelled by text, or null if it is not one
+	 */
+	private static Integer parseCount(String text) {
+		try {
+			int value = Integer.parseInt(text);
+			return value < 0 ? null : value;
+		}
+		catch (NumberFormatException nfe) {
+			return null;
+		}
+	}
+	
+	private BufferedReader _br;
+	
+}
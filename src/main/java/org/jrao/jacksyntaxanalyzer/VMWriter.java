@@ -1,135 +1,254 @@
 package org.jrao.jacksyntaxanalyzer;
 
-import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
 
-public class VMWriter {
+/*
+ * Writes VM commands as text. Each command is encoded as ASCII straight into
+ * a reusable buffer, from pre-encoded command and segment prefixes and the
+ * digits of its index, so writing a command allocates nothing. The buffer is
+ * written to the output channel when it fills up and when the writer is
+ * flushed, which for most classes means a single write.
+ */
+public class VMWriter implements VMCommandSink {
 	
 	/*
 	 * Create a new output.vm file and prepares it for writing
 	 */
 	public VMWriter(File outputFile) throws IOException {
-		_bw = new BufferedWriter(new FileWriter(outputFile));
+		this(FileChannel.open(outputFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING));
+	}
+	
+	/*
+	 * Creates a writer that writes to outputChannel, which it closes when it
+	 * is closed
+	 */
+	public VMWriter(WritableByteChannel outputChannel) {
+		_channel = outputChannel;
+		_bytes = new byte[BUFFER_SIZE];
+		_buffer = ByteBuffer.wrap(_bytes);
+		_length = 0;
+		_err = System.err;
+	}
+	
+	/*
+	 * Sets the stream that errors are reported to (System.err by default)
+	 */
+	public void setErrorStream(PrintStream err) {
+		_err = err;
 	}
 	
 	/*
 	 * Writes a VM push command
 	 */
-	public void writePush(String segment, int index) throws IOException {
-		switch (segment) {
-			case "constant":
-			case "argument":
-			case "local":
-			case "static":
-			case "this":
-			case "that":
-			case "pointer":
-			case "temp":
-				_bw.write("push " + segment + " " + index + "\n");
-				break;
-			default:
-				System.err.println("Error: Invalid argument 'segment': " + segment + "\n");
-				break;
+	public void writePush(Segment segment, int index) throws IOException {
+		if (segment == null) {
+			_err.println("Error: Invalid argument 'segment': \n");
+			return;
 		}
+		putBytes(PUSH_PREFIXES[segment.ordinal()]);
+		putInt(index);
+		putByte('\n');
 	}
-
+	
 	/*
 	 * Writes a VM pop command
 	 */
-	public void writePop(String segment, int index) throws IOException {
-		switch (segment) {
-			case "const":
-			case "argument":
-			case "local":
-			case "static":
-			case "this":
-			case "that":
-			case "pointer":
-			case "temp":
-				_bw.write("pop " + segment + " " + index + "\n");
-				break;
-			default:
-				System.err.println("Error: Invalid argument 'segment': " + segment + "\n");
-				break;
+	public void writePop(Segment segment, int index) throws IOException {
+		if (segment == null || segment == Segment.CONSTANT) {
+			_err.println("Error: Invalid argument 'segment': " + (segment == null ? "" : segment.getName()) + "\n");
+			return;
 		}
+		putBytes(POP_PREFIXES[segment.ordinal()]);
+		putInt(index);
+		putByte('\n');
 	}
-
+	
 	/*
 	 * Writes a VM arithmetic-logical command
 	 */
-	public void writeArithmetic(String command) throws IOException {
-		switch (command) {
-			case "add":
-			case "sub":
-			case "neg":
-			case "eq":
-			case "gt":
-			case "lt":
-			case "and":
-			case "or":
-			case "not":
-				_bw.write(command + "\n");
-				break;
-			default:
-				System.err.println("Error: Invalid argument 'command': " + command + "\n");
-				break;
-		}
+	public void writeArithmetic(Command command) throws IOException {
+		putBytes(COMMAND_LINES[command.ordinal()]);
 	}
-
+	
 	/*
 	 * Writes a VM label command
 	 */
 	public void writeLabel(String label) throws IOException {
-		_bw.write("label " + label + "\n");
+		putBytes(LABEL_PREFIX);
+		putText(label);
+		putByte('\n');
 	}
-
+	
 	/*
 	 * Writes a VM goto command
 	 */
 	public void writeGoto(String label) throws IOException {
-		_bw.write("goto " + label + "\n");
+		putBytes(GOTO_PREFIX);
+		putText(label);
+		putByte('\n');
 	}
-
+	
 	/*
 	 * Writes a VM if-goto command
 	 */
 	public void writeIf(String label) throws IOException {
-		_bw.write("if-goto " + label + "\n");
+		putBytes(IF_GOTO_PREFIX);
+		putText(label);
+		putByte('\n');
 	}
-
+	
 	/*
 	 * Writes a VM call command
 	 */
 	public void writeCall(String name, int nArgs) throws IOException {
-		_bw.write("call " + name + " " + nArgs + "\n");
+		putBytes(CALL_PREFIX);
+		putText(name);
+		putByte(' ');
+		putInt(nArgs);
+		putByte('\n');
 	}
-
+	
 	/*
 	 * Writes a VM function command
 	 */
 	public void writeFunction(String name, int nLocals) throws IOException {
-		_bw.write("function " + name + " " + nLocals + "\n");
+		putBytes(FUNCTION_PREFIX);
+		putText(name);
+		putByte(' ');
+		putInt(nLocals);
+		putByte('\n');
 	}
-
+	
 	/*
 	 * Writes a VM return command
 	 */
 	public void writeReturn() throws IOException {
-		_bw.write("return\n");
+		putBytes(RETURN_LINE);
 	}
 	
 	/*
-	 * Closes the output file
+	 * Writes buffered output to the channel
+	 */
+	public void flush() throws IOException {
+		_buffer.clear();
+		_buffer.limit(_length);
+		while (_buffer.hasRemaining()) {
+			_channel.write(_buffer);
+		}
+		_length = 0;
+	}
+	
+	/*
+	 * Closes the output channel
 	 */
 	public void close() throws IOException {
-		if (_bw != null) {
-			_bw.flush();
-			_bw.close();
+		if (_channel != null) {
+			flush();
+			_channel.close();
 		}
 	}
 	
-	private BufferedWriter _bw;
-
+	/*
+	 * Makes room for count more bytes in the buffer, which must be no larger
+	 * than BUFFER_SIZE
+	 */
+	private void reserve(int count) throws IOException {
+		if (_bytes.length - _length < count) {
+			flush();
+		}
+	}
+	
+	private void putByte(char c) throws IOException {
+		reserve(1);
+		_bytes[_length++] = (byte) c;
+	}
+	
+	private void putBytes(byte[] bytes) throws IOException {
+		reserve(bytes.length);
+		System.arraycopy(bytes, 0, _bytes, _length, bytes.length);
+		_length += bytes.length;
+	}
+	
+	/*
+	 * Writes a label or function name. Jack identifiers are ASCII, so each
+	 * character is one byte.
+	 */
+	private void putText(String text) throws IOException {
+		for (int i = 0; i < text.length(); i++) {
+			if (_length == _bytes.length) {
+				flush();
+			}
+			_bytes[_length++] = (byte) text.charAt(i);
+		}
+	}
+	
+	/*
+	 * Writes the decimal digits of value. The digits are produced from a
+	 * non-positive value, which also covers Integer.MIN_VALUE, and are
+	 * reversed in place afterwards.
+	 */
+	private void putInt(int value) throws IOException {
+		reserve(MAX_INT_LENGTH);
+		if (value < 0) {
+			_bytes[_length++] = '-';
+		}
+		else {
+			value = -value;
+		}
+		
+		int start = _length;
+		do {
+			_bytes[_length++] = (byte) ('0' - value % 10);
+			value /= 10;
+		} while (value != 0);
+		
+		for (int i = start, j = _length - 1; i < j; i++, j--) {
+			byte digit = _bytes[i];
+			_bytes[i] = _bytes[j];
+			_bytes[j] = digit;
+		}
+	}
+	
+	private static byte[] ascii(String text) {
+		return text.getBytes(StandardCharsets.US_ASCII);
+	}
+	
+	private static final int BUFFER_SIZE = 64 * 1024;
+	
+	// Length of "-2147483648"
+	private static final int MAX_INT_LENGTH = 11;
+	
+	private static final byte[][] PUSH_PREFIXES = new byte[Segment.values().length][];
+	private static final byte[][] POP_PREFIXES = new byte[Segment.values().length][];
+	private static final byte[][] COMMAND_LINES = new byte[Command.values().length][];
+	static {
+		for (Segment segment : Segment.values()) {
+			PUSH_PREFIXES[segment.ordinal()] = ascii("push " + segment.getName() + " ");
+			POP_PREFIXES[segment.ordinal()] = ascii("pop " + segment.getName() + " ");
+		}
+		for (Command command : Command.values()) {
+			COMMAND_LINES[command.ordinal()] = ascii(command.getName() + "\n");
+		}
+	}
+	private static final byte[] LABEL_PREFIX = ascii("label ");
+	private static final byte[] GOTO_PREFIX = ascii("goto ");
+	private static final byte[] IF_GOTO_PREFIX = ascii("if-goto ");
+	private static final byte[] CALL_PREFIX = ascii("call ");
+	private static final byte[] FUNCTION_PREFIX = ascii("function ");
+	private static final byte[] RETURN_LINE = ascii("return\n");
+	
+	private WritableByteChannel _channel;
+	private byte[] _bytes;
+	private ByteBuffer _buffer;
+	private int _length;
+	private PrintStream _err;
+	
 }
@@ -0,0 +1,27 @@
+package org.jrao.jacksyntaxanalyzer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ * A local declaration of one or more variables of the same type
+ */
+public class VarDec {
+	
+	public VarDec(String type) {
+		_type = type;
+		_variables = new ArrayList<Variable>();
+	}
+	
+	public String getType() {
+		return _type;
+	}
+	
+	public List<Variable> getVariables() {
+		return _variables;
+	}
+	
+	private String _type;
+	private List<Variable> _variables;
+	
+}
@@ -0,0 +1,38 @@
+package org.jrao.jacksyntaxanalyzer;
+
+/*
+ * A variable name together with what the symbol table knew about it where it
+ * appeared. Names the symbol table did not know (such as class names) have
+ * kind NONE, an empty type, and index -1.
+ */
+public class Variable {
+	
+	public Variable(String name, String type, Kind kind, int index) {
+		_name = name;
+		_type = type;
+		_kind = kind;
+		_index = index;
+	}
+	
+	public String getName() {
+		return _name;
+	}
+	
+	public String getType() {
+		return _type;
+	}
+	
+	public Kind getKind() {
+		return _kind;
+	}
+	
+	public int getIndex() {
+		return _index;
+	}
+	
+	private String _name;
+	private String _type;
+	private Kind _kind;
+	private int _index;
+	
+}
@@ -0,0 +1,27 @@
+package org.jrao.jacksyntaxanalyzer;
+
+/*
+ * varName | varName '[' expression ']'
+ */
+public class VariableTerm extends Term {
+	
+	public VariableTerm(Variable variable, Expression index) {
+		_variable = variable;
+		_index = index;
+	}
+	
+	public Variable getVariable() {
+		return _variable;
+	}
+	
+	/*
+	 * Returns the array index expression, or null if the variable is not indexed
+	 */
+	public Expression getIndex() {
+		return _index;
+	}
+	
+	private Variable _variable;
+	private Expression _index;
+	
+}
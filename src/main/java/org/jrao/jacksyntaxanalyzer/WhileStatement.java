@@ -0,0 +1,26 @@
+package org.jrao.jacksyntaxanalyzer;
+
+import java.util.List;
+
+/*
+ * while '(' expression ')' '{' statements '}'
+ */
+public class WhileStatement extends Statement {
+	
+	public WhileStatement(Expression condition, List<Statement> statements) {
+		_condition = condition;
+		_statements = statements;
+	}
+	
+	public Expression getCondition() {
+		return _condition;
+	}
+	
+	public List<Statement> getStatements() {
+		return _statements;
+	}
+	
+	private Expression _condition;
+	private List<Statement> _statements;
+	
+}
@@ -0,0 +1,454 @@
+package org.jrao.jacksyntaxanalyzer;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+
+/*
+ * Writes the syntax tree of a Jack class as the XML parse tree, annotating
+ * every identifier with what the symbol table knew about it
+ */
+public class XMLParseTreeWriter {
+	
+	public XMLParseTreeWriter(Writer writer) {
+		_bw = writer;
+		_pending = new ArrayDeque<Object>();
+		_digits = new char[MAX_INT_LENGTH];
+	}
+	
+	public void writeClass(ClassDec classDec) throws IOException {
+		_bw.write("<class>\n");
+		writeKeyword("class");
+		writeIdentifier(CLASS_DEFINITION_START, classDec.getName());
+		writeSymbol('{');
+		
+		for (ClassVarDec classVarDec : classDec.getClassVarDecs()) {
+			writeClassVarDec(classVarDec);
+		}
+		for (SubroutineDec subroutineDec : classDec.getSubroutineDecs()) {
+			writeSubroutineDec(subroutineDec);
+		}
+		
+		writeSymbol('}');
+		_bw.write("</class>\n");
+	}
+	
+	private void writeClassVarDec(ClassVarDec classVarDec) throws IOException {
+		_bw.write("<classVarDec>\n");
+		writeKeyword(classVarDec.getKind() == Kind.STATIC ? "static" : "field");
+		writeType(classVarDec.getType());
+		writeVariableList(classVarDec.getVariables());
+		_bw.write("</classVarDec>\n");
+	}
+	
+	private void writeSubroutineDec(SubroutineDec subroutineDec) throws IOException {
+		_bw.write("<subroutineDec>\n");
+		_bw.write(KEYWORD_MARKUP[subroutineDec.getSubroutineType().ordinal()]);
+		writeType(subroutineDec.getReturnType());
+		writeIdentifier(SUBROUTINE_DEFINITION_START, subroutineDec.getName());
+		
+		writeSymbol('(');
+		_bw.write("<parameterList>\n");
+		boolean first = true;
+		for (Variable parameter : subroutineDec.getParameters()) {
+			if (!first) {
+				writeSymbol(',');
+			}
+			first = false;
+			writeType(parameter.getType());
+			writeDefinition(parameter);
+		}
+		_bw.write("</parameterList>\n");
+		writeSymbol(')');
+		
+		_bw.write("<subroutineBody>\n");
+		writeSymbol('{');
+		for (VarDec varDec : subroutineDec.getVarDecs()) {
+			_bw.write("<varDec>\n");
+			writeKeyword("var");
+			writeType(varDec.getType());
+			writeVariableList(varDec.getVariables());
+			_bw.write("</varDec>\n");
+		}
+		writeStatements(subroutineDec.getStatements());
+		writeSymbol('}');
+		_bw.write("</subroutineBody>\n");
+		
+		_bw.write("</subroutineDec>\n");
+	}
+	
+	/*
+	 * Writes varName (',' varName)* ';'
+	 */
+	private void writeVariableList(List<Variable> variables) throws IOException {
+		boolean first = true;
+		for (Variable variable : variables) {
+			if (!first) {
+				writeSymbol(',');
+			}
+			first = false;
+			writeDefinition(variable);
+		}
+		writeSymbol(';');
+	}
+	
+	private void writeStatements(List<Statement> statements) throws IOException {
+		_bw.write("<statements>\n");
+		for (Statement statement : statements) {
+			if (statement instanceof LetStatement) {
+				writeLet((LetStatement) statement);
+			}
+			else if (statement instanceof IfStatement) {
+				writeIf((IfStatement) statement);
+			}
+			else if (statement instanceof WhileStatement) {
+				writeWhile((WhileStatement) statement);
+			}
+			else if (statement instanceof DoStatement) {
+				writeDo((DoStatement) statement);
+			}
+			else if (statement instanceof ReturnStatement) {
+				writeReturn((ReturnStatement) statement);
+			}
+		}
+		_bw.write("</statements>\n");
+	}
+	
+	private void writeLet(LetStatement let) throws IOException {
+		_bw.write("<letStatement>\n");
+		writeKeyword("let");
+		writeUsage(let.getTarget());
+		if (let.getIndex() != null) {
+			writeSymbol('[');
+			writeExpression(let.getIndex());
+			writeSymbol(']');
+		}
+		writeSymbol('=');
+		writeExpression(let.getValue());
+		writeSymbol(';');
+		_bw.write("</letStatement>\n");
+	}
+	
+	private void writeIf(IfStatement ifStatement) throws IOException {
+		_bw.write("<ifStatement>\n");
+		writeKeyword("if");
+		writeSymbol('(');
+		writeExpression(ifStatement.getCondition());
+		writeSymbol(')');
+		writeSymbol('{');
+		writeStatements(ifStatement.getThenStatements());
+		writeSymbol('}');
+		if (ifStatement.getElseStatements() != null) {
+			writeKeyword("else");
+			writeSymbol('{');
+			writeStatements(ifStatement.getElseStatements());
+			writeSymbol('}');
+		}
+		_bw.write("</ifStatement>\n");
+	}
+	
+	private void writeWhile(WhileStatement whileStatement) throws IOException {
+		_bw.write("<whileStatement>\n");
+		writeKeyword("while");
+		writeSymbol('(');
+		writeExpression(whileStatement.getCondition());
+		writeSymbol(')');
+		writeSymbol('{');
+		writeStatements(whileStatement.getStatements());
+		writeSymbol('}');
+		_bw.write("</whileStatement>\n");
+	}
+	
+	private void writeDo(DoStatement doStatement) throws IOException {
+		_bw.write("<doStatement>\n");
+		writeKeyword("do");
+		SubroutineCall call = doStatement.getCall();
+		if (call.getReceiver() == null) {
+			writeIdentifier(SUBROUTINE_USAGE_START, call.getSubroutineName());
+		}
+		else {
+			writeIdentifier(CLASS_USAGE_START, call.getReceiver().getName());
+			writeSymbol('.');
+			writeIdentifier(SUBROUTINE_USAGE_START, call.getSubroutineName());
+		}
+		writeArguments(call.getArguments());
+		writeSymbol(';');
+		_bw.write("</doStatement>\n");
+	}
+	
+	private void writeReturn(ReturnStatement returnStatement) throws IOException {
+		_bw.write("<returnStatement>\n");
+		writeKeyword("return");
+		if (returnStatement.getValue() != null) {
+			writeExpression(returnStatement.getValue());
+		}
+		writeSymbol(';');
+		_bw.write("</returnStatement>\n");
+	}
+	
+	private void writeExpression(Expression expression) throws IOException {
+		int base = _pending.size();
+		pushExpression(expression);
+		writePending(base);
+	}
+	
+	/*
+	 * Writes '(' expressionList ')'
+	 */
+	private void writeArguments(List<Expression> arguments) throws IOException {
+		int base = _pending.size();
+		pushArguments(arguments);
+		writePending(base);
+	}
+	
+	/*
+	 * Expressions are written from an explicit stack rather than by recursion,
+	 * so however deeply they are nested they cannot overflow the thread
+	 * stack. Each entry is a Term still to be written or markup to write once
+	 * the entries pushed after it are done. Writes until only the bottom base
+	 * entries are left.
+	 */
+	private void writePending(int base) throws IOException {
+		while (_pending.size() > base) {
+			Object next = _pending.pop();
+			if (next instanceof Term) {
+				startTerm((Term) next);
+			}
+			else {
+				_bw.write((String) next);
+			}
+		}
+	}
+	
+	/*
+	 * Pushes an expression's terms and operators, last to first so that they
+	 * are written first to last
+	 */
+	private void pushExpression(Expression expression) {
+		List<Term> terms = expression.getTerms();
+		List<Character> operators = expression.getOperators();
+		_pending.push("</expression>\n");
+		for (int i = terms.size() - 1; i >= 0; i--) {
+			_pending.push(terms.get(i));
+			if (i > 0) {
+				_pending.push(symbolMarkup(operators.get(i - 1)));
+			}
+		}
+		_pending.push("<expression>\n");
+	}
+	
+	private void pushArguments(List<Expression> arguments) {
+		_pending.push(symbolMarkup(')'));
+		_pending.push("</expressionList>\n");
+		for (int i = arguments.size() - 1; i >= 0; i--) {
+			pushExpression(arguments.get(i));
+			if (i > 0) {
+				_pending.push(symbolMarkup(','));
+			}
+		}
+		_pending.push("<expressionList>\n");
+		_pending.push(symbolMarkup('('));
+	}
+	
+	/*
+	 * Writes the start of a term and pushes the rest of it
+	 */
+	private void startTerm(Term term) throws IOException {
+		_bw.write("<term>\n");
+		_pending.push("</term>\n");
+		if (term instanceof IntegerConstantTerm) {
+			_bw.write("<integerConstant> ");
+			writeInt(((IntegerConstantTerm) term).getValue());
+			_bw.write(" </integerConstant>\n");
+		}
+		else if (term instanceof StringConstantTerm) {
+			_bw.write("<stringConstant> ");
+			_bw.write(((StringConstantTerm) term).getValue());
+			_bw.write(" </stringConstant>\n");
+		}
+		else if (term instanceof KeywordConstantTerm) {
+			_bw.write(KEYWORD_MARKUP[((KeywordConstantTerm) term).getKeyWord().ordinal()]);
+		}
+		else if (term instanceof VariableTerm) {
+			VariableTerm variableTerm = (VariableTerm) term;
+			writeUsage(variableTerm.getVariable());
+			if (variableTerm.getIndex() != null) {
+				writeSymbol('[');
+				_pending.push(symbolMarkup(']'));
+				pushExpression(variableTerm.getIndex());
+			}
+		}
+		else if (term instanceof SubroutineCallTerm) {
+			SubroutineCall call = ((SubroutineCallTerm) term).getCall();
+			Variable receiver = call.getReceiver();
+			if (receiver != null) {
+				if (receiver.getKind() == Kind.NONE) {
+					writeIdentifier(CLASS_USAGE_START, receiver.getName());
+				}
+				else {
+					writeUsage(receiver);
+				}
+				writeSymbol('.');
+			}
+			writeIdentifier(SUBROUTINE_USAGE_START, call.getSubroutineName());
+			pushArguments(call.getArguments());
+		}
+		else if (term instanceof ParenthesizedTerm) {
+			writeSymbol('(');
+			_pending.push(symbolMarkup(')'));
+			pushExpression(((ParenthesizedTerm) term).getExpression());
+		}
+		else if (term instanceof UnaryOpTerm) {
+			UnaryOpTerm unaryOpTerm = (UnaryOpTerm) term;
+			writeSymbol(unaryOpTerm.getOperator());
+			_pending.push(unaryOpTerm.getTerm());
+		}
+	}
+	
+	private void writeType(String type) throws IOException {
+		switch (type) {
+		case "int":
+		case "char":
+		case "boolean":
+		case "void":
+			writeKeyword(type);
+			break;
+		default:
+			writeIdentifier(CLASS_USAGE_START, type);
+			break;
+		}
+	}
+	
+	private void writeDefinition(Variable variable) throws IOException {
+		writeVariable(DEFINITION_STARTS[variable.getKind().ordinal()], variable, "\" definition=\"true\" type=\"");
+	}
+	
+	private void writeUsage(Variable variable) throws IOException {
+		writeVariable(USAGE_STARTS[variable.getKind().ordinal()], variable, "\" definition=\"false\" type=\"");
+	}
+	
+	/*
+	 * Writes the identifier element of a variable. start is the markup up to
+	 * its number, and middle the markup between its number and its type.
+	 */
+	private void writeVariable(String start, Variable variable, String middle) throws IOException {
+		_bw.write(start);
+		writeInt(variable.getIndex());
+		_bw.write(middle);
+		_bw.write(variable.getType());
+		_bw.write("\"> ");
+		_bw.write(variable.getName());
+		_bw.write(IDENTIFIER_END);
+	}
+	
+	/*
+	 * Writes the identifier element of a class or subroutine name. start is
+	 * the markup up to the name.
+	 */
+	private void writeIdentifier(String start, String name) throws IOException {
+		_bw.write(start);
+		_bw.write(name);
+		_bw.write(IDENTIFIER_END);
+	}
+	
+	private void writeKeyword(String keyword) throws IOException {
+		_bw.write("<keyword> ");
+		_bw.write(keyword);
+		_bw.write(" </keyword>\n");
+	}
+	
+	private void writeSymbol(char symbol) throws IOException {
+		_bw.write(symbolMarkup(symbol));
+	}
+	
+	/*
+	 * Writes the decimal digits of value. The digits are produced from a
+	 * non-positive value, which also covers Integer.MIN_VALUE, from the end
+	 * of the buffer backwards.
+	 */
+	private void writeInt(int value) throws IOException {
+		boolean negative = value < 0;
+		if (!negative) {
+			value = -value;
+		}
+		int start = _digits.length;
+		do {
+			_digits[--start] = (char) ('0' - value % 10);
+			value /= 10;
+		} while (value != 0);
+		if (negative) {
+			_digits[--start] = '-';
+		}
+		_bw.write(_digits, start, _digits.length - start);
+	}
+	
+	private static String symbolMarkup(char symbol) {
+		return SYMBOL_MARKUP[symbol];
+	}
+	
+	private static String getEscapedSymbol(char symbol) {
+		if (symbol == '&') {
+			return "&amp;";
+		}
+		else if (symbol == '<') {
+			return "&lt;";
+		}
+		else if (symbol == '>') {
+			return "&gt;";
+		}
+		else {
+			return String.valueOf(symbol);
+		}
+	}
+	
+	private static String definitionKindName(Kind kind) {
+		switch (kind) {
+		case STATIC:
+			return "static";
+		case FIELD:
+			return "field";
+		case ARG:
+			return "argument";
+		case VAR:
+			return "var";
+		case NONE:
+		default:
+			return "none";
+		}
+	}
+	
+	// Length of "-2147483648"
+	private static final int MAX_INT_LENGTH = 11;
+	
+	private static final String CLASS_DEFINITION_START = "<identifier kind=\"class\" definition=\"true\"> ";
+	private static final String CLASS_USAGE_START = "<identifier kind=\"class\" definition=\"false\"> ";
+	private static final String SUBROUTINE_DEFINITION_START = "<identifier kind=\"subroutine\" definition=\"true\"> ";
+	private static final String SUBROUTINE_USAGE_START = "<identifier kind=\"subroutine\" definition=\"false\"> ";
+	private static final String IDENTIFIER_END = " </identifier>\n";
+	
+	// Markup that only depends on a symbol, kind or keyword is built once,
+	// indexed by the symbol's character or the enum's ordinal
+	private static final String[] SYMBOL_MARKUP = new String[128];
+	private static final String[] DEFINITION_STARTS = new String[Kind.values().length];
+	private static final String[] USAGE_STARTS = new String[Kind.values().length];
+	private static final String[] KEYWORD_MARKUP = new String[KeyWord.values().length];
+	static {
+		for (char symbol = 0; symbol < SYMBOL_MARKUP.length; symbol++) {
+			SYMBOL_MARKUP[symbol] = "<symbol> " + getEscapedSymbol(symbol) + " </symbol>\n";
+		}
+		for (Kind kind : Kind.values()) {
+			DEFINITION_STARTS[kind.ordinal()] = "<identifier kind=\"" + definitionKindName(kind) + "\" number=\"";
+			USAGE_STARTS[kind.ordinal()] = "<identifier kind=\"" + kind.toString().toLowerCase() + "\" number=\"";
+		}
+		for (KeyWord keyWord : KeyWord.values()) {
+			KEYWORD_MARKUP[keyWord.ordinal()] = "<keyword> " + keyWord.toString().toLowerCase() + " </keyword>\n";
+		}
+	}
+	
+	private Writer _bw;
+	private Deque<Object> _pending;
+	private char[] _digits;
+	
+}
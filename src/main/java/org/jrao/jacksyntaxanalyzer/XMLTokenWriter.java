@@ -0,0 +1,82 @@
+package org.jrao.jacksyntaxanalyzer;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+
+/*
+ * Writes a token stream as the <tokens> XML listing
+ */
+public class XMLTokenWriter implements TokenSink {
+	
+	/*
+	 * Creates a new output XML file and prepares it for writing
+	 */
+	public XMLTokenWriter(File outputFile) throws IOException {
+		_bw = new BufferedWriter(new FileWriter(outputFile));
+	}
+	
+	@Override
+	public void startTokens() throws IOException {
+		_bw.write("<tokens>\n");
+	}
+	
+	@Override
+	public void keyword(KeyWord keyWord) throws IOException {
+		_bw.write("<keyword> " + keyWord.toString().toLowerCase() + " </keyword>" + "\n");
+	}
+	
+	@Override
+	public void symbol(char symbol) throws IOException {
+		String escapedStr = String.valueOf(symbol);
+		if (symbol == '&') {
+			escapedStr = "&amp;";
+		}
+		else if (symbol == '<') {
+			escapedStr = "&lt;";
+		}
+		else if (symbol == '>') {
+			escapedStr = "&gt;";
+		}
+		_bw.write("<symbol> " + escapedStr + " </symbol>" + "\n");
+	}
+	
+	@Override
+	public void integerConstant(int value) throws IOException {
+		_bw.write("<integerConstant> " + value + " </integerConstant>" + "\n");
+	}
+	
+	@Override
+	public void stringConstant(String value) throws IOException {
+		_bw.write("<stringConstant > " + value + " </stringConstant>" + "\n");
+	}
+	
+	@Override
+	public void identifier(String identifier) throws IOException {
+		_bw.write("<identifier> " + identifier + " </identifier>" + "\n");
+	}
+	
+	@Override
+	public void unknown(String text) throws IOException {
+		_bw.write("<UNKNOWN> " + text + " </UNKNOWN>" + "\n");
+	}
+	
+	@Override
+	public void endTokens() throws IOException {
+		_bw.write("</tokens>\n");
+	}
+	
+	/*
+	 * Closes the output file
+	 */
+	public void close() throws IOException {
+		if (_bw != null) {
+			_bw.flush();
+			_bw.close();
+		}
+	}
+	
+	private BufferedWriter _bw;
+	
+}
@@ -0,0 +1,24 @@
+package org.jrao.jacksyntaxanalyzer;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/*
+ * Flight Recorder event for CompilationEngine writing a class's XML parse tree
+ */
+@Name("org.jrao.jacksyntaxanalyzer.XMLWrite")
+@Label("Write XML Parse Tree")
+@Category("Jack Compiler")
+@Description("Writing the XML parse tree of a Jack class")
+public class XMLWriteEvent extends Event {
+	
+	@Label("File")
+	String fileName;
+	
+	@Label("Class")
+	String className;
+	
+}
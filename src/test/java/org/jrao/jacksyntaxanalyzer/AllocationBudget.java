@@ -0,0 +1,350 @@
+package org.jrao.jacksyntaxanalyzer;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+
+/*
+ * Checks that each phase of the compiler allocates no more heap per input
+ * token than the budgets stored in a file, so that a change that makes the
+ * hot path allocate more fails the build (./gradlew check runs it). Each
+ * phase is run on a generated corpus until the JIT has settled, and then
+ * measured with the thread's allocation counter:
+ *
+ *   lex        tokenizing only
+ *   parse      tokenizing and parsing into a syntax tree
+ *   xml        writing the XML parse tree of the syntax tree
+ *   codegen    generating VM code from the syntax tree and writing it out
+ *   optimized  the same as codegen, but with constant folding, every
+ *              peephole rule, strength reduction, direct branches and
+ *              string pooling on
+ *
+ * With --update (./gradlew updateAllocationBudgets), the budgets file is
+ * rewritten from the measurements plus some headroom instead, for use after
+ * a change that is meant to lower (or knowingly raise) allocation. The class
+ * is part of the test sources, so it is not shipped in the jar.
+ */
+public class AllocationBudget {
+	
+	public static final String USAGE =
+			"Usage: java org.jrao.jacksyntaxanalyzer.AllocationBudget [--update] budgets-file\n";
+	
+	public static void main(String[] args) {
+		boolean update = false;
+		int i = 0;
+		if (i < args.length && args[i].equals("--update")) {
+			update = true;
+			i++;
+		}
+		if (i != args.length - 1) {
+			System.err.print(USAGE);
+			System.exit(1);
+		}
+		File budgetsFile = new File(args[i]);
+		
+		java.lang.management.ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+		if (!(threadBean instanceof com.sun.management.ThreadMXBean)
+				|| !((com.sun.management.ThreadMXBean) threadBean).isThreadAllocatedMemorySupported()) {
+			System.err.println("Error: This JVM cannot measure allocation per thread!");
+			System.exit(1);
+		}
+		com.sun.management.ThreadMXBean allocationBean = (com.sun.management.ThreadMXBean) threadBean;
+		allocationBean.setThreadAllocatedMemoryEnabled(true);
+		
+		Map<Phase, Double> measured;
+		try {
+			measured = new AllocationBudget(allocationBean).measure();
+		}
+		catch (IOException ioe) {
+			System.err.println("Failed to compile the corpus!");
+			ioe.printStackTrace();
+			System.exit(1);
+			return;
+		}
+		
+		if (update) {
+			try {
+				writeBudgets(budgetsFile, measured);
+			}
+			catch (IOException ioe) {
+				System.err.println("Failed to write " + budgetsFile + "!");
+				ioe.printStackTrace();
+				System.exit(1);
+			}
+			for (Phase phase : Phase.values()) {
+				System.out.println(String.format("%-9s %8.1f bytes/token, budget now %d", phase.getBudgetName(),
+						measured.get(phase), budgetFor(measured.get(phase))));
+			}
+			return;
+		}
+		
+		Map<Phase, Long> budgets;
+		try {
+			budgets = readBudgets(budgetsFile);
+		}
+		catch (IOException ioe) {
+			System.err.println("Failed to read " + budgetsFile + "!");
+			ioe.printStackTrace();
+			System.exit(1);
+			return;
+		}
+		
+		boolean withinBudget = true;
+		for (Phase phase : Phase.values()) {
+			Long budget = budgets.get(phase);
+			if (budget == null) {
+				System.err.println("Error: No budget for " + phase.getBudgetName() + " in " + budgetsFile);
+				withinBudget = false;
+				continue;
+			}
+			double bytesPerToken = measured.get(phase);
+			System.out.println(String.format("%-9s %8.1f bytes/token (budget %d)", phase.getBudgetName(), bytesPerToken,
+					budget));
+			if (bytesPerToken > budget) {
+				System.err.println(String.format("Error: %s allocates %.1f bytes per token, over its budget of %d",
+						phase.getBudgetName(), bytesPerToken, budget));
+				withinBudget = false;
+			}
+		}
+		if (!withinBudget) {
+			System.exit(1);
+		}
+	}
+	
+	public AllocationBudget(com.sun.management.ThreadMXBean allocationBean) {
+		_allocationBean = allocationBean;
+		_source = new JackCorpusGenerator(CORPUS_SEED).generateClass("Budget", CorpusShape.MIXED, CORPUS_BYTES)
+				.getBytes(StandardCharsets.ISO_8859_1);
+		_peepholeRules = EnumSet.allOf(PeepholeRule.class);
+	}
+	
+	/*
+	 * Returns the bytes allocated per token by each phase
+	 */
+	public Map<Phase, Double> measure() throws IOException {
+		JackTokenizer tokenizer = new JackTokenizer(ByteBuffer.wrap(_source));
+		ClassDec classDec = parse(tokenizer);
+		int tokenCount = tokenizer.getTokenCount();
+		
+		Map<Phase, Double> measured = new EnumMap<Phase, Double>(Phase.class);
+		long threadId = Thread.currentThread().getId();
+		for (Phase phase : Phase.values()) {
+			for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+				runPhase(phase, treeFor(phase, classDec));
+			}
+			long allocated = 0;
+			for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+				ClassDec tree = treeFor(phase, classDec);
+				long before = _allocationBean.getThreadAllocatedBytes(threadId);
+				runPhase(phase, tree);
+				allocated += _allocationBean.getThreadAllocatedBytes(threadId) - before;
+			}
+			measured.put(phase, (double) allocated / ((long) tokenCount * MEASURED_ITERATIONS));
+		}
+		return measured;
+	}
+	
+	/*
+	 * Returns the syntax tree to run phase on. Constant folding modifies the
+	 * tree, so the optimized phase gets a newly parsed one each time, which
+	 * is parsed outside the allocation it is measured by; the other phases
+	 * share classDec.
+	 */
+	private ClassDec treeFor(Phase phase, ClassDec classDec) throws IOException {
+		if (phase == Phase.OPTIMIZED) {
+			return parse(new JackTokenizer(ByteBuffer.wrap(_source)));
+		}
+		return classDec;
+	}
+	
+	private static ClassDec parse(JackTokenizer tokenizer) throws IOException {
+		ClassDec classDec = new JackParser(tokenizer).parseClass();
+		if (classDec == null) {
+			throw new IOException("The generated corpus could not be parsed");
+		}
+		return classDec;
+	}
+	
+	/*
+	 * Runs one phase once over the corpus. The phases after parsing work on
+	 * the syntax tree in classDec.
+	 */
+	private void runPhase(Phase phase, ClassDec classDec) throws IOException {
+		switch (phase) {
+		case LEX:
+			JackTokenizer tokenizer = new JackTokenizer(ByteBuffer.wrap(_source));
+			while (tokenizer.hasMoreTokens()) {
+				tokenizer.advance();
+			}
+			break;
+		case PARSE:
+			new JackParser(new JackTokenizer(ByteBuffer.wrap(_source))).parseClass();
+			break;
+		case XML:
+			new XMLParseTreeWriter(new DiscardWriter()).writeClass(classDec);
+			break;
+		case CODEGEN:
+			VMWriter vmWriter = new VMWriter(new DiscardChannel());
+			new VMCodeGenerator(vmWriter).generateClass(classDec);
+			vmWriter.flush();
+			break;
+		case OPTIMIZED:
+			new ConstantFolder().foldClass(classDec);
+			VMCommandSink optimizer = new PeepholeOptimizer(new VMWriter(new DiscardChannel()), _peepholeRules);
+			VMCodeGenerator codeGenerator = new VMCodeGenerator(optimizer);
+			codeGenerator.setStrengthReduction(true);
+			codeGenerator.setDirectBranches(true);
+			codeGenerator.setPoolStrings(true);
+			codeGenerator.generateClass(classDec);
+			optimizer.flush();
+			break;
+		}
+	}
+	
+	/*
+	 * Returns the budget to store for a phase that allocates bytesPerToken
+	 */
+	private static long budgetFor(double bytesPerToken) {
+		return (long) Math.ceil(bytesPerToken * BUDGET_HEADROOM + MIN_HEADROOM);
+	}
+	
+	private static Map<Phase, Long> readBudgets(File budgetsFile) throws IOException {
+		Map<Phase, Long> budgets = new EnumMap<Phase, Long>(Phase.class);
+		try (BufferedReader reader = new BufferedReader(new FileReader(budgetsFile))) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				line = line.trim();
+				if (line.isEmpty() || line.startsWith("#")) {
+					continue;
+				}
+				int equals = line.indexOf('=');
+				Phase phase = (equals < 0) ? null : Phase.fromBudgetName(line.substring(0, equals).trim());
+				if (phase == null) {
+					throw new IOException("Invalid budget: " + line);
+				}
+				try {
+					budgets.put(phase, Long.parseLong(line.substring(equals + 1).trim()));
+				}
+				catch (NumberFormatException nfe) {
+					throw new IOException("Invalid budget: " + line);
+				}
+			}
+		}
+		return budgets;
+	}
+	
+	private static void writeBudgets(File budgetsFile, Map<Phase, Double> measured) throws IOException {
+		try (Writer writer = new FileWriter(budgetsFile)) {
+			writer.write("# Most bytes each compiler phase may allocate per input token, checked by\n");
+			writer.write("# AllocationBudget (./gradlew checkAllocations). Regenerate with\n");
+			writer.write("# ./gradlew updateAllocationBudgets.\n");
+			for (Phase phase : Phase.values()) {
+				writer.write(phase.getBudgetName() + "=" + budgetFor(measured.get(phase)) + "\n");
+			}
+		}
+	}
+	
+	/*
+	 * The phases that have budgets
+	 */
+	public enum Phase {
+		LEX,
+		PARSE,
+		XML,
+		CODEGEN,
+		OPTIMIZED;
+		
+		/*
+		 * Returns the name used for this phase in the budgets file, e.g. "lex"
+		 */
+		public String getBudgetName() {
+			return toString().toLowerCase();
+		}
+		
+		/*
+		 * Returns the phase with the given name in the budgets file, or null if there is none
+		 */
+		public static Phase fromBudgetName(String budgetName) {
+			for (Phase phase : values()) {
+				if (phase.getBudgetName().equals(budgetName)) {
+					return phase;
+				}
+			}
+			return null;
+		}
+	}
+	
+	/*
+	 * A channel that accepts and ignores everything written to it
+	 */
+	private static class DiscardChannel implements WritableByteChannel {
+		
+		@Override
+		public int write(ByteBuffer src) {
+			int count = src.remaining();
+			src.position(src.limit());
+			return count;
+		}
+		
+		@Override
+		public boolean isOpen() {
+			return true;
+		}
+		
+		@Override
+		public void close() {
+		}
+		
+	}
+	
+	/*
+	 * A writer that ignores everything written to it
+	 */
+	private static class DiscardWriter extends Writer {
+		
+		@Override
+		public void write(char[] cbuf, int off, int len) {
+		}
+		
+		@Override
+		public void write(String str) {
+		}
+		
+		@Override
+		public void flush() {
+		}
+		
+		@Override
+		public void close() {
+		}
+		
+	}
+	
+	// The corpus is the same on every run, so that measurements are comparable
+	private static final long CORPUS_SEED = 1;
+	private static final int CORPUS_BYTES = 256 * 1024;
+	
+	private static final int WARMUP_ITERATIONS = 30;
+	private static final int MEASURED_ITERATIONS = 10;
+	
+	// Budgets are written this much above what was measured, and at least
+	// MIN_HEADROOM bytes above, so that noise does not fail the check
+	private static final double BUDGET_HEADROOM = 1.2;
+	private static final double MIN_HEADROOM = 1;
+	
+	private com.sun.management.ThreadMXBean _allocationBean;
+	private byte[] _source;
+	private Set<PeepholeRule> _peepholeRules;
+	
+}
@@ -0,0 +1,110 @@
+package org.jrao.jacksyntaxanalyzer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class BuildCacheTest {
+	
+	@Before
+	public void setUp() throws IOException {
+		_directory = Files.createTempDirectory("BuildCacheTest").toFile();
+		_mainFile = writeClass("Main");
+		_helperFile = writeClass("Helper");
+		_options = CompilerOptions.parse(new String[] { "--incremental", _directory.getPath() });
+	}
+	
+	@After
+	public void tearDown() {
+		File[] files = _directory.listFiles();
+		if (files != null) {
+			for (File file : files) {
+				file.delete();
+			}
+		}
+		_directory.delete();
+	}
+	
+	@Test
+	public void unchangedDirectoryIsNotRebuilt() throws IOException {
+		assertEquals(Arrays.asList("Helper.jack", "Main.jack"), build(_helperFile, _mainFile));
+		assertEquals(Collections.emptyList(), build(_helperFile, _mainFile));
+	}
+	
+	/*
+	 * Compiling one file must not forget the others, or the next build of the
+	 * whole directory recompiles them although nothing changed
+	 */
+	@Test
+	public void compilingSingleFileKeepsOtherEntries() throws IOException {
+		build(_helperFile, _mainFile);
+		assertEquals(Collections.emptyList(), build(_mainFile));
+		assertEquals(Collections.emptyList(), build(_helperFile, _mainFile));
+	}
+	
+	@Test
+	public void changedFileIsRebuilt() throws IOException {
+		build(_helperFile, _mainFile);
+		Files.write(_mainFile.toPath(), "class Main { function void main() { do Helper.run(); return; } }\n"
+				.getBytes(StandardCharsets.ISO_8859_1));
+		assertEquals(Arrays.asList("Main.jack"), build(_helperFile, _mainFile));
+	}
+	
+	@Test
+	public void entriesForDeletedFilesAreDropped() throws IOException {
+		build(_helperFile, _mainFile);
+		assertTrue(_helperFile.delete());
+		build(_mainFile);
+		
+		String manifest = new String(Files.readAllBytes(new File(_directory, BuildCache.MANIFEST_FILE_NAME).toPath()),
+				StandardCharsets.UTF_8);
+		assertTrue(manifest.contains("Main.jack\t"));
+		assertFalse(manifest.contains("Helper.jack\t"));
+	}
+	
+	/*
+	 * Runs an incremental build of the given files the way JackAnalyzer does,
+	 * loading and saving the manifest, and returns the names of the files
+	 * that were actually compiled
+	 */
+	private List<String> build(File... jackFiles) throws IOException {
+		BuildCache buildCache = new BuildCache(_directory, BuildCache.compilerFingerprint(_options.describeOutputOptions()));
+		final List<String> compiled = new ArrayList<String>();
+		boolean success = JackAnalyzer.compileFiles(Arrays.asList(jackFiles), _options, buildCache, new CompilationListener() {
+			@Override
+			public synchronized void fileCompiled(FileMetrics metrics) {
+				compiled.add(metrics.getFileName());
+			}
+		});
+		assertTrue(success);
+		buildCache.save();
+		Collections.sort(compiled);
+		return compiled;
+	}
+	
+	private File writeClass(String className) throws IOException {
+		File file = new File(_directory, className + ".jack");
+		Files.write(file.toPath(), ("class " + className + " { function void run() { return; } }\n")
+				.getBytes(StandardCharsets.ISO_8859_1));
+		return file;
+	}
+	
+	private File _directory;
+	private File _mainFile;
+	private File _helperFile;
+	private CompilerOptions _options;
+	
+}
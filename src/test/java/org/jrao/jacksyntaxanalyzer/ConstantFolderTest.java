@@ -0,0 +1,184 @@
+package org.jrao.jacksyntaxanalyzer;
+
+import static org.jrao.jacksyntaxanalyzer.JackTestSupport.compileFunction;
+import static org.jrao.jacksyntaxanalyzer.JackTestSupport.vm;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class ConstantFolderTest {
+	
+	@Before
+	public void setUp() {
+		_compiler = new JackCompiler();
+		_compiler.setFoldConstants(true);
+	}
+	
+	@Test
+	public void arithmeticWrapsTo16Bits() {
+		assertEquals(vm(
+				"function T.f 1",
+				"push constant 32767",
+				"not",
+				"pop local 0",
+				"push constant 24464",
+				"pop local 0",
+				"push constant 32767",
+				"return"),
+				compileFunction(_compiler, "let z = 32767 + 1; let z = 300 * 300; return -32767 - 2;"));
+	}
+	
+	/*
+	 * -32768 cannot be written as a Jack integer constant, so it is built as
+	 * ~32767
+	 */
+	@Test
+	public void shortMinValueIsBuiltWithNot() {
+		assertEquals(vm(
+				"function T.f 1",
+				"push constant 32767",
+				"not",
+				"return"),
+				compileFunction(_compiler, "return -32767 - 1;"));
+	}
+	
+	/*
+	 * Division by 0, and -32768 / -1, which overflows, are left for the
+	 * program to compute, so they behave however the OS makes them behave
+	 */
+	@Test
+	public void failingDivisionsAreNotFolded() {
+		assertEquals(vm(
+				"function T.f 1",
+				"push constant 7",
+				"push constant 0",
+				"call Math.divide 2",
+				"pop local 0",
+				"push constant 32767",
+				"not",
+				"push constant 1",
+				"neg",
+				"call Math.divide 2",
+				"return"),
+				compileFunction(_compiler, "let z = 7 / 0; return (-32767 - 1) / -1;"));
+	}
+	
+	/*
+	 * Comparisons whose operands differ by more than 16 bits can hold are
+	 * left to the VM translator, which compares by subtracting
+	 */
+	@Test
+	public void overflowingComparisonsAreNotFolded() {
+		assertEquals(vm(
+				"function T.f 1",
+				"push constant 0",
+				"not",
+				"pop local 0",
+				"push constant 20000",
+				"push constant 20000",
+				"neg",
+				"lt",
+				"return"),
+				compileFunction(_compiler, "let z = 3 < 5; return 20000 < -20000;"));
+	}
+	
+	@Test
+	public void constantsAddedToVariableAreCombined() {
+		assertEquals(vm(
+				"function T.f 1",
+				"push argument 0",
+				"push constant 3",
+				"add",
+				"pop local 0",
+				"push argument 0",
+				"push constant 2",
+				"sub",
+				"pop local 0",
+				"push argument 0",
+				"push constant 32767",
+				"not",
+				"add",
+				"pop local 0",
+				"push argument 0",
+				"return"),
+				compileFunction(_compiler, "let z = x + 1 + 2; let z = x + 5 - 7; let z = x - 16384 - 16384; return x + 3 - 3;"));
+	}
+	
+	/*
+	 * Jack evaluates operators from left to right, so in 1 + x + 2 the
+	 * constants are never added to each other
+	 */
+	@Test
+	public void constantsAreNotMovedPastVariable() {
+		assertEquals(vm(
+				"function T.f 1",
+				"push constant 1",
+				"push argument 0",
+				"add",
+				"push constant 2",
+				"add",
+				"return"),
+				compileFunction(_compiler, "return 1 + x + 2;"));
+	}
+	
+	@Test
+	public void identityOperationsDisappear() {
+		assertEquals(vm(
+				"function T.f 1",
+				"push argument 0",
+				"pop local 0",
+				"push argument 0",
+				"pop local 0",
+				"push argument 0",
+				"pop local 0",
+				"push argument 1",
+				"return"),
+				compileFunction(_compiler, "let z = x + 0; let z = 1 * x; let z = x / 1 & -1; return 0 | (y);"));
+	}
+	
+	@Test
+	public void multiplyingPureTermsByZeroFoldsToZero() {
+		assertEquals(vm(
+				"function T.f 1",
+				"push constant 0",
+				"pop local 0",
+				"push constant 0",
+				"pop local 0",
+				"push constant 0",
+				"return"),
+				compileFunction(_compiler, "let z = x * 0; let z = x / 2 * 0; return 0 & (y + x);"));
+	}
+	
+	/*
+	 * A division by a divisor that may be 0 calls Sys.error, so it must not
+	 * be dropped even when its result is multiplied by 0
+	 */
+	@Test
+	public void multiplyingDivisionByZeroKeepsDivision() {
+		assertEquals(vm(
+				"function T.f 1",
+				"push argument 0",
+				"push argument 1",
+				"call Math.divide 2",
+				"push constant 0",
+				"call Math.multiply 2",
+				"pop local 0",
+				"push argument 0",
+				"push constant 0",
+				"call Math.divide 2",
+				"push constant 0",
+				"call Math.multiply 2",
+				"pop local 0",
+				"push constant 0",
+				"push argument 0",
+				"push argument 1",
+				"call Math.divide 2",
+				"call Math.multiply 2",
+				"return"),
+				compileFunction(_compiler, "let z = x / y * 0; let z = x / 0 * 0; return 0 * (x / y);"));
+	}
+	
+	private JackCompiler _compiler;
+	
+}
@@ -0,0 +1,112 @@
+package org.jrao.jacksyntaxanalyzer;
+
+import static org.jrao.jacksyntaxanalyzer.JackTestSupport.compileFunction;
+import static org.jrao.jacksyntaxanalyzer.JackTestSupport.vm;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class DirectBranchesTest {
+	
+	@Before
+	public void setUp() {
+		_compiler = new JackCompiler();
+		_compiler.setDirectBranches(true);
+	}
+	
+	@Test
+	public void ifJumpsPastThenStatementsWhenConditionFails() {
+		assertEquals(vm(
+				"function T.f 1",
+				"push argument 0",
+				"push argument 1",
+				"lt",
+				"not",
+				"if-goto IF_FALSE0",
+				"push constant 1",
+				"return",
+				"label IF_FALSE0",
+				"push constant 0",
+				"return"),
+				compileFunction(_compiler, "if (x < y) { return 1; } return 0;"));
+	}
+	
+	/*
+	 * The condition is tested at the bottom of the loop, and x - y is nonzero
+	 * exactly when ~(x = y) is true
+	 */
+	@Test
+	public void whileTestsNegatedEqualityBySubtracting() {
+		assertEquals(vm(
+				"function T.f 1",
+				"goto WHILE_EXP0",
+				"label WHILE_BODY0",
+				"push argument 0",
+				"push constant 1",
+				"add",
+				"pop argument 0",
+				"label WHILE_EXP0",
+				"push argument 0",
+				"push argument 1",
+				"sub",
+				"if-goto WHILE_BODY0",
+				"push argument 0",
+				"return"),
+				compileFunction(_compiler, "while (~(x = y)) { let x = x + 1; } return x;"));
+	}
+	
+	@Test
+	public void andOfPureComparisonsShortCircuits() {
+		assertEquals(vm(
+				"function T.f 1",
+				"push argument 0",
+				"push constant 0",
+				"gt",
+				"not",
+				"if-goto IF_FALSE0",
+				"push argument 1",
+				"push constant 0",
+				"gt",
+				"not",
+				"if-goto IF_FALSE0",
+				"push constant 1",
+				"return",
+				"goto IF_END0",
+				"label IF_FALSE0",
+				"push constant 2",
+				"return",
+				"label IF_END0"),
+				compileFunction(_compiler, "if ((x > 0) & (y > 0)) { return 1; } else { return 2; }"));
+	}
+	
+	/*
+	 * Skipping a division that may be by 0 would skip its Sys.error, so the
+	 * right side of the | is always evaluated
+	 */
+	@Test
+	public void orWithDivisionDoesNotShortCircuit() {
+		assertEquals(vm(
+				"function T.f 1",
+				"push argument 0",
+				"push constant 0",
+				"gt",
+				"push argument 1",
+				"push argument 0",
+				"call Math.divide 2",
+				"push constant 0",
+				"gt",
+				"or",
+				"not",
+				"if-goto IF_FALSE0",
+				"push constant 1",
+				"return",
+				"label IF_FALSE0",
+				"push constant 0",
+				"return"),
+				compileFunction(_compiler, "if ((x > 0) | (y / x > 0)) { return 1; } return 0;"));
+	}
+	
+	private JackCompiler _compiler;
+	
+}
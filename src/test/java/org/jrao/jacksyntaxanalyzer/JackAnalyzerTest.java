@@ -0,0 +1,101 @@
+package org.jrao.jacksyntaxanalyzer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class JackAnalyzerTest {
+	
+	@Before
+	public void setUp() throws IOException {
+		_directory = Files.createTempDirectory("JackAnalyzerTest").toFile();
+		_files = new ArrayList<File>();
+		_files.add(writeFile("Crash", "class Crash { function void run() { return; } }\n"));
+		_files.add(writeFile("Good", "class Good { function void run() { return; } }\n"));
+		_files.add(writeFile("Invalid", "class Invalid {\n field int x\n}\n"));
+		_err = System.err;
+	}
+	
+	@After
+	public void tearDown() {
+		System.setErr(_err);
+		File[] files = _directory.listFiles();
+		if (files != null) {
+			for (File file : files) {
+				file.delete();
+			}
+		}
+		_directory.delete();
+	}
+	
+	@Test
+	public void crashInOneFileLeavesOthersReported() throws IOException {
+		assertOthersReported("-j", "1");
+	}
+	
+	@Test
+	public void crashInOneParallelFileLeavesOthersReported() throws IOException {
+		assertOthersReported("-j", "3");
+	}
+	
+	/*
+	 * Compiles the files with the given options and a listener that throws
+	 * for Crash.jack, and checks that the crash is reported as that file's
+	 * error while the other files are still compiled and report their own
+	 */
+	private void assertOthersReported(String... options) throws IOException {
+		List<String> args = new ArrayList<String>(Arrays.asList(options));
+		args.add(_directory.getPath());
+		CompilerOptions compilerOptions = CompilerOptions.parse(args.toArray(new String[0]));
+		
+		final List<String> compiled = new ArrayList<String>();
+		ByteArrayOutputStream errors = new ByteArrayOutputStream();
+		System.setErr(new PrintStream(errors, true));
+		boolean success = JackAnalyzer.compileFiles(_files, compilerOptions, null, new CompilationListener() {
+			@Override
+			public synchronized void fileCompiled(FileMetrics metrics) {
+				if (metrics.getFileName().equals("Crash.jack")) {
+					throw new IllegalStateException("Listener failed");
+				}
+				compiled.add(metrics.getFileName());
+			}
+		});
+		System.setErr(_err);
+		
+		assertFalse(success);
+		Collections.sort(compiled);
+		assertEquals(Arrays.asList("Good.jack", "Invalid.jack"), compiled);
+		assertTrue(new File(_directory, "Good.jack.vm").isFile());
+		String output = errors.toString();
+		assertTrue(output.contains("Crash.jack: Failed to compile class!"));
+		assertTrue(output.contains("Crash.jack: java.lang.IllegalStateException: Listener failed"));
+		assertTrue(output.contains("Invalid.jack: Error"));
+		assertFalse(output.contains("Good.jack: "));
+	}
+	
+	private File writeFile(String className, String source) throws IOException {
+		File file = new File(_directory, className + ".jack");
+		Files.write(file.toPath(), source.getBytes(StandardCharsets.ISO_8859_1));
+		return file;
+	}
+	
+	private File _directory;
+	private List<File> _files;
+	private PrintStream _err;
+	
+}
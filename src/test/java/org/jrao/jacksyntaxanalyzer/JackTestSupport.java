@@ -0,0 +1,88 @@
+package org.jrao.jacksyntaxanalyzer;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+
+/*
+ * Helpers shared by the tests that compile small Jack classes in memory and
+ * check the VM code that comes out
+ */
+final class JackTestSupport {
+	
+	/*
+	 * Compiles the class in source, which must compile without errors, and
+	 * returns its VM code
+	 */
+	static String compile(JackCompiler compiler, String source) {
+		CompilationResult result = compiler.compile(source);
+		assertEquals("", result.getErrors());
+		return result.getVM();
+	}
+	
+	/*
+	 * Compiles a class T whose only subroutine is
+	 *
+	 *   function int f(int x, int y) { var int z; <body> }
+	 *
+	 * and returns its VM code
+	 */
+	static String compileFunction(JackCompiler compiler, String body) {
+		return compile(compiler, "class T { function int f(int x, int y) { var int z; " + body + " } }");
+	}
+	
+	/*
+	 * Returns the given VM commands as compiled output, one per line
+	 */
+	static String vm(String... commands) {
+		StringBuilder sb = new StringBuilder();
+		for (String command : commands) {
+			sb.append(command).append('\n');
+		}
+		return sb.toString();
+	}
+	
+	/*
+	 * Passes the given VM commands, written as they are in VM code, to sink,
+	 * and then flushes it
+	 */
+	static void writeCommands(VMCommandSink sink, String... commands) throws IOException {
+		for (String command : commands) {
+			String[] words = command.split(" ");
+			switch (words[0]) {
+			case "push":
+				sink.writePush(Segment.fromName(words[1]), Integer.parseInt(words[2]));
+				break;
+			case "pop":
+				sink.writePop(Segment.fromName(words[1]), Integer.parseInt(words[2]));
+				break;
+			case "label":
+				sink.writeLabel(words[1]);
+				break;
+			case "goto":
+				sink.writeGoto(words[1]);
+				break;
+			case "if-goto":
+				sink.writeIf(words[1]);
+				break;
+			case "call":
+				sink.writeCall(words[1], Integer.parseInt(words[2]));
+				break;
+			case "function":
+				sink.writeFunction(words[1], Integer.parseInt(words[2]));
+				break;
+			case "return":
+				sink.writeReturn();
+				break;
+			default:
+				sink.writeArithmetic(Command.fromName(words[0]));
+				break;
+			}
+		}
+		sink.flush();
+	}
+	
+	private JackTestSupport() {
+	}
+	
+}
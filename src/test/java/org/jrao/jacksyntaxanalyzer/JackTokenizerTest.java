@@ -0,0 +1,155 @@
+package org.jrao.jacksyntaxanalyzer;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+/*
+ * Checks that tokenizing from a channel, which reads the input in chunks
+ * and drops what the lexer is done with, gives exactly what tokenizing the
+ * whole input from a ByteBuffer gives
+ */
+public class JackTokenizerTest {
+	
+	@Test
+	public void generatedClassesLexTheSameFromChannel() throws IOException {
+		for (CorpusShape shape : CorpusShape.values()) {
+			String source = new JackCorpusGenerator(1).generateClass("Main", shape, 32 * 1024);
+			assertSameFromChannel(source);
+		}
+	}
+	
+	/*
+	 * A string constant longer than the initial window, so the window must
+	 * grow rather than only be compacted
+	 */
+	@Test
+	public void tokenLongerThanWindowLexesTheSameFromChannel() throws IOException {
+		char[] text = new char[20 * 1024];
+		Arrays.fill(text, 'a');
+		assertSameFromChannel("class Main {\n\tfunction void main() {\n\t\tdo Output.printString(\"" + new String(text)
+				+ "\");\n\t\treturn;\n\t}\n}\n");
+	}
+	
+	@Test
+	public void inputEndingInTokenLexesTheSameFromChannel() throws IOException {
+		assertSameFromChannel("class Main { field int count12345");
+		assertSameFromChannel("class Main { } /** unterminated comment");
+		assertSameFromChannel("class Main { function void main() { let s = \"unterminated");
+	}
+	
+	private void assertSameFromChannel(String source) throws IOException {
+		byte[] bytes = source.getBytes(StandardCharsets.ISO_8859_1);
+		String expectedTokens = describeTokens(new JackTokenizer(ByteBuffer.wrap(bytes)));
+		String expectedXML = compileToXML(new JackTokenizer(ByteBuffer.wrap(bytes)));
+		for (int chunkSize : CHUNK_SIZES) {
+			assertEquals("chunks of " + chunkSize, expectedTokens,
+					describeTokens(new JackTokenizer(new ChunkedChannel(bytes, chunkSize))));
+			assertEquals("chunks of " + chunkSize, expectedXML,
+					compileToXML(new JackTokenizer(new ChunkedChannel(bytes, chunkSize))));
+		}
+	}
+	
+	/*
+	 * Returns every token, as the tokenizer reports it before and after
+	 * advancing to it, followed by the errors and the counts at the end
+	 */
+	private static String describeTokens(JackTokenizer tokenizer) throws IOException {
+		ByteArrayOutputStream errors = new ByteArrayOutputStream();
+		tokenizer.setErrorStream(new PrintStream(errors, true));
+		StringBuilder description = new StringBuilder();
+		while (tokenizer.hasMoreTokens()) {
+			description.append(tokenizer.peekType()).append(' ').append(tokenizer.peekKeyWord()).append(' ')
+					.append((int) tokenizer.peekSymbol()).append(" -> ");
+			tokenizer.advance();
+			description.append(tokenizer.tokenType()).append(' ');
+			switch (tokenizer.tokenType()) {
+			case KEYWORD:
+				description.append(tokenizer.keyWord());
+				break;
+			case SYMBOL:
+				description.append(tokenizer.symbol());
+				break;
+			case IDENTIFIER:
+				description.append(tokenizer.identifier()).append(' ').append(tokenizer.identifierId());
+				break;
+			case INT_CONST:
+				description.append(tokenizer.intVal());
+				break;
+			case STRING_CONST:
+				description.append(tokenizer.stringVal());
+				break;
+			default:
+				description.append(tokenizer.identifier());
+				break;
+			}
+			description.append('\n');
+		}
+		description.append(errors.toString());
+		description.append(tokenizer.getTokenCount()).append(" tokens, ").append(tokenizer.getBytesRead()).append(" bytes");
+		return description.toString();
+	}
+	
+	/*
+	 * Returns the XML parse tree and the errors from parsing with tokenizer,
+	 * which peeks ahead the way the parser does
+	 */
+	private static String compileToXML(JackTokenizer tokenizer) throws IOException {
+		StringWriter xml = new StringWriter();
+		ByteArrayOutputStream errors = new ByteArrayOutputStream();
+		CompilationEngine compilationEngine = new CompilationEngine(tokenizer, xml, null);
+		compilationEngine.setErrorStream(new PrintStream(errors, true));
+		compilationEngine.compileClass();
+		compilationEngine.close();
+		return xml + errors.toString();
+	}
+	
+	/*
+	 * A channel that returns at most chunkSize bytes from each read
+	 */
+	private static class ChunkedChannel implements ReadableByteChannel {
+		
+		public ChunkedChannel(byte[] bytes, int chunkSize) {
+			_bytes = bytes;
+			_chunkSize = chunkSize;
+			_position = 0;
+		}
+		
+		@Override
+		public int read(ByteBuffer dst) {
+			if (_position == _bytes.length) {
+				return -1;
+			}
+			int count = Math.min(Math.min(_chunkSize, dst.remaining()), _bytes.length - _position);
+			dst.put(_bytes, _position, count);
+			_position += count;
+			return count;
+		}
+		
+		@Override
+		public boolean isOpen() {
+			return true;
+		}
+		
+		@Override
+		public void close() {
+		}
+		
+		private byte[] _bytes;
+		private int _chunkSize;
+		private int _position;
+		
+	}
+	
+	private static final int[] CHUNK_SIZES = { 1, 3, 7 };
+	
+}
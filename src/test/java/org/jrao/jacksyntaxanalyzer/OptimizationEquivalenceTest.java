@@ -0,0 +1,173 @@
+package org.jrao.jacksyntaxanalyzer;
+
+import static org.jrao.jacksyntaxanalyzer.JackTestSupport.compile;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+import java.util.EnumSet;
+
+import org.junit.Test;
+
+/*
+ * Runs programs compiled with every optimization on and with none, and
+ * checks that they print and return the same things
+ */
+public class OptimizationEquivalenceTest {
+	
+	@Test
+	public void arithmeticGivesSameResults() {
+		assertSameResults(
+				"class Main {",
+				"	function int main() {",
+				"		var int i, x;",
+				"		var Array values;",
+				"		let values = Array.new(8);",
+				"		let values[0] = 0;",
+				"		let values[1] = 1;",
+				"		let values[2] = -1;",
+				"		let values[3] = 7;",
+				"		let values[4] = -300;",
+				"		let values[5] = 32767;",
+				"		let values[6] = -32767 - 1;",
+				"		let values[7] = 12345;",
+				"		while (i < 8) {",
+				"			let x = values[i];",
+				"			do Main.print(x * 2, x * 3, x * 4, x * 5);",
+				"			do Main.print(x * 7, x * 10, x * 12, x * 255);",
+				"			do Main.print(x * -1, x * -4, x * -6, x * 1000);",
+				"			do Main.print(2 * x, 0 * x, x * 0, 1 * x);",
+				"			do Main.print(x / 1, x / -1, x / 3, x + 1 + 2);",
+				"			do Main.print(x - 16384 - 16384, x & -1, x | 0, -(-x));",
+				"			do Main.print(~(~x), (x + 5) - 5, 32767 + 1 + x, x * 3 * 0);",
+				"			let i = i + 1;",
+				"		}",
+				"		return 300 * 300;",
+				"	}",
+				"	function void print(int a, int b, int c, int d) {",
+				"		do Output.printInt(a);",
+				"		do Output.printChar(32);",
+				"		do Output.printInt(b);",
+				"		do Output.printChar(32);",
+				"		do Output.printInt(c);",
+				"		do Output.printChar(32);",
+				"		do Output.printInt(d);",
+				"		do Output.println();",
+				"		return;",
+				"	}",
+				"}");
+	}
+	
+	@Test
+	public void conditionsGiveSameResults() {
+		assertSameResults(
+				"class Main {",
+				"	function int main() {",
+				"		var int x, y, count;",
+				"		let x = -3;",
+				"		while (~(x > 3)) {",
+				"			let y = -3;",
+				"			while (y < 4) {",
+				"				if ((x < y) & ~(x = 0)) { let count = count + 1; }",
+				"				if ((x = y) | (y > 2)) { let count = count + 10; } else { let count = count - 1; }",
+				"				if (~((x > 0) | (y > 0))) { let count = count + 100; }",
+				"				if (x) { let count = count + 1000; }",
+				"				if (true) { let count = count + 1; } else { let count = 0; }",
+				"				if (false | (x = 1)) { do Output.printInt(y); }",
+				"				let y = y + 1;",
+				"			}",
+				"			let x = x + 1;",
+				"		}",
+				"		return count;",
+				"	}",
+				"}");
+	}
+	
+	@Test
+	public void objectsArraysAndStringsGiveSameResults() {
+		assertSameResults(
+				"class Main {",
+				"	function int main() {",
+				"		var Counter counter;",
+				"		var Array a;",
+				"		var int i;",
+				"		let counter = Counter.new(5);",
+				"		let a = Array.new(10);",
+				"		let a[0] = 1;",
+				"		let i = 1;",
+				"		while (i < 10) {",
+				"			let a[i] = a[i - 1] * 3 + counter.next();",
+				"			let a[a[0]] = a[a[0]] + 1;",
+				"			do Output.printString(\"a=\");",
+				"			do Output.printInt(a[i]);",
+				"			do Output.printString(\"; \");",
+				"			let i = i + 1;",
+				"		}",
+				"		return counter.next() + a[9];",
+				"	}",
+				"}",
+				"class Counter {",
+				"	field int count;",
+				"	constructor Counter new(int start) {",
+				"		let count = start;",
+				"		return this;",
+				"	}",
+				"	method int next() {",
+				"		let count = count + 1;",
+				"		return count * 2;",
+				"	}",
+				"}");
+	}
+	
+	/*
+	 * The division is multiplied by 0, but dividing by 0 must still stop
+	 * the program
+	 */
+	@Test
+	public void divisionByZeroFailsInBoth() {
+		String result = assertSameResults(
+				"class Main {",
+				"	function int main() {",
+				"		var int x, y, z;",
+				"		let x = 5;",
+				"		let z = x / y * 0;",
+				"		if ((x > 0) | ((x / y) = 1)) { let z = 1; }",
+				"		return z;",
+				"	}",
+				"}");
+		assertEquals("\nSys.error 3", result);
+	}
+	
+	/*
+	 * Compiles the given classes, one per "class" line, with every
+	 * optimization on and with none, checks that running Main.main gives the
+	 * same results both ways, and returns them
+	 */
+	private String assertSameResults(String... lines) {
+		JackCompiler optimizing = new JackCompiler();
+		optimizing.setPeepholeRules(EnumSet.allOf(PeepholeRule.class));
+		optimizing.setFoldConstants(true);
+		optimizing.setStrengthReduction(true);
+		optimizing.setDirectBranches(true);
+		optimizing.setPoolStrings(true);
+		
+		VMInterpreter unoptimized = new VMInterpreter();
+		VMInterpreter optimized = new VMInterpreter();
+		StringBuilder source = new StringBuilder();
+		for (int i = 0; i < lines.length; i++) {
+			source.append(lines[i]).append('\n');
+			if (i + 1 == lines.length || lines[i + 1].startsWith("class ")) {
+				String unoptimizedVM = compile(new JackCompiler(), source.toString());
+				String optimizedVM = compile(optimizing, source.toString());
+				assertNotEquals(unoptimizedVM, optimizedVM);
+				unoptimized.load(unoptimizedVM);
+				optimized.load(optimizedVM);
+				source.setLength(0);
+			}
+		}
+		
+		String result = unoptimized.run("Main.main");
+		assertEquals(result, optimized.run("Main.main"));
+		return result;
+	}
+	
+}
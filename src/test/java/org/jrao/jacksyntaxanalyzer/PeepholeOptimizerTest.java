@@ -0,0 +1,275 @@
+package org.jrao.jacksyntaxanalyzer;
+
+import static org.jrao.jacksyntaxanalyzer.JackTestSupport.vm;
+import static org.jrao.jacksyntaxanalyzer.JackTestSupport.writeCommands;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.EnumSet;
+
+import org.junit.Test;
+
+public class PeepholeOptimizerTest {
+	
+	@Test
+	public void collapseConditionalJumpNegatesComparison() throws IOException {
+		assertEquals(vm(
+				"function T.f 0",
+				"push argument 0",
+				"push constant 1",
+				"eq",
+				"not",
+				"if-goto B",
+				"label A",
+				"push constant 1",
+				"return",
+				"label B",
+				"push constant 0",
+				"return"),
+				optimize(PeepholeRule.COLLAPSE_CONDITIONAL_JUMP,
+						"function T.f 0",
+						"push argument 0",
+						"push constant 1",
+						"eq",
+						"if-goto A",
+						"goto B",
+						"label A",
+						"push constant 1",
+						"return",
+						"label B",
+						"push constant 0",
+						"return"));
+	}
+	
+	@Test
+	public void collapseConditionalJumpDropsExistingNot() throws IOException {
+		assertEquals(vm(
+				"function T.f 0",
+				"push argument 0",
+				"push argument 1",
+				"lt",
+				"if-goto B",
+				"label A",
+				"return",
+				"label B",
+				"return"),
+				optimize(PeepholeRule.COLLAPSE_CONDITIONAL_JUMP,
+						"function T.f 0",
+						"push argument 0",
+						"push argument 1",
+						"lt",
+						"not",
+						"if-goto A",
+						"goto B",
+						"label A",
+						"return",
+						"label B",
+						"return"));
+	}
+	
+	/*
+	 * not only negates the truth of true and false, so any other condition
+	 * must keep its jumps
+	 */
+	@Test
+	public void collapseConditionalJumpLeavesNonBooleanCondition() throws IOException {
+		String[] code = {
+				"function T.f 0",
+				"push argument 0",
+				"if-goto A",
+				"goto B",
+				"label A",
+				"return",
+				"label B",
+				"return" };
+		assertEquals(vm(code), optimize(PeepholeRule.COLLAPSE_CONDITIONAL_JUMP, code));
+	}
+	
+	@Test
+	public void doubleNotIsRemoved() throws IOException {
+		assertEquals(vm(
+				"function T.f 0",
+				"push argument 0",
+				"not",
+				"return"),
+				optimize(PeepholeRule.DOUBLE_NOT,
+						"function T.f 0",
+						"push argument 0",
+						"not",
+						"not",
+						"not",
+						"return"));
+	}
+	
+	@Test
+	public void constantBranchBecomesGotoOrNothing() throws IOException {
+		assertEquals(vm(
+				"function T.f 0",
+				"goto A",
+				"goto B",
+				"label A",
+				"label B",
+				"return"),
+				optimize(PeepholeRule.CONSTANT_BRANCH,
+						"function T.f 0",
+						"push constant 0",
+						"if-goto C",
+						"push constant 1",
+						"if-goto A",
+						"push constant 0",
+						"not",
+						"if-goto B",
+						"label A",
+						"label B",
+						"return"));
+	}
+	
+	@Test
+	public void arrayStoreOfSimpleValueSkipsTemp() throws IOException {
+		assertEquals(vm(
+				"function T.f 0",
+				"push argument 0",
+				"push argument 1",
+				"add",
+				"pop pointer 1",
+				"push local 0",
+				"pop that 0",
+				"push constant 0",
+				"return"),
+				optimize(PeepholeRule.ARRAY_STORE,
+						"function T.f 0",
+						"push argument 0",
+						"push argument 1",
+						"add",
+						"push local 0",
+						"pop temp 0",
+						"pop pointer 1",
+						"push temp 0",
+						"pop that 0",
+						"push constant 0",
+						"return"));
+	}
+	
+	/*
+	 * A value read through that would be read from the new array element once
+	 * pointer 1 is set first
+	 */
+	@Test
+	public void arrayStoreOfThatValueKeepsTemp() throws IOException {
+		String[] code = {
+				"function T.f 0",
+				"push argument 0",
+				"push that 0",
+				"pop temp 0",
+				"pop pointer 1",
+				"push temp 0",
+				"pop that 0",
+				"push constant 0",
+				"return" };
+		assertEquals(vm(code), optimize(PeepholeRule.ARRAY_STORE, code));
+	}
+	
+	@Test
+	public void jumpToNextLabelIsRemoved() throws IOException {
+		assertEquals(vm(
+				"function T.f 0",
+				"label A",
+				"label B",
+				"goto A",
+				"return"),
+				optimize(PeepholeRule.JUMP_TO_NEXT,
+						"function T.f 0",
+						"goto B",
+						"label A",
+						"label B",
+						"goto A",
+						"return"));
+	}
+	
+	@Test
+	public void unlabelledCodeAfterGotoOrReturnIsRemoved() throws IOException {
+		assertEquals(vm(
+				"function T.f 0",
+				"goto A",
+				"label A",
+				"push constant 0",
+				"return"),
+				optimize(PeepholeRule.DEAD_CODE,
+						"function T.f 0",
+						"goto A",
+						"push constant 1",
+						"pop local 0",
+						"label A",
+						"push constant 0",
+						"return",
+						"push constant 2",
+						"return"));
+	}
+	
+	@Test
+	public void unusedLabelIsRemoved() throws IOException {
+		assertEquals(vm(
+				"function T.f 0",
+				"label A",
+				"push argument 0",
+				"if-goto A",
+				"return"),
+				optimize(PeepholeRule.UNUSED_LABEL,
+						"function T.f 0",
+						"label A",
+						"push argument 0",
+						"if-goto A",
+						"label B",
+						"return"));
+	}
+	
+	/*
+	 * Labels are local to a function, so a goto in one function does not keep
+	 * a label of the same name alive in another
+	 */
+	@Test
+	public void labelsAreLocalToFunction() throws IOException {
+		assertEquals(vm(
+				"function T.f 0",
+				"return",
+				"function T.g 0",
+				"label A",
+				"goto A"),
+				optimize(PeepholeRule.UNUSED_LABEL,
+						"function T.f 0",
+						"label A",
+						"return",
+						"function T.g 0",
+						"label A",
+						"goto A"));
+	}
+	
+	/*
+	 * With every rule on, the jumps around an if statement with a constant
+	 * condition disappear along with the branch that is never taken
+	 */
+	@Test
+	public void allRulesSimplifyConstantIf() {
+		JackCompiler compiler = new JackCompiler();
+		compiler.setPeepholeRules(EnumSet.allOf(PeepholeRule.class));
+		assertEquals(vm(
+				"function T.f 1",
+				"push argument 0",
+				"return"),
+				JackTestSupport.compileFunction(compiler, "if (true) { return x; } else { return y; }"));
+	}
+	
+	/*
+	 * Runs the given VM code through a PeepholeOptimizer that applies only the
+	 * given rule, and returns what comes out
+	 */
+	private String optimize(PeepholeRule rule, String... commands) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		writeCommands(new PeepholeOptimizer(new VMWriter(Channels.newChannel(out)), EnumSet.of(rule)), commands);
+		return new String(out.toByteArray(), StandardCharsets.ISO_8859_1);
+	}
+	
+}
@@ -0,0 +1,154 @@
+package org.jrao.jacksyntaxanalyzer;
+
+import static org.jrao.jacksyntaxanalyzer.JackTestSupport.compileFunction;
+import static org.jrao.jacksyntaxanalyzer.JackTestSupport.vm;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class StrengthReductionTest {
+	
+	@Before
+	public void setUp() {
+		_compiler = new JackCompiler();
+		_compiler.setStrengthReduction(true);
+	}
+	
+	/*
+	 * The first doubling adds a simple left operand to itself; later ones
+	 * go through temp 1
+	 */
+	@Test
+	public void multiplyingByPowerOfTwoDoubles() {
+		assertEquals(vm(
+				"function T.f 1",
+				"push argument 0",
+				"push argument 0",
+				"add",
+				"pop temp 1",
+				"push temp 1",
+				"push temp 1",
+				"add",
+				"pop local 0",
+				"push argument 0",
+				"push argument 1",
+				"add",
+				"pop temp 1",
+				"push temp 1",
+				"push temp 1",
+				"add",
+				"return"),
+				compileFunction(_compiler, "let z = x * 4; return (x + y) * 2;"));
+	}
+	
+	@Test
+	public void constantOnLeftIsMovedRight() {
+		assertEquals(vm(
+				"function T.f 1",
+				"push argument 0",
+				"push argument 0",
+				"add",
+				"return"),
+				compileFunction(_compiler, "return 2 * x;"));
+	}
+	
+	@Test
+	public void multiplyingByOtherConstantsShiftsAndAdds() {
+		assertEquals(vm(
+				"function T.f 1",
+				"push argument 0",
+				"pop temp 1",
+				"push temp 1",
+				"pop temp 2",
+				"push temp 2",
+				"push temp 2",
+				"add",
+				"pop temp 2",
+				"push temp 2",
+				"push temp 2",
+				"add",
+				"push temp 1",
+				"add",
+				"pop local 0",
+				"push argument 0",
+				"pop temp 1",
+				"push temp 1",
+				"pop temp 2",
+				"push temp 2",
+				"push temp 2",
+				"add",
+				"push temp 1",
+				"add",
+				"neg",
+				"return"),
+				compileFunction(_compiler, "let z = x * 5; return x * -3;"));
+	}
+	
+	/*
+	 * Multiplying by 0 still evaluates the left operand, in case it has side
+	 * effects
+	 */
+	@Test
+	public void multiplyingByZeroKeepsLeftOperand() {
+		assertEquals(vm(
+				"function T.f 1",
+				"call T.g 0",
+				"push constant 0",
+				"and",
+				"return",
+				"function T.g 0",
+				"push constant 1",
+				"return"),
+				JackTestSupport.compile(_compiler,
+						"class T { function int f(int x, int y) { var int z; return T.g() * 0; } function int g() { return 1; } }"));
+	}
+	
+	@Test
+	public void expensiveMultiplicationsCallMathMultiply() {
+		assertEquals(vm(
+				"function T.f 1",
+				"push argument 0",
+				"push constant 1000",
+				"call Math.multiply 2",
+				"pop local 0",
+				"push argument 0",
+				"push constant 32767",
+				"call Math.multiply 2",
+				"return"),
+				compileFunction(_compiler, "let z = x * 1000; return x * 32767;"));
+	}
+	
+	/*
+	 * Hack has no shifts, so only dividing by 1 and -1 avoids Math.divide
+	 */
+	@Test
+	public void onlyDivisionByOneOrMinusOneIsReduced() {
+		assertEquals(vm(
+				"function T.f 1",
+				"push argument 0",
+				"pop local 0",
+				"push argument 0",
+				"neg",
+				"pop local 0",
+				"push argument 0",
+				"push constant 4",
+				"call Math.divide 2",
+				"return"),
+				compileFunction(_compiler, "let z = x / 1; let z = x / -1; return x / 4;"));
+	}
+	
+	@Test
+	public void multiplicationIsNotReducedWhenDisabled() {
+		assertEquals(vm(
+				"function T.f 1",
+				"push argument 0",
+				"push constant 4",
+				"call Math.multiply 2",
+				"return"),
+				compileFunction(new JackCompiler(), "return x * 4;"));
+	}
+	
+	private JackCompiler _compiler;
+	
+}
@@ -0,0 +1,75 @@
+package org.jrao.jacksyntaxanalyzer;
+
+import static org.jrao.jacksyntaxanalyzer.JackTestSupport.compile;
+import static org.jrao.jacksyntaxanalyzer.JackTestSupport.vm;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class StringPoolTest {
+	
+	@Test
+	public void stringIsBuiltOnEveryEvaluationWithoutPool() {
+		assertEquals(vm(
+				"function T.f 0",
+				"push constant 2",
+				"call String.new 1",
+				"push constant 104",
+				"call String.appendChar 2",
+				"push constant 105",
+				"call String.appendChar 2",
+				"return"),
+				compile(new JackCompiler(), "class T { function String f() { return \"hi\"; } }"));
+	}
+	
+	/*
+	 * Each distinct string gets a hidden static variable after the class's
+	 * own, which is filled in the first time any use of it is evaluated
+	 */
+	@Test
+	public void pooledStringsShareStaticPerValue() {
+		JackCompiler compiler = new JackCompiler();
+		compiler.setPoolStrings(true);
+		assertEquals(vm(
+				"function T.f 0",
+				"push static 1",
+				"if-goto STRING_BUILT0",
+				"push constant 2",
+				"call String.new 1",
+				"push constant 104",
+				"call String.appendChar 2",
+				"push constant 105",
+				"call String.appendChar 2",
+				"pop static 1",
+				"label STRING_BUILT0",
+				"push static 1",
+				"pop static 0",
+				"push static 2",
+				"if-goto STRING_BUILT1",
+				"push constant 1",
+				"call String.new 1",
+				"push constant 33",
+				"call String.appendChar 2",
+				"pop static 2",
+				"label STRING_BUILT1",
+				"push static 2",
+				"return",
+				"function T.g 0",
+				"push static 1",
+				"if-goto STRING_BUILT2",
+				"push constant 2",
+				"call String.new 1",
+				"push constant 104",
+				"call String.appendChar 2",
+				"push constant 105",
+				"call String.appendChar 2",
+				"pop static 1",
+				"label STRING_BUILT2",
+				"push static 1",
+				"return"),
+				compile(compiler, "class T { static String s; "
+						+ "function String f() { let s = \"hi\"; return \"!\"; } "
+						+ "function String g() { return \"hi\"; } }"));
+	}
+	
+}
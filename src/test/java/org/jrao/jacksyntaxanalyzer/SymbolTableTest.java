@@ -0,0 +1,72 @@
+package org.jrao.jacksyntaxanalyzer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class SymbolTableTest {
+	
+	@Before
+	public void setUp() {
+		_names = new NameTable();
+		_symbolTable = new SymbolTable(_names);
+	}
+	
+	@Test
+	public void subroutineScopeHidesClassScope() {
+		_symbolTable.define(_names.intern("x"), _names.intern("int"), Kind.FIELD);
+		_symbolTable.define(_names.intern("x"), _names.intern("boolean"), Kind.VAR);
+		
+		Variable x = _symbolTable.lookup(_names.intern("x"));
+		assertEquals(Kind.VAR, x.getKind());
+		assertEquals("boolean", x.getType());
+		assertEquals(0, x.getIndex());
+		
+		_symbolTable.startSubroutine();
+		assertEquals(Kind.FIELD, _symbolTable.lookup(_names.intern("x")).getKind());
+	}
+	
+	@Test
+	public void unknownNameHasKindNone() {
+		Variable y = _symbolTable.lookup(_names.intern("y"));
+		assertEquals("y", y.getName());
+		assertEquals("", y.getType());
+		assertEquals(Kind.NONE, y.getKind());
+		assertEquals(-1, y.getIndex());
+	}
+	
+	@Test
+	public void lookupReturnsSameVariableEachTime() {
+		_symbolTable.define(_names.intern("x"), _names.intern("int"), Kind.ARG);
+		assertSame(_symbolTable.lookup(_names.intern("x")), _symbolTable.lookup(_names.intern("x")));
+		assertSame(_symbolTable.lookup(_names.intern("y")), _symbolTable.lookup(_names.intern("y")));
+	}
+	
+	/*
+	 * The syntax tree keeps the Variables of earlier subroutines, so defining
+	 * the same name again must not change them
+	 */
+	@Test
+	public void redefiningNameLeavesEarlierVariableUnchanged() {
+		_symbolTable.define(_names.intern("a"), _names.intern("int"), Kind.VAR);
+		_symbolTable.define(_names.intern("x"), _names.intern("int"), Kind.VAR);
+		Variable first = _symbolTable.lookup(_names.intern("x"));
+		
+		_symbolTable.startSubroutine();
+		_symbolTable.define(_names.intern("x"), _names.intern("char"), Kind.VAR);
+		Variable second = _symbolTable.lookup(_names.intern("x"));
+		
+		assertNotSame(first, second);
+		assertEquals("int", first.getType());
+		assertEquals(1, first.getIndex());
+		assertEquals("char", second.getType());
+		assertEquals(0, second.getIndex());
+	}
+	
+	private NameTable _names;
+	private SymbolTable _symbolTable;
+	
+}
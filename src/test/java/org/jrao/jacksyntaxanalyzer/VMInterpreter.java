@@ -0,0 +1,307 @@
+package org.jrao.jacksyntaxanalyzer;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * A small interpreter for VM code, so that tests can check what compiled
+ * programs do rather than only what they look like. It implements just
+ * enough of the Jack OS for test programs: Math.multiply and Math.divide,
+ * Memory.alloc and Array.new, String.new and String.appendChar,
+ * Output.printInt, printChar, printString and println, and Sys.error, which
+ * stops the program.
+ *
+ * Values are kept as 16-bit two's complement integers, and each VM function
+ * is run by a Java call, so test programs should not recurse deeply.
+ */
+final class VMInterpreter {
+	
+	VMInterpreter() {
+		_code = new ArrayList<String[]>();
+		_functions = new HashMap<String, Integer>();
+		_statics = new HashMap<String, int[]>();
+		_temp = new int[TEMP_SIZE];
+		_heap = new int[HEAP_SIZE];
+		_heapEnd = HEAP_BASE;
+		_strings = new HashMap<Integer, StringBuilder>();
+		_output = new StringBuilder();
+	}
+	
+	/*
+	 * Adds the VM code of a class to the program
+	 */
+	void load(String vmCode) {
+		for (String line : vmCode.split("\n")) {
+			if (line.isEmpty()) {
+				continue;
+			}
+			String[] words = line.split(" ");
+			if (words[0].equals("function")) {
+				_functions.put(words[1], _code.size());
+			}
+			_code.add(words);
+		}
+	}
+	
+	/*
+	 * Calls the given function without arguments, and returns everything the
+	 * program printed, followed by the value the function returned or by the
+	 * code of the Sys.error that stopped it
+	 */
+	String run(String function) {
+		try {
+			int result = call(function, new int[0]);
+			return _output + "\nreturned " + result;
+		}
+		catch (SysError se) {
+			return _output + "\nSys.error " + se.getCode();
+		}
+	}
+	
+	private int call(String name, int[] args) {
+		Integer start = _functions.get(name);
+		if (start == null) {
+			return callOS(name, args);
+		}
+		
+		int[] locals = new int[Integer.parseInt(_code.get(start)[2])];
+		int[] statics = _statics.get(className(name));
+		if (statics == null) {
+			statics = new int[STATIC_SIZE];
+			_statics.put(className(name), statics);
+		}
+		int[] pointers = new int[2];
+		Deque<Integer> stack = new ArrayDeque<Integer>();
+		
+		int pc = start + 1;
+		while (true) {
+			_steps++;
+			if (_steps > MAX_STEPS) {
+				throw new IllegalStateException("The program ran for too long");
+			}
+			String[] words = _code.get(pc);
+			pc++;
+			switch (words[0]) {
+			case "push":
+				stack.push(read(words[1], Integer.parseInt(words[2]), args, locals, statics, pointers));
+				break;
+			case "pop":
+				write(words[1], Integer.parseInt(words[2]), stack.pop(), args, locals, statics, pointers);
+				break;
+			case "label":
+				break;
+			case "goto":
+				pc = findLabel(start, words[1]);
+				break;
+			case "if-goto":
+				if (stack.pop() != 0) {
+					pc = findLabel(start, words[1]);
+				}
+				break;
+			case "call":
+				int[] callArgs = new int[Integer.parseInt(words[2])];
+				for (int i = callArgs.length - 1; i >= 0; i--) {
+					callArgs[i] = stack.pop();
+				}
+				stack.push(call(words[1], callArgs));
+				break;
+			case "return":
+				return stack.pop();
+			case "neg":
+				stack.push(toShort(-stack.pop()));
+				break;
+			case "not":
+				stack.push(toShort(~stack.pop()));
+				break;
+			default:
+				int right = stack.pop();
+				stack.push(arithmetic(words[0], stack.pop(), right));
+				break;
+			}
+		}
+	}
+	
+	private int arithmetic(String command, int left, int right) {
+		switch (command) {
+		case "add":
+			return toShort(left + right);
+		case "sub":
+			return toShort(left - right);
+		case "and":
+			return left & right;
+		case "or":
+			return left | right;
+		case "eq":
+			return left == right ? -1 : 0;
+		case "gt":
+			return left > right ? -1 : 0;
+		case "lt":
+			return left < right ? -1 : 0;
+		default:
+			throw new IllegalStateException("Unknown command: " + command);
+		}
+	}
+	
+	private int read(String segment, int index, int[] args, int[] locals, int[] statics, int[] pointers) {
+		switch (segment) {
+		case "constant":
+			return index;
+		case "argument":
+			return args[index];
+		case "local":
+			return locals[index];
+		case "static":
+			return statics[index];
+		case "this":
+			return _heap[pointers[0] + index];
+		case "that":
+			return _heap[pointers[1] + index];
+		case "pointer":
+			return pointers[index];
+		case "temp":
+			return _temp[index];
+		default:
+			throw new IllegalStateException("Unknown segment: " + segment);
+		}
+	}
+	
+	private void write(String segment, int index, int value, int[] args, int[] locals, int[] statics, int[] pointers) {
+		switch (segment) {
+		case "argument":
+			args[index] = value;
+			break;
+		case "local":
+			locals[index] = value;
+			break;
+		case "static":
+			statics[index] = value;
+			break;
+		case "this":
+			_heap[pointers[0] + index] = value;
+			break;
+		case "that":
+			_heap[pointers[1] + index] = value;
+			break;
+		case "pointer":
+			pointers[index] = value;
+			break;
+		case "temp":
+			_temp[index] = value;
+			break;
+		default:
+			throw new IllegalStateException("Cannot pop to segment: " + segment);
+		}
+	}
+	
+	/*
+	 * Returns the index of the command after the given label in the function
+	 * that starts at start
+	 */
+	private int findLabel(int start, String label) {
+		for (int i = start + 1; i < _code.size() && !_code.get(i)[0].equals("function"); i++) {
+			if (_code.get(i)[0].equals("label") && _code.get(i)[1].equals(label)) {
+				return i + 1;
+			}
+		}
+		throw new IllegalStateException("Unknown label: " + label);
+	}
+	
+	/*
+	 * Runs one of the Jack OS subroutines the interpreter implements
+	 */
+	private int callOS(String name, int[] args) {
+		switch (name) {
+		case "Math.multiply":
+			return toShort(args[0] * args[1]);
+		case "Math.divide":
+			if (args[1] == 0) {
+				throw new SysError(3);
+			}
+			return toShort(args[0] / args[1]);
+		case "Memory.alloc":
+		case "Array.new":
+			return allocate(args[0]);
+		case "String.new":
+			int string = allocate(1);
+			_strings.put(string, new StringBuilder());
+			return string;
+		case "String.appendChar":
+			_strings.get(args[0]).append((char) args[1]);
+			return args[0];
+		case "Output.printString":
+			_output.append(_strings.get(args[0]));
+			return 0;
+		case "Output.printInt":
+			_output.append(args[0]);
+			return 0;
+		case "Output.printChar":
+			_output.append((char) args[0]);
+			return 0;
+		case "Output.println":
+			_output.append('\n');
+			return 0;
+		case "Sys.error":
+			throw new SysError(args[0]);
+		default:
+			throw new IllegalStateException("Unknown function: " + name);
+		}
+	}
+	
+	private int allocate(int size) {
+		if (size <= 0 || _heapEnd + size > HEAP_SIZE) {
+			throw new SysError(6);
+		}
+		int block = _heapEnd;
+		_heapEnd += size;
+		return block;
+	}
+	
+	private static String className(String functionName) {
+		return functionName.substring(0, functionName.indexOf('.'));
+	}
+	
+	private static int toShort(int value) {
+		return (short) value;
+	}
+	
+	/*
+	 * Thrown when the program calls Sys.error, or the OS would have
+	 */
+	private static class SysError extends RuntimeException {
+		
+		public SysError(int code) {
+			super("Sys.error " + code);
+			_code = code;
+		}
+		
+		public int getCode() {
+			return _code;
+		}
+		
+		private static final long serialVersionUID = 1L;
+		
+		private int _code;
+		
+	}
+	
+	private static final int TEMP_SIZE = 8;
+	private static final int STATIC_SIZE = 240;
+	private static final int HEAP_BASE = 2048;
+	private static final int HEAP_SIZE = 16384;
+	private static final long MAX_STEPS = 10000000;
+	
+	private List<String[]> _code;
+	private Map<String, Integer> _functions;
+	private Map<String, int[]> _statics;
+	private int[] _temp;
+	private int[] _heap;
+	private int _heapEnd;
+	private Map<Integer, StringBuilder> _strings;
+	private StringBuilder _output;
+	private long _steps;
+	
+}